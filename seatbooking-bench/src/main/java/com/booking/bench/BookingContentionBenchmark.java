@@ -0,0 +1,170 @@
+package com.booking.bench;
+
+import com.booking.exception.ValidationException;
+import com.booking.model.Seat;
+import com.booking.model.SeatMap;
+import com.booking.model.Ticket;
+import com.booking.model.Train;
+import com.booking.service.BookingService;
+import com.booking.service.Database;
+import com.booking.service.EmbeddedDatabase;
+import com.booking.service.PooledDatabase;
+import com.booking.service.TrainService;
+import com.booking.util.PnrGenerator;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.LocalDate;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Flash-sale contention on a single train: every thread books one seat at a time on the
+ * same (train, date) until it sells out, then moves to the next date.
+ * <ul>
+ *   <li>{@code optimisticInsert} books through two BookingService instances sharing the
+ *       database, so conflicts between "nodes" are resolved by the unique active-seat key
+ *       and retried.</li>
+ *   <li>{@code pessimisticForUpdate} replays the previous approach: lock every active row of
+ *       the train/date with SELECT ... FOR UPDATE, pick a free seat, insert, commit.</li>
+ * </ul>
+ * Runs on the in-process H2 database by default; {@code -p database=mysql} uses the MySQL
+ * database configured in {@code .env} (DB_URL, DB_USER, DB_PASSWORD).
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 2, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+@Threads(16)
+public class BookingContentionBenchmark {
+
+    @Param({ "200" })
+    public int seatsPerTrain;
+
+    @Param({ "embedded" })
+    public String database;
+
+    private PooledDatabase db;
+    private BookingService[] nodes;
+    private Train[] trainPerNode;
+    private String trainNumber;
+    private final AtomicInteger bookings = new AtomicInteger();
+    private final AtomicInteger threadIds = new AtomicInteger();
+    private LocalDate firstDate;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        db = new PooledDatabase("mysql".equals(database) ? new Database() : new EmbeddedDatabase(), 32, 10_000, 300_000, 0, 2);
+        trainNumber = "B" + Long.toString(System.nanoTime(), 36).toUpperCase();
+        firstDate = LocalDate.now().plusDays(1);
+
+        TrainService first = new TrainService(db);
+        first.addTrain(trainNumber, "Contention Express", List.of("Alpha", "Omega"), seatsPerTrain);
+
+        nodes = new BookingService[2];
+        trainPerNode = new Train[2];
+        for (int i = 0; i < nodes.length; i++) {
+            TrainService trainService = i == 0 ? first : new TrainService(db);
+            nodes[i] = new BookingService(trainService, db);
+            trainPerNode[i] = trainService.findTrain(trainNumber);
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws SQLException {
+        for (BookingService node : nodes) node.close();
+        try (Connection c = db.getConnection()) {
+            try (PreparedStatement ps = c.prepareStatement("DELETE FROM tickets WHERE train_number = ?")) {
+                ps.setString(1, trainNumber);
+                ps.executeUpdate();
+            }
+            try (PreparedStatement ps = c.prepareStatement("DELETE FROM trains WHERE train_number = ?")) {
+                ps.setString(1, trainNumber);
+                ps.executeUpdate();
+            }
+        }
+        db.close();
+    }
+
+    @State(Scope.Thread)
+    public static class Node {
+        int index;
+
+        @Setup(Level.Trial)
+        public void pick(BookingContentionBenchmark bench) {
+            index = bench.threadIds.getAndIncrement() % 2;
+        }
+    }
+
+    private String nextDate() {
+        return firstDate.plusDays(bookings.getAndIncrement() / seatsPerTrain).toString();
+    }
+
+    @Benchmark
+    public List<Ticket> optimisticInsert(Node node) {
+        try {
+            return nodes[node.index].createTicketsForUsernames(Collections.singletonList("bench"),
+                    trainPerNode[node.index], nextDate(), "bench");
+        } catch (ValidationException e) {
+            // retry budget exhausted or the date sold out under this node's view
+            return null;
+        }
+    }
+
+    @Benchmark
+    public String pessimisticForUpdate() throws SQLException {
+        String date = nextDate();
+        try (Connection conn = db.getConnection()) {
+            conn.setAutoCommit(false);
+            SeatMap locked = new SeatMap(seatsPerTrain);
+            try (PreparedStatement ps = conn.prepareStatement(
+                    "SELECT seat_number FROM tickets WHERE train_number = ? AND travel_date = ? AND status = 'ACTIVE' FOR UPDATE")) {
+                ps.setString(1, trainNumber);
+                ps.setString(2, date);
+                try (ResultSet rs = ps.executeQuery()) {
+                    while (rs.next()) locked.book(Seat.parseNumber(rs.getString("seat_number")));
+                }
+            }
+            int seat = locked.firstFree();
+            if (seat == -1) {
+                conn.rollback();
+                return null;
+            }
+            String pnr = PnrGenerator.generate();
+            try (PreparedStatement ps = conn.prepareStatement(
+                    "INSERT INTO tickets(pnr, username, train_number, seat_number, travel_date, booked_by, status) VALUES(?,?,?,?,?,?,?)")) {
+                ps.setString(1, pnr);
+                ps.setString(2, "bench");
+                ps.setString(3, trainNumber);
+                ps.setString(4, Seat.label(seat));
+                ps.setString(5, date);
+                ps.setString(6, "bench");
+                ps.setString(7, "ACTIVE");
+                ps.executeUpdate();
+            }
+            conn.commit();
+            return pnr;
+        }
+    }
+}
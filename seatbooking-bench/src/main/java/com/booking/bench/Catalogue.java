@@ -0,0 +1,70 @@
+package com.booking.bench;
+
+import com.booking.model.Seat;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+/** Synthetic timetables shared by the benchmarks. */
+final class Catalogue {
+    private Catalogue() { }
+
+    static String station(int i) {
+        return "Station" + i;
+    }
+
+    static String trainNumber(int i) {
+        return "T" + (10000 + i);
+    }
+
+    static StubDatabase stubWithTrains(int trains, int stations, int stopsPerTrain, int seatsPerTrain) {
+        Random random = new Random(42);
+        List<Map<String, Object>> rows = new ArrayList<>(trains);
+        for (int i = 0; i < trains; i++) {
+            StringBuilder route = new StringBuilder();
+            for (int s = 0; s < stopsPerTrain; s++) {
+                if (s > 0) route.append(',');
+                route.append(station(random.nextInt(stations)));
+            }
+            Map<String, Object> row = new LinkedHashMap<>();
+            row.put("train_number", trainNumber(i));
+            row.put("train_name", "Express " + i);
+            row.put("route", route.toString());
+            row.put("total_seats", seatsPerTrain);
+            rows.add(row);
+        }
+        StubDatabase db = new StubDatabase();
+        db.setRows("trains", rows);
+        return db;
+    }
+
+    static String pnr(int i) {
+        return String.format("PNR%08d", i);
+    }
+
+    /**
+     * Registers {@code count} active tickets spread round-robin over the first {@code trains}
+     * trains, filling each train's seats date by date starting tomorrow.
+     */
+    static void addTickets(StubDatabase db, int count, int trains, int seatsPerTrain, int passengers) {
+        LocalDate firstDate = LocalDate.now().plusDays(1);
+        List<Map<String, Object>> rows = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            int perTrain = i / trains;
+            Map<String, Object> row = new LinkedHashMap<>();
+            row.put("pnr", pnr(i));
+            row.put("username", "passenger" + (i % passengers));
+            row.put("booked_by", "passenger" + (i % passengers));
+            row.put("train_number", trainNumber(i % trains));
+            row.put("seat_number", Seat.label(perTrain % seatsPerTrain + 1));
+            row.put("travel_date", firstDate.plusDays(perTrain / seatsPerTrain).toString());
+            row.put("status", "ACTIVE");
+            rows.add(row);
+        }
+        db.setRows("tickets", rows);
+    }
+}
@@ -0,0 +1,92 @@
+package com.booking.bench;
+
+import com.booking.model.Ticket;
+import com.booking.model.Train;
+import com.booking.model.User;
+import com.booking.service.AuthService;
+import com.booking.service.BookingService;
+import com.booking.service.EmbeddedDatabase;
+import com.booking.service.SchemaMigrator;
+import com.booking.service.SeatInventory;
+import com.booking.service.TrainService;
+
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.LocalDate;
+import java.util.List;
+
+/**
+ * End-to-end pass over the embedded H2 database: migrates the schema, registers and logs in
+ * a mixed-case user, books whole-route and per-leg seats, cancels, restarts the services and
+ * checks the history rows. Throws on the first failed check.
+ *
+ * <pre>
+ * java -cp target/benchmarks.jar com.booking.bench.EmbeddedSmokeCheck
+ * </pre>
+ */
+public final class EmbeddedSmokeCheck {
+
+    private static final String PASSWORD = "smoke-test";
+
+    private EmbeddedSmokeCheck() { }
+
+    public static void main(String[] args) throws Exception {
+        try (EmbeddedDatabase db = new EmbeddedDatabase()) {
+            db.init();
+            check("migrations are already applied", new SchemaMigrator(db).migrate() == 0);
+
+            AuthService auth = new AuthService(db);
+            check("register Alice", auth.register("Alice", PASSWORD));
+            check("login as Alice", auth.login("Alice", PASSWORD) != null);
+            check("login as alice", auth.login("alice", PASSWORD) != null);
+            check("ALICE is taken", !auth.register("ALICE", PASSWORD));
+            User alice = auth.login("Alice", PASSWORD);
+
+            TrainService trains = new TrainService(db);
+            check("add train", trains.addTrain("SMOKE1", "Smoke Express", List.of("Mumbai", "Pune", "Delhi"), 2));
+            Train train = trains.findTrain("SMOKE1");
+            SeatInventory inventory = trains.getSeatInventory();
+            String date = LocalDate.now().plusDays(1).toString();
+
+            try (BookingService booking = new BookingService(trains, db)) {
+                Ticket whole = booking.createTickets(alice, train, 1, date).get(0);
+                Ticket first = booking.createTickets(alice, train, 1, date, 0, 1).get(0);
+                Ticket second = booking.createTickets(alice, train, 1, date, 1, 2).get(0);
+                check("legs share a seat", first.getSeat().getSeatNumber().equals(second.getSeat().getSeatNumber()));
+                check("sold out for the whole route", inventory.getAvailableSeatCount(train, date) == 0);
+                check("cancel", booking.cancelTicket(whole));
+                check("second cancel refused", !booking.cancelTicket(whole));
+                check("seat free after cancel", inventory.getAvailableSeatCount(train, date) == 1);
+                check("upcoming tickets listed", booking.findTicketsByPassenger(alice).size() == 2);
+            }
+
+            TrainService restarted = new TrainService(db);
+            try (BookingService booking = new BookingService(restarted, db)) {
+                Train reloaded = restarted.findTrain("SMOKE1");
+                check("restart restores the seats", restarted.getSeatInventory().getAvailableSeatCount(reloaded, date) == 1
+                        && !reloaded.isSeatFree(first(booking, alice).getSeat().getSeatNumber(), date, 0, 2));
+            }
+
+            check("history rows carry the user", count(db, "SELECT COUNT(*) FROM user_history WHERE user_id IS NOT NULL") == 4);
+            check("cancelled ticket holds no legs", count(db, "SELECT COUNT(*) FROM ticket_legs") == 2);
+        }
+        System.out.println("Embedded smoke check passed");
+    }
+
+    private static Ticket first(BookingService booking, User user) {
+        return booking.findTicketsByPassenger(user).get(0);
+    }
+
+    private static long count(EmbeddedDatabase db, String sql) throws SQLException {
+        try (Connection c = db.getConnection(); Statement s = c.createStatement(); ResultSet rs = s.executeQuery(sql)) {
+            return rs.next() ? rs.getLong(1) : -1;
+        }
+    }
+
+    private static void check(String what, boolean ok) {
+        if (!ok) throw new IllegalStateException("Smoke check failed: " + what);
+        System.out.println("ok  " + what);
+    }
+}
@@ -0,0 +1,68 @@
+package com.booking.bench;
+
+/**
+ * Log-linear latency histogram: every power-of-two range is split into 64 linear
+ * sub-buckets, so any recorded value is reported within about 3%. Not thread-safe;
+ * record per thread and {@link #merge} afterwards.
+ */
+final class LatencyHistogram {
+
+    private static final int SUB_BITS = 6;
+    private static final int SUB_COUNT = 1 << SUB_BITS;
+
+    private final long[] counts = new long[(64 - SUB_BITS + 1) * SUB_COUNT];
+    private long total;
+    private long sum;
+    private long max;
+
+    void record(long value) {
+        if (value < 0) value = 0;
+        counts[indexOf(value)]++;
+        total++;
+        sum += value;
+        if (value > max) max = value;
+    }
+
+    void merge(LatencyHistogram other) {
+        for (int i = 0; i < counts.length; i++) counts[i] += other.counts[i];
+        total += other.total;
+        sum += other.sum;
+        max = Math.max(max, other.max);
+    }
+
+    long count() {
+        return total;
+    }
+
+    long max() {
+        return max;
+    }
+
+    double mean() {
+        return total == 0 ? 0.0 : (double) sum / total;
+    }
+
+    /** @param quantile between 0 and 1, e.g. 0.999 */
+    long valueAt(double quantile) {
+        if (total == 0) return 0;
+        long rank = (long) Math.ceil(quantile * total);
+        if (rank < 1) rank = 1;
+        long seen = 0;
+        for (int i = 0; i < counts.length; i++) {
+            seen += counts[i];
+            if (seen >= rank) return Math.min(max, highestValueAt(i));
+        }
+        return max;
+    }
+
+    private static int indexOf(long value) {
+        int bucket = Math.max(0, 64 - Long.numberOfLeadingZeros(value) - SUB_BITS);
+        return (bucket << SUB_BITS) + (int) (value >>> bucket);
+    }
+
+    private static long highestValueAt(int index) {
+        int bucket = index >>> SUB_BITS;
+        long sub = index & (SUB_COUNT - 1);
+        return (sub << bucket) + (1L << bucket) - 1;
+    }
+}
@@ -0,0 +1,383 @@
+package com.booking.bench;
+
+import com.booking.exception.DatabaseException;
+import com.booking.exception.ValidationException;
+import com.booking.model.Ticket;
+import com.booking.model.Train;
+import com.booking.model.User;
+import com.booking.service.AuthService;
+import com.booking.service.BookingService;
+import com.booking.service.Database;
+import com.booking.service.DatabaseProvider;
+import com.booking.service.EmbeddedDatabase;
+import com.booking.service.PooledDatabase;
+import com.booking.service.ProfilingDatabase;
+import com.booking.service.TrainService;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.SplittableRandom;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Closed-loop load test of the service layer: each virtual user logs in, then runs a
+ * weighted mix of bookings, searches and cancellations back to back until the run ends.
+ * A share of the bookings goes to a few hot trains to reproduce flash-sale skew.
+ * Throughput and latency percentiles per operation are printed and written as JSON.
+ *
+ * <pre>
+ * java -cp target/benchmarks.jar com.booking.bench.LoadGenerator \
+ *     --users=32 --duration=60 --mix=book:60,search:30,cancel:10 --hotShare=0.8 --db=stub
+ * </pre>
+ *
+ * {@code --db=stub} answers SQL from canned rows so only Java-side cost is measured;
+ * {@code --db=embedded} runs against an in-process H2 database, and {@code --db=mysql}
+ * uses the database configured in {@code .env}; both go through the connection pool.
+ * {@code --profile=true} wraps the database in a {@link ProfilingDatabase} and prints the
+ * busiest SQL shapes after the run.
+ */
+public final class LoadGenerator {
+
+    private static final int MAX_RETRIES = 3;
+    private static final String PASSWORD = "load-test";
+
+    private final Map<String, String> options;
+    private final int users;
+    private final int durationSeconds;
+    private final int warmupSeconds;
+    private final int trains;
+    private final int stations;
+    private final int seats;
+    private final int hotTrains;
+    private final double hotShare;
+    private final int maxGroupSize;
+    private final int dateSpread;
+    private final int[] mix = new int[Op.values().length];
+    private final int mixTotal;
+
+    private TrainService trainService;
+    private BookingService bookingService;
+    private AuthService authService;
+    private List<Train> catalogue;
+    private volatile boolean recording;
+    private volatile boolean running = true;
+
+    private LoadGenerator(Map<String, String> options) {
+        this.options = options;
+        this.users = intOption("users", 16);
+        this.durationSeconds = intOption("duration", 30);
+        this.warmupSeconds = intOption("warmup", 5);
+        this.trains = intOption("trains", 200);
+        this.stations = intOption("stations", 500);
+        this.seats = intOption("seats", 500);
+        this.hotTrains = Math.max(1, Math.min(intOption("hotTrains", 5), trains));
+        this.hotShare = Double.parseDouble(options.getOrDefault("hotShare", "0.8"));
+        this.maxGroupSize = Math.max(1, intOption("groupSize", 4));
+        this.dateSpread = Math.max(1, intOption("dates", 7));
+
+        int total = 0;
+        for (String part : options.getOrDefault("mix", "book:60,search:30,cancel:10").split(",")) {
+            String[] kv = part.split(":");
+            Op op = Op.valueOf(kv[0].trim().toUpperCase(Locale.ROOT));
+            mix[op.ordinal()] = Integer.parseInt(kv[1].trim());
+            total += mix[op.ordinal()];
+        }
+        if (total <= 0) throw new IllegalArgumentException("Operation mix must have a positive weight");
+        this.mixTotal = total;
+    }
+
+    public static void main(String[] args) throws Exception {
+        Map<String, String> options = new HashMap<>();
+        for (String arg : args) {
+            if (!arg.startsWith("--") || !arg.contains("=")) throw new IllegalArgumentException("Expected --name=value, got " + arg);
+            options.put(arg.substring(2, arg.indexOf('=')), arg.substring(arg.indexOf('=') + 1));
+        }
+        new LoadGenerator(options).run();
+    }
+
+    private int intOption(String name, int fallback) {
+        String v = options.get(name);
+        return v == null ? fallback : Integer.parseInt(v.trim());
+    }
+
+    private void run() throws Exception {
+        String dbKind = options.getOrDefault("db", "stub");
+        DatabaseProvider db = createDatabase(dbKind);
+        if (Boolean.parseBoolean(options.getOrDefault("profile", "false"))) {
+            db = new ProfilingDatabase(db, 0);
+        }
+        try {
+            trainService = new TrainService(db);
+            if (!"stub".equals(dbKind)) seedTrains();
+            catalogue = trainService.getAllTrains();
+            authService = new AuthService(db);
+            bookingService = new BookingService(trainService, db);
+
+            ExecutorService pool = Executors.newFixedThreadPool(users);
+            CountDownLatch started = new CountDownLatch(users);
+            List<Future<Worker>> futures = new ArrayList<>();
+            for (int i = 0; i < users; i++) {
+                Worker w = new Worker(i, started);
+                futures.add(pool.submit(() -> {
+                    w.run();
+                    return w;
+                }));
+            }
+            started.await();
+            TimeUnit.SECONDS.sleep(warmupSeconds);
+            recording = true;
+            long start = System.nanoTime();
+            TimeUnit.SECONDS.sleep(durationSeconds);
+            recording = false;
+            double elapsed = (System.nanoTime() - start) / 1e9;
+            running = false;
+
+            Stats[] totals = new Stats[Op.values().length];
+            for (Op op : Op.values()) totals[op.ordinal()] = new Stats();
+            for (Future<Worker> f : futures) {
+                Worker w = f.get();
+                for (Op op : Op.values()) totals[op.ordinal()].merge(w.stats[op.ordinal()]);
+            }
+            pool.shutdown();
+            bookingService.close();
+
+            String report = report(dbKind, elapsed, totals);
+            System.out.println(report);
+            Path out = Paths.get(options.getOrDefault("report", "load-report.json"));
+            Files.write(out, report.getBytes(StandardCharsets.UTF_8));
+            System.out.println("Report written to " + out.toAbsolutePath());
+            if (db instanceof ProfilingDatabase) {
+                System.out.println("Busiest SQL shapes:");
+                System.out.print(((ProfilingDatabase) db).report(15));
+            }
+        } finally {
+            if (db instanceof ProfilingDatabase) ((ProfilingDatabase) db).close();
+            else if (db instanceof PooledDatabase) ((PooledDatabase) db).close();
+        }
+    }
+
+    private DatabaseProvider createDatabase(String kind) {
+        switch (kind) {
+            case "stub":
+                StubDatabase stub = Catalogue.stubWithTrains(trains, stations, 8, seats);
+                List<Map<String, Object>> rows = new ArrayList<>();
+                for (int i = 0; i < users; i++) {
+                    Map<String, Object> row = new LinkedHashMap<>();
+                    row.put("id", i + 1);
+                    row.put("username", username(i));
+                    row.put("password", PASSWORD);
+                    row.put("role", "PASSENGER");
+                    rows.add(row);
+                }
+                stub.setRows("users", rows);
+                return stub;
+            case "embedded":
+                return new PooledDatabase(new EmbeddedDatabase(), Math.max(10, users), 10_000, 300_000, 0, 2);
+            case "mysql":
+                return new PooledDatabase(new Database(), Math.max(10, users), 10_000, 300_000, 0, 2);
+            default:
+                throw new IllegalArgumentException("Unknown --db " + kind + " (expected stub, embedded or mysql)");
+        }
+    }
+
+    /** Against a real database, trains and users are created once and reused by later runs. */
+    private void seedTrains() {
+        SplittableRandom random = new SplittableRandom(42);
+        for (int i = 0; i < trains; i++) {
+            if (trainService.findTrain(Catalogue.trainNumber(i)) != null) continue;
+            List<String> route = new ArrayList<>();
+            for (int s = 0; s < 8; s++) route.add(Catalogue.station(random.nextInt(stations)));
+            trainService.addTrain(Catalogue.trainNumber(i), "Express " + i, route, seats);
+        }
+    }
+
+    private static String username(int i) {
+        return "loaduser" + i;
+    }
+
+    private String report(String dbKind, double elapsed, Stats[] totals) {
+        StringBuilder json = new StringBuilder(1024);
+        json.append("{\n");
+        json.append("  \"timestamp\": \"").append(Instant.now()).append("\",\n");
+        json.append("  \"config\": {")
+                .append("\"db\": \"").append(dbKind).append("\", ")
+                .append("\"users\": ").append(users).append(", ")
+                .append("\"durationSeconds\": ").append(durationSeconds).append(", ")
+                .append("\"warmupSeconds\": ").append(warmupSeconds).append(", ")
+                .append("\"trains\": ").append(trains).append(", ")
+                .append("\"seats\": ").append(seats).append(", ")
+                .append("\"hotTrains\": ").append(hotTrains).append(", ")
+                .append("\"hotShare\": ").append(hotShare).append(", ")
+                .append("\"maxGroupSize\": ").append(maxGroupSize).append("},\n");
+        json.append("  \"elapsedSeconds\": ").append(String.format(Locale.ROOT, "%.3f", elapsed)).append(",\n");
+
+        long all = 0;
+        for (Stats s : totals) all += s.latency.count();
+        json.append("  \"throughputPerSecond\": ").append(String.format(Locale.ROOT, "%.1f", all / elapsed)).append(",\n");
+        json.append("  \"seatsBookedPerSecond\": ")
+                .append(String.format(Locale.ROOT, "%.1f", totals[Op.BOOK.ordinal()].seatsBooked / elapsed)).append(",\n");
+        json.append("  \"operations\": {\n");
+        Op[] ops = Op.values();
+        for (int i = 0; i < ops.length; i++) {
+            Stats s = totals[ops[i].ordinal()];
+            LatencyHistogram h = s.latency;
+            json.append("    \"").append(ops[i].name().toLowerCase(Locale.ROOT)).append("\": {")
+                    .append("\"count\": ").append(h.count()).append(", ")
+                    .append("\"perSecond\": ").append(String.format(Locale.ROOT, "%.1f", h.count() / elapsed)).append(", ")
+                    .append("\"rejected\": ").append(s.rejected).append(", ")
+                    .append("\"retries\": ").append(s.retries).append(", ")
+                    .append("\"failures\": ").append(s.failures).append(", ")
+                    .append("\"latencyMicros\": {")
+                    .append("\"mean\": ").append(micros((long) h.mean())).append(", ")
+                    .append("\"p50\": ").append(micros(h.valueAt(0.50))).append(", ")
+                    .append("\"p90\": ").append(micros(h.valueAt(0.90))).append(", ")
+                    .append("\"p99\": ").append(micros(h.valueAt(0.99))).append(", ")
+                    .append("\"p999\": ").append(micros(h.valueAt(0.999))).append(", ")
+                    .append("\"max\": ").append(micros(h.max())).append("}}")
+                    .append(i < ops.length - 1 ? ",\n" : "\n");
+        }
+        json.append("  }\n}\n");
+        return json.toString();
+    }
+
+    private static String micros(long nanos) {
+        return String.format(Locale.ROOT, "%.1f", nanos / 1000.0);
+    }
+
+    private enum Op { BOOK, SEARCH, CANCEL }
+
+    private static final class Stats {
+        final LatencyHistogram latency = new LatencyHistogram();
+        long rejected;
+        long retries;
+        long failures;
+        long seatsBooked;
+
+        void merge(Stats other) {
+            latency.merge(other.latency);
+            rejected += other.rejected;
+            retries += other.retries;
+            failures += other.failures;
+            seatsBooked += other.seatsBooked;
+        }
+    }
+
+    private final class Worker {
+        private final SplittableRandom random;
+        private final CountDownLatch started;
+        private final Stats[] stats = new Stats[Op.values().length];
+        private final List<Ticket> held = new ArrayList<>();
+        private final String username;
+        private User user;
+
+        private Worker(int id, CountDownLatch started) {
+            this.random = new SplittableRandom(1000 + id);
+            this.started = started;
+            this.username = username(id);
+            for (Op op : Op.values()) stats[op.ordinal()] = new Stats();
+        }
+
+        private void run() {
+            try {
+                user = authService.login(username, PASSWORD);
+                if (user == null && authService.register(username, PASSWORD)) {
+                    user = authService.login(username, PASSWORD);
+                }
+            } finally {
+                started.countDown();
+            }
+            if (user == null) throw new IllegalStateException("Could not log in as " + username);
+
+            while (running) {
+                Op op = pickOp();
+                if (op == Op.CANCEL && held.isEmpty()) op = Op.SEARCH;
+                Stats s = stats[op.ordinal()];
+                long t0 = System.nanoTime();
+                boolean ok = execute(op, s);
+                long took = System.nanoTime() - t0;
+                if (recording && ok) s.latency.record(took);
+            }
+        }
+
+        private Op pickOp() {
+            int r = random.nextInt(mixTotal);
+            for (Op op : Op.values()) {
+                r -= mix[op.ordinal()];
+                if (r < 0) return op;
+            }
+            return Op.SEARCH;
+        }
+
+        /** @return false if the operation failed with an error rather than a business outcome */
+        private boolean execute(Op op, Stats s) {
+            for (int attempt = 0; ; attempt++) {
+                try {
+                    switch (op) {
+                        case BOOK:
+                            book(s);
+                            break;
+                        case SEARCH:
+                            search();
+                            break;
+                        case CANCEL:
+                            cancel();
+                            break;
+                    }
+                    return true;
+                } catch (ValidationException e) {
+                    if (recording) s.rejected++;
+                    return true;
+                } catch (DatabaseException e) {
+                    if (attempt < MAX_RETRIES) {
+                        if (recording) s.retries++;
+                        continue;
+                    }
+                    if (recording) s.failures++;
+                    return false;
+                } catch (RuntimeException e) {
+                    if (recording) s.failures++;
+                    return false;
+                }
+            }
+        }
+
+        private void book(Stats s) {
+            Train train = random.nextDouble() < hotShare
+                    ? catalogue.get(random.nextInt(hotTrains))
+                    : catalogue.get(random.nextInt(catalogue.size()));
+            String date = LocalDate.now().plusDays(1 + random.nextInt(dateSpread)).toString();
+            int groupSize = 1 + random.nextInt(maxGroupSize);
+            List<Ticket> booked = bookingService.createTickets(user, train, groupSize, date);
+            held.addAll(booked);
+            if (recording) s.seatsBooked += booked.size();
+        }
+
+        private void search() {
+            String from = Catalogue.station(random.nextInt(stations));
+            String to = Catalogue.station(random.nextInt(stations));
+            String date = LocalDate.now().plusDays(1 + random.nextInt(dateSpread)).toString();
+            for (Train t : trainService.searchTrains(from, to)) {
+                trainService.getSeatInventory().getAvailableSeatCount(t, date);
+            }
+        }
+
+        private void cancel() {
+            Ticket t = held.remove(random.nextInt(held.size()));
+            bookingService.cancelTicket(t);
+        }
+    }
+}
@@ -0,0 +1,69 @@
+package com.booking.bench;
+
+import com.booking.util.PnrGenerator;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.security.SecureRandom;
+import java.time.Instant;
+import java.util.Base64;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * PNR generation cost alone and under contention, against the SecureRandom/Base64
+ * generator used before ids became time/node/sequence based.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PnrGeneratorBenchmark {
+
+    private static final SecureRandom RANDOM = new SecureRandom();
+
+    @Benchmark
+    public String generate() {
+        return PnrGenerator.generate();
+    }
+
+    @Benchmark
+    @Threads(8)
+    public String generateContended() {
+        return PnrGenerator.generate();
+    }
+
+    /** A group booking of eight. */
+    @Benchmark
+    public String[] generateBulk() {
+        return PnrGenerator.generate(8);
+    }
+
+    @Benchmark
+    public String legacyGenerate() {
+        return legacy();
+    }
+
+    @Benchmark
+    @Threads(8)
+    public String legacyGenerateContended() {
+        return legacy();
+    }
+
+    private static String legacy() {
+        long ts = Instant.now().toEpochMilli();
+        byte[] rand = new byte[6];
+        RANDOM.nextBytes(rand);
+        String r = Base64.getUrlEncoder().withoutPadding().encodeToString(rand);
+        String tsHex = Long.toHexString(ts);
+        if (tsHex.length() > 6) tsHex = tsHex.substring(tsHex.length() - 6);
+        return (tsHex + "-" + r).toUpperCase();
+    }
+}
@@ -0,0 +1,82 @@
+package com.booking.bench;
+
+import com.booking.model.SeatMap;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Group seat allocation on a fragmented seat map: adjacent seats through the free-run index,
+ * against taking the lowest free seats as allocation did before. Each allocation is released
+ * again so every invocation sees the same map. The partial journey runs over the last two of
+ * four legs, on a map where some seats are sold only for the first two.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SeatAllocationBenchmark {
+
+    @Param({ "100", "1000", "10000" })
+    public int seatCount;
+
+    @Param({ "2", "6" })
+    public int groupSize;
+
+    @Param({ "whole", "partial" })
+    public String journey;
+
+    private SeatMap map;
+    private long mask;
+
+    @Setup
+    public void setup() {
+        boolean partial = journey.equals("partial");
+        map = new SeatMap(seatCount, 4);
+        mask = partial ? SeatMap.legMask(2, 4) : map.getFullMask();
+        // two thirds booked at random leaves mostly short runs; for the partial journey half of
+        // those are sold only up to stop 2, so its free runs differ from the whole route's
+        Random random = new Random(5);
+        for (int i = 1; i <= seatCount; i++) {
+            int r = random.nextInt(6);
+            if (r >= 4) continue;
+            map.book(i, partial && r < 2 ? SeatMap.legMask(0, 2) : map.getFullMask());
+        }
+        // the index is built by the first group allocation; keep that out of the measurement
+        map.findFree(2, mask);
+    }
+
+    @Benchmark
+    public int[] allocateGroup() {
+        int[] seats = map.allocate(groupSize, mask);
+        for (int s : seats) map.release(s, mask);
+        return seats;
+    }
+
+    @Benchmark
+    public int[] lowestFreeSeats() {
+        int[] seats = new int[groupSize];
+        int seat = 0;
+        for (int i = 0; i < groupSize; i++) {
+            seat = map.nextFree(seat + 1, mask);
+            seats[i] = seat;
+        }
+        for (int s : seats) map.book(s, mask);
+        for (int s : seats) map.release(s, mask);
+        return seats;
+    }
+}
@@ -0,0 +1,80 @@
+package com.booking.bench;
+
+import com.booking.model.Ticket;
+import com.booking.model.Train;
+import com.booking.model.User;
+import com.booking.service.AuditLog;
+import com.booking.service.AuthService;
+import com.booking.service.BookingService;
+import com.booking.service.EmbeddedDatabase;
+import com.booking.service.SeatChangeLog;
+import com.booking.service.TicketRegistry;
+import com.booking.service.TrainService;
+
+import java.time.LocalDate;
+import java.util.List;
+
+/**
+ * Two instances sharing one embedded H2 database, each with its own seat change log: books
+ * on the first, polls the second and checks its seat map and registry picked the ticket up,
+ * then cancels on the second and checks the first frees the seat. Throws on the first failed
+ * check.
+ *
+ * <pre>
+ * java -cp target/benchmarks.jar com.booking.bench.SeatChangeLogCheck
+ * </pre>
+ */
+public final class SeatChangeLogCheck {
+
+    private static final String PASSWORD = "change-log";
+    private static final long GAP_TIMEOUT_MILLIS = 5000;
+
+    private SeatChangeLogCheck() { }
+
+    public static void main(String[] args) throws Exception {
+        try (EmbeddedDatabase db = new EmbeddedDatabase()) {
+            db.init();
+            AuthService auth = new AuthService(db);
+            check("register Bob", auth.register("Bob", PASSWORD));
+            User bob = auth.login("Bob", PASSWORD);
+
+            TrainService trainsA = new TrainService(db);
+            check("add train", trainsA.addTrain("SYNC1", "Sync Express", List.of("Chennai", "Bengaluru", "Mysuru"), 4));
+            TrainService trainsB = new TrainService(db);
+            Train trainA = trainsA.findTrain("SYNC1");
+            Train trainB = trainsB.findTrain("SYNC1");
+            String date = LocalDate.now().plusDays(1).toString();
+
+            TicketRegistry ticketsA = new TicketRegistry();
+            TicketRegistry ticketsB = new TicketRegistry();
+            try (AuditLog audit = new AuditLog(db);
+                 SeatChangeLog logA = new SeatChangeLog(db, trainsA, ticketsA, 1, GAP_TIMEOUT_MILLIS, 0);
+                 SeatChangeLog logB = new SeatChangeLog(db, trainsB, ticketsB, 2, GAP_TIMEOUT_MILLIS, 0);
+                 BookingService a = new BookingService(trainsA, db, ticketsA, audit, 100, null, logA);
+                 BookingService b = new BookingService(trainsB, db, ticketsB, audit, 100, null, logB)) {
+
+                Ticket ticket = a.createTickets(bob, trainA, 1, date, 0, 1).get(0);
+                String seat = ticket.getSeat().getSeatNumber();
+                check("A holds the seat", !trainsA.getSeatInventory().isFree(trainA, date, seat, 0, 1));
+                check("B has not polled yet", trainsB.getSeatInventory().isFree(trainB, date, seat, 0, 1));
+
+                check("B applies one change", logB.poll() == 1);
+                check("B's seat map shows the seat", !trainsB.getSeatInventory().isFree(trainB, date, seat, 0, 1));
+                check("B keeps the other leg free", trainsB.getSeatInventory().isFree(trainB, date, seat, 1, 2));
+                check("B's registry has the ticket", ticketsB.findByPnr(ticket.getPnrNumber()) != null);
+                check("A skips its own change", logA.poll() == 0);
+
+                check("cancel on B", b.cancelTicket(ticketsB.findByPnr(ticket.getPnrNumber())));
+                check("A applies the cancel", logA.poll() == 1);
+                check("A frees the seat", trainsA.getSeatInventory().isFree(trainA, date, seat, 0, 1));
+                check("A's registry drops the ticket", ticketsA.findByPnr(ticket.getPnrNumber()) == null);
+            }
+        }
+        System.out.println("Seat change log check passed");
+    }
+
+    private static void check(String what, boolean ok) {
+        if (!ok) throw new IllegalStateException("Seat change log check failed: " + what);
+        System.out.println("ok  " + what);
+    }
+}
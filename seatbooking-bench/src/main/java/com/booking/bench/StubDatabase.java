@@ -0,0 +1,115 @@
+package com.booking.bench;
+
+import com.booking.service.DatabaseProvider;
+
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * DatabaseProvider that needs no server: queries are answered from canned rows
+ * registered per table, updates succeed without effect. Lets the benchmarks drive
+ * the real service classes while measuring only Java-side work.
+ */
+public class StubDatabase implements DatabaseProvider {
+
+    private final Map<String, List<Map<String, Object>>> tables = new ConcurrentHashMap<>();
+
+    public void setRows(String table, List<Map<String, Object>> rows) {
+        tables.put(table.toLowerCase(), rows);
+    }
+
+    @Override
+    public Connection getConnection() {
+        return (Connection) Proxy.newProxyInstance(Connection.class.getClassLoader(),
+                new Class<?>[] { Connection.class }, (proxy, method, args) -> {
+                    switch (method.getName()) {
+                        case "prepareStatement":
+                            return statement((String) args[0]);
+                        case "createStatement":
+                            return statement(null);
+                        case "getAutoCommit":
+                        case "isValid":
+                            return true;
+                        default:
+                            return defaultValue(method.getReturnType());
+                    }
+                });
+    }
+
+    @Override
+    public void init() {
+    }
+
+    private Object statement(String preparedSql) {
+        Class<?> type = preparedSql != null ? PreparedStatement.class : Statement.class;
+        return Proxy.newProxyInstance(type.getClassLoader(), new Class<?>[] { type }, (proxy, method, args) -> {
+            switch (method.getName()) {
+                case "executeQuery":
+                    return resultSet(rowsFor(preparedSql != null ? preparedSql : (String) args[0]));
+                case "executeUpdate":
+                    return 1;
+                case "executeBatch":
+                    return new int[0];
+                default:
+                    return defaultValue(method.getReturnType());
+            }
+        });
+    }
+
+    private List<Map<String, Object>> rowsFor(String sql) {
+        String lower = sql.toLowerCase();
+        for (Map.Entry<String, List<Map<String, Object>>> e : tables.entrySet()) {
+            if (lower.contains("from " + e.getKey())) return e.getValue();
+        }
+        return Collections.emptyList();
+    }
+
+    private static ResultSet resultSet(List<Map<String, Object>> rows) {
+        List<String> columns = rows.isEmpty() ? Collections.emptyList() : new ArrayList<>(rows.get(0).keySet());
+        int[] cursor = { -1 };
+        return (ResultSet) Proxy.newProxyInstance(ResultSet.class.getClassLoader(),
+                new Class<?>[] { ResultSet.class }, (proxy, method, args) -> {
+                    switch (method.getName()) {
+                        case "next":
+                            return ++cursor[0] < rows.size();
+                        case "findColumn":
+                            int idx = columns.indexOf(((String) args[0]).toLowerCase());
+                            if (idx < 0) throw new SQLException("Unknown column " + args[0]);
+                            return idx + 1;
+                        case "getString":
+                        case "getObject":
+                        case "getInt":
+                        case "getLong":
+                        case "getTimestamp":
+                        case "getDate":
+                            Object key = args[0];
+                            String column = key instanceof Integer ? columns.get((Integer) key - 1) : ((String) key).toLowerCase();
+                            Object value = rows.get(cursor[0]).get(column);
+                            if (method.getReturnType() == String.class) return value == null ? null : value.toString();
+                            if (value == null) return defaultValue(method.getReturnType());
+                            return value;
+                        case "wasNull":
+                            return false;
+                        default:
+                            return defaultValue(method.getReturnType());
+                    }
+                });
+    }
+
+    private static Object defaultValue(Class<?> type) {
+        if (type == boolean.class) return false;
+        if (type == int.class) return 0;
+        if (type == long.class) return 0L;
+        if (type == double.class) return 0.0;
+        return null;
+    }
+}
@@ -0,0 +1,101 @@
+package com.booking.bench;
+
+import com.booking.model.Ticket;
+import com.booking.service.BookingService;
+import com.booking.service.TrainService;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Ticket lookups against registry size, and hydration: building the registry and seat maps
+ * from the active tickets at startup.
+ */
+@State(Scope.Benchmark)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class TicketBenchmark {
+
+    private static final int TRAINS = 100;
+
+    @Param({ "1000", "100000" })
+    public int ticketCount;
+
+    @Param({ "200" })
+    public int seatCount;
+
+    private StubDatabase db;
+    private BookingService bookingService;
+    private String[] pnrs;
+    private int next;
+
+    @Setup
+    public void setup() {
+        db = Catalogue.stubWithTrains(TRAINS, 500, 8, seatCount);
+        Catalogue.addTickets(db, ticketCount, TRAINS, seatCount, Math.max(1, ticketCount / 4));
+        bookingService = new BookingService(new TrainService(db), db);
+
+        Random random = new Random(11);
+        pnrs = new String[1024];
+        for (int i = 0; i < pnrs.length; i++) pnrs[i] = Catalogue.pnr(random.nextInt(ticketCount));
+    }
+
+    @TearDown
+    public void tearDown() {
+        bookingService.close();
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.AverageTime)
+    @OutputTimeUnit(TimeUnit.NANOSECONDS)
+    public Ticket findTicketByPnr() {
+        String pnr = pnrs[next];
+        next = (next + 1) & (pnrs.length - 1);
+        return bookingService.findTicketByPnr(pnr);
+    }
+
+    /** A PNR that is not in memory falls through to a primary-key read of the tickets table. */
+    @Benchmark
+    @BenchmarkMode(Mode.AverageTime)
+    @OutputTimeUnit(TimeUnit.NANOSECONDS)
+    public Ticket findTicketByPnrMiss() {
+        return bookingService.findTicketByPnr("NO-SUCH-PNR");
+    }
+
+    /** Fresh services per call, so every hydration starts from empty seat maps. */
+    @State(Scope.Thread)
+    public static class Fresh {
+        TrainService trainService;
+
+        @Setup(Level.Invocation)
+        public void setup(TicketBenchmark bench) {
+            trainService = new TrainService(bench.db);
+        }
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.SingleShotTime)
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    @Warmup(iterations = 5)
+    @Measurement(iterations = 20)
+    public int hydrate(Fresh fresh) {
+        try (BookingService hydrated = new BookingService(fresh.trainService, db)) {
+            return hydrated.getTicketRegistry().size();
+        }
+    }
+}
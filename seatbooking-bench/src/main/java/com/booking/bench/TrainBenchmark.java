@@ -0,0 +1,84 @@
+package com.booking.bench;
+
+import com.booking.model.Train;
+import com.booking.service.SeatInventory;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Per-train hot paths used by search and booking: the stop-order check and the free-seat
+ * count, read directly and through the striped {@link SeatInventory} lock.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class TrainBenchmark {
+
+    @Param({ "8", "32" })
+    public int stops;
+
+    @Param({ "100", "1000" })
+    public int seatCount;
+
+    private Train train;
+    private SeatInventory inventory;
+    private String date;
+    private String firstStop;
+    private String lastStop;
+
+    @Setup
+    public void setup() {
+        List<String> route = new ArrayList<>(stops);
+        for (int i = 0; i < stops; i++) route.add(Catalogue.station(i));
+        train = new Train(Catalogue.trainNumber(0), "Express 0", route, seatCount);
+        inventory = new SeatInventory();
+        date = LocalDate.now().plusDays(1).toString();
+        firstStop = route.get(0);
+        lastStop = route.get(stops - 1);
+
+        // book a random half of the seats so counts are not trivially full or empty
+        Random random = new Random(3);
+        for (int i = 1; i <= seatCount; i++) {
+            if (random.nextBoolean()) train.getSeatMap(date).book(i);
+        }
+    }
+
+    @Benchmark
+    public boolean hasStopsForward() {
+        return train.hasStops(firstStop, lastStop);
+    }
+
+    @Benchmark
+    public boolean hasStopsReverse() {
+        return train.hasStops(lastStop, firstStop);
+    }
+
+    @Benchmark
+    public int availableSeatCount() {
+        return train.getAvailableSeatCount(date);
+    }
+
+    @Benchmark
+    public int availableSeatCountLocked() {
+        return inventory.getAvailableSeatCount(train, date);
+    }
+}
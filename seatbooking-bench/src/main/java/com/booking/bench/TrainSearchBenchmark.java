@@ -0,0 +1,77 @@
+package com.booking.bench;
+
+import com.booking.model.Train;
+import com.booking.service.TrainService;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Search latency against catalogue size: the station index behind
+ * {@link TrainService#searchTrains} versus the previous full scan over {@link Train#hasStops}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class TrainSearchBenchmark {
+
+    @Param({ "100", "1000", "10000" })
+    public int catalogueSize;
+
+    @Param({ "500" })
+    public int stationCount;
+
+    private TrainService trainService;
+    private String[][] queries;
+    private int next;
+
+    @Setup
+    public void setup() {
+        trainService = new TrainService(Catalogue.stubWithTrains(catalogueSize, stationCount, 8, 100));
+
+        Random random = new Random(7);
+        queries = new String[1024][];
+        for (int i = 0; i < queries.length; i++) {
+            queries[i] = new String[] { Catalogue.station(random.nextInt(stationCount)), Catalogue.station(random.nextInt(stationCount)) };
+        }
+    }
+
+    private String[] nextQuery() {
+        String[] q = queries[next];
+        next = (next + 1) & (queries.length - 1);
+        return q;
+    }
+
+    @Benchmark
+    public List<Train> indexedSearch() {
+        String[] q = nextQuery();
+        return trainService.searchTrains(q[0], q[1]);
+    }
+
+    @Benchmark
+    public List<Train> linearScan() {
+        String[] q = nextQuery();
+        List<Train> result = new ArrayList<>();
+        for (Train t : trainService.getAllTrains()) {
+            if (t.hasStops(q[0], q[1])) result.add(t);
+        }
+        return result;
+    }
+}
@@ -0,0 +1,493 @@
+package com.booking.api;
+
+import com.booking.exception.AuthException;
+import com.booking.exception.DatabaseException;
+import com.booking.exception.ValidationException;
+import com.booking.model.PassengerBookings;
+import com.booking.model.Role;
+import com.booking.model.Seat;
+import com.booking.model.Ticket;
+import com.booking.model.Train;
+import com.booking.model.User;
+import com.booking.service.AuthProvider;
+import com.booking.service.BookingService;
+import com.booking.service.SeatInventory;
+import com.booking.service.TrainService;
+import com.booking.util.InputValidator;
+import com.booking.util.PnrGenerator;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.lang.reflect.Method;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * HTTP/JSON front end over {@link TrainService} and {@link BookingService}, on the JDK's
+ * built-in server. Each exchange runs on its own virtual thread when the runtime has them
+ * (Java 21+), otherwise on a bounded platform pool. A semaphore caps in-flight requests
+ * and answers 503 beyond it. Requests other than search, seat map and health need HTTP
+ * Basic credentials of a registered user.
+ *
+ * <pre>
+ * GET    /health
+ * GET    /trains/search?from=..&amp;to=..[&amp;date=..]
+ * GET    /trains/{number}/seats?date=..[&amp;from=..&amp;to=..]
+ * POST   /bookings          {"trainNumber", "date", "seats" | "seatNumber"[, "from", "to"]}
+ * POST   /bookings/group    {"trainNumber", "date", "usernames": [..][, "from", "to"]}
+ * DELETE /bookings/{pnr}
+ * GET    /passengers/{username}/bookings[?limit=..]
+ * </pre>
+ * {@code from} and {@code to} name stops on the train's route; either one left out means the
+ * route's first or last stop, so seats sold for other legs can be resold. A bookings
+ * {@code limit} must be at least 1 and is capped at the default limit the server was given.
+ */
+public class ApiServer implements AutoCloseable {
+
+    private static final Logger LOGGER = Logger.getLogger(ApiServer.class.getName());
+
+    private static final int MAX_BODY_BYTES = 64 * 1024;
+    private static final int MAX_GROUP_SIZE = 100;
+
+    private final AuthProvider authService;
+    private final TrainService trainService;
+    private final BookingService bookingService;
+    private final HttpServer server;
+    private final ExecutorService executor;
+    private final Semaphore inFlight;
+    private final long acquireTimeoutMillis;
+    private final int shutdownGraceSeconds;
+    private final int defaultBookingsLimit;
+    private final boolean virtualThreads;
+    private final AtomicBoolean closed = new AtomicBoolean(false);
+
+    public ApiServer(AuthProvider authService, TrainService trainService, BookingService bookingService,
+                     int port, int maxConcurrent, long acquireTimeoutMillis, int shutdownGraceSeconds,
+                     int defaultBookingsLimit) throws IOException {
+        if (maxConcurrent < 1) throw new IllegalArgumentException("Concurrency limit must be at least 1");
+        this.authService = authService;
+        this.trainService = trainService;
+        this.bookingService = bookingService;
+        this.inFlight = new Semaphore(maxConcurrent);
+        this.acquireTimeoutMillis = acquireTimeoutMillis;
+        this.shutdownGraceSeconds = shutdownGraceSeconds;
+        this.defaultBookingsLimit = defaultBookingsLimit;
+
+        ExecutorService virtual = newVirtualThreadExecutor();
+        this.virtualThreads = virtual != null;
+        this.executor = virtual != null ? virtual : newPlatformExecutor(maxConcurrent);
+
+        this.server = HttpServer.create(new InetSocketAddress(port), 0);
+        this.server.setExecutor(executor);
+        this.server.createContext("/", this::handle);
+    }
+
+    /** Uses Executors.newVirtualThreadPerTaskExecutor when present; this module targets Java 17. */
+    private static ExecutorService newVirtualThreadExecutor() {
+        try {
+            Method factory = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+            return (ExecutorService) factory.invoke(null);
+        } catch (ReflectiveOperationException | UnsupportedOperationException e) {
+            return null;
+        }
+    }
+
+    private static ExecutorService newPlatformExecutor(int threads) {
+        AtomicInteger ids = new AtomicInteger();
+        return Executors.newFixedThreadPool(threads, r -> {
+            Thread t = new Thread(r, "http-worker-" + ids.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        });
+    }
+
+    public void start() {
+        server.start();
+        LOGGER.info("HTTP API listening on port " + getPort() + (virtualThreads ? " (virtual threads)" : " (platform thread pool)"));
+    }
+
+    public int getPort() {
+        return server.getAddress().getPort();
+    }
+
+    public boolean usesVirtualThreads() {
+        return virtualThreads;
+    }
+
+    /**
+     * Stops accepting connections, lets in-flight exchanges finish within the grace period,
+     * then stops the worker threads.
+     */
+    @Override
+    public void close() {
+        if (!closed.compareAndSet(false, true)) return;
+        LOGGER.info("HTTP API shutting down, waiting up to " + shutdownGraceSeconds + "s for in-flight requests");
+        server.stop(shutdownGraceSeconds);
+        executor.shutdown();
+        try {
+            if (!executor.awaitTermination(shutdownGraceSeconds, TimeUnit.SECONDS)) executor.shutdownNow();
+        } catch (InterruptedException e) {
+            executor.shutdownNow();
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        try (exchange) {
+            if (closed.get()) {
+                send(exchange, 503, error("Server is shutting down"));
+                return;
+            }
+            boolean acquired;
+            try {
+                acquired = inFlight.tryAcquire(acquireTimeoutMillis, TimeUnit.MILLISECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                acquired = false;
+            }
+            if (!acquired) {
+                exchange.getResponseHeaders().set("Retry-After", "1");
+                send(exchange, 503, error("Too many concurrent requests"));
+                return;
+            }
+            try {
+                route(exchange);
+            } catch (ApiException e) {
+                send(exchange, e.status, error(e.getMessage()));
+            } catch (ValidationException e) {
+                send(exchange, 409, error(e.getMessage()));
+            } catch (AuthException e) {
+                send(exchange, 401, error(e.getMessage()));
+            } catch (DatabaseException e) {
+                LOGGER.log(Level.WARNING, "Database error serving " + exchange.getRequestURI(), e);
+                send(exchange, 503, error("Database unavailable"));
+            } catch (RuntimeException e) {
+                LOGGER.log(Level.SEVERE, "Unexpected error serving " + exchange.getRequestURI(), e);
+                send(exchange, 500, error("Internal error"));
+            } finally {
+                inFlight.release();
+            }
+        }
+    }
+
+    private void route(HttpExchange exchange) throws IOException {
+        String method = exchange.getRequestMethod();
+        String[] path = segments(exchange.getRequestURI().getRawPath());
+        Map<String, String> query = query(exchange.getRequestURI().getRawQuery());
+
+        if (path.length == 1 && path[0].equals("health")) {
+            requireMethod(method, "GET");
+            send(exchange, 200, Map.of("status", "UP", "inFlightPermits", inFlight.availablePermits()));
+        } else if (path.length == 2 && path[0].equals("trains") && path[1].equals("search")) {
+            requireMethod(method, "GET");
+            send(exchange, 200, search(query));
+        } else if (path.length == 3 && path[0].equals("trains") && path[2].equals("seats")) {
+            requireMethod(method, "GET");
+            send(exchange, 200, seatMap(path[1], query));
+        } else if (path.length == 1 && path[0].equals("bookings")) {
+            requireMethod(method, "POST");
+            send(exchange, 201, book(authenticate(exchange), readBody(exchange)));
+        } else if (path.length == 2 && path[0].equals("bookings") && path[1].equals("group")) {
+            requireMethod(method, "POST");
+            send(exchange, 201, groupBook(authenticate(exchange), readBody(exchange)));
+        } else if (path.length == 2 && path[0].equals("bookings")) {
+            requireMethod(method, "DELETE");
+            send(exchange, 200, cancel(authenticate(exchange), path[1]));
+        } else if (path.length == 3 && path[0].equals("passengers") && path[2].equals("bookings")) {
+            requireMethod(method, "GET");
+            send(exchange, 200, bookings(authenticate(exchange), path[1], query));
+        } else {
+            throw new ApiException(404, "No such resource");
+        }
+    }
+
+    private Object search(Map<String, String> query) {
+        String from = required(query, "from");
+        String to = required(query, "to");
+        String date = query.get("date");
+        if (date != null) requireTravelDate(date);
+        List<Object> result = new ArrayList<>();
+        for (Train t : trainService.searchTrains(from, to)) {
+            Map<String, Object> row = trainJson(t);
+            if (date != null) {
+                int[] journey = journey(t, from, to);
+                row.put("availableSeats", trainService.getSeatInventory().getAvailableSeatCount(t, date, journey[0], journey[1]));
+            }
+            result.add(row);
+        }
+        return result;
+    }
+
+    private Object seatMap(String trainNumber, Map<String, String> query) {
+        Train train = requireTrain(trainNumber);
+        String date = required(query, "date");
+        requireTravelDate(date);
+        SeatInventory inventory = trainService.getSeatInventory();
+        Map<String, Object> body = trainJson(train);
+        body.put("date", date);
+        if (query.get("from") == null && query.get("to") == null) {
+            body.put("availableSeats", inventory.getAvailableSeatCount(train, date));
+            body.put("bookedSeats", inventory.getBookedSeatNumbers(train, date));
+            return body;
+        }
+        // seats free on some legs but not all of the journey count as booked for it
+        int[] journey = journey(train, query.get("from"), query.get("to"));
+        List<Seat> free = inventory.getAvailableSeats(train, date, journey[0], journey[1]);
+        List<String> booked = new ArrayList<>();
+        int next = 0;
+        for (int n = 1; n <= train.getTotalSeats(); n++) {
+            if (next < free.size() && free.get(next).getNumber() == n) next++; else booked.add(Seat.label(n));
+        }
+        body.put("from", train.getStop(journey[0]));
+        body.put("to", train.getStop(journey[1]));
+        body.put("availableSeats", free.size());
+        body.put("bookedSeats", booked);
+        return body;
+    }
+
+    private Object book(User user, Map<String, Object> body) {
+        Train train = requireTrain(string(body, "trainNumber", true));
+        String date = string(body, "date", true);
+        requireTravelDate(date);
+        int[] journey = journey(train, string(body, "from", false), string(body, "to", false));
+
+        String seatNumber = string(body, "seatNumber", false);
+        if (seatNumber != null) {
+            Seat seat = train.getSeat(seatNumber);
+            if (seat == null) throw new ApiException(400, "Train " + train.getTrainNumber() + " has no seat " + seatNumber);
+            if (trainService.findSeat(train, seatNumber, date, journey[0], journey[1]) == null) {
+                throw new ApiException(409, "Seat " + seat.getSeatNumber() + " is already booked on " + date + " for part of this journey");
+            }
+            Ticket ticket = bookingService.createTicket(user, train, seat, date, journey[0], journey[1]);
+            if (ticket == null) throw new DatabaseException("Ticket could not be stored");
+            return ticketsJson(List.of(ticket));
+        }
+
+        Object seats = body.getOrDefault("seats", 1L);
+        if (!(seats instanceof Long) || (Long) seats < 1 || (Long) seats > MAX_GROUP_SIZE) {
+            throw new ApiException(400, "seats must be a whole number between 1 and " + MAX_GROUP_SIZE);
+        }
+        return ticketsJson(bookingService.createTickets(user, train, ((Long) seats).intValue(), date, journey[0], journey[1]));
+    }
+
+    private Object groupBook(User user, Map<String, Object> body) {
+        Train train = requireTrain(string(body, "trainNumber", true));
+        String date = string(body, "date", true);
+        requireTravelDate(date);
+        int[] journey = journey(train, string(body, "from", false), string(body, "to", false));
+        Object raw = body.get("usernames");
+        if (!(raw instanceof List) || ((List<?>) raw).isEmpty() || ((List<?>) raw).size() > MAX_GROUP_SIZE) {
+            throw new ApiException(400, "usernames must be a list of 1 to " + MAX_GROUP_SIZE + " names");
+        }
+        List<String> usernames = new ArrayList<>();
+        for (Object o : (List<?>) raw) {
+            if (!(o instanceof String) || !InputValidator.isValidUsername((String) o)) {
+                throw new ApiException(400, "Invalid username in usernames: " + o);
+            }
+            usernames.add((String) o);
+        }
+        return ticketsJson(bookingService.createTicketsForUsernames(usernames, train, date, user.getUsername(), journey[0], journey[1]));
+    }
+
+    private Object cancel(User user, String pnr) {
+        pnr = decode(pnr);
+        Ticket ticket = bookingService.findTicketByPnr(pnr);
+        if (ticket == null) {
+            // tickets from older releases have PNRs without a check symbol, so only reject after the lookup
+            if (!PnrGenerator.isWellFormed(pnr)) throw new ApiException(400, "Not a valid PNR: " + pnr);
+            throw new ApiException(404, "No active ticket with PNR " + pnr);
+        }
+        boolean owner = user.getUsername().equalsIgnoreCase(ticket.getBookedBy())
+                || user.getUsername().equalsIgnoreCase(ticket.getPassenger().getUsername());
+        if (!owner && user.getRole() != Role.ADMIN) throw new ApiException(403, "Not your ticket");
+        if (!bookingService.cancelTicket(ticket)) throw new ApiException(409, "Ticket " + pnr + " could not be cancelled");
+        return Map.of("pnr", ticket.getPnrNumber(), "status", "CANCELLED");
+    }
+
+    private Object bookings(User user, String username, Map<String, String> query) {
+        username = decode(username);
+        if (!user.getUsername().equalsIgnoreCase(username) && user.getRole() != Role.ADMIN) {
+            throw new ApiException(403, "Not your bookings");
+        }
+        int limit = defaultBookingsLimit;
+        if (query.containsKey("limit")) {
+            int requested;
+            try {
+                requested = Integer.parseInt(query.get("limit"));
+            } catch (NumberFormatException e) {
+                throw new ApiException(400, "limit must be a number");
+            }
+            if (requested < 1) throw new ApiException(400, "limit must be at least 1");
+            limit = defaultBookingsLimit > 0 ? Math.min(requested, defaultBookingsLimit) : requested;
+        }
+        PassengerBookings result = bookingService.findBookingsByPassenger(new User(username, "", Role.PASSENGER), limit);
+        Map<String, Object> body = new LinkedHashMap<>();
+        body.put("upcoming", ticketsJson(result.getUpcoming()));
+        body.put("past", ticketsJson(result.getPast()));
+        body.put("cancelled", ticketsJson(result.getCancelled()));
+        body.put("truncated", result.isTruncated());
+        return body;
+    }
+
+    private User authenticate(HttpExchange exchange) {
+        String header = exchange.getRequestHeaders().getFirst("Authorization");
+        if (header != null && header.regionMatches(true, 0, "Basic ", 0, 6)) {
+            String decoded;
+            try {
+                decoded = new String(Base64.getDecoder().decode(header.substring(6).trim()), StandardCharsets.UTF_8);
+            } catch (IllegalArgumentException e) {
+                decoded = "";
+            }
+            int colon = decoded.indexOf(':');
+            if (colon > 0) {
+                User user = authService.authenticate(decoded.substring(0, colon), decoded.substring(colon + 1));
+                if (user != null) return user;
+            }
+        }
+        exchange.getResponseHeaders().set("WWW-Authenticate", "Basic realm=\"seatbooking\"");
+        throw new ApiException(401, "Valid credentials required");
+    }
+
+    private Train requireTrain(String trainNumber) {
+        Train train = trainService.findTrain(decode(trainNumber));
+        if (train == null) throw new ApiException(404, "No train " + trainNumber);
+        return train;
+    }
+
+    private static void requireTravelDate(String date) {
+        if (!InputValidator.isValidDate(date)) throw new ApiException(400, "Invalid date format. Expected YYYY-MM-DD.");
+        if (!InputValidator.isNotPastDate(date)) throw new ApiException(400, "Travel date cannot be before today.");
+    }
+
+    private static void requireMethod(String actual, String expected) {
+        if (!expected.equals(actual)) throw new ApiException(405, "Use " + expected);
+    }
+
+    /** @return {fromStop, toStop}; a missing station means the first or last stop */
+    private static int[] journey(Train train, String from, String to) {
+        int fromStop = from == null ? 0 : train.indexOfStop(from);
+        int toStop = to == null ? train.getLastStop() : train.indexOfStop(to);
+        if (!train.isValidJourney(fromStop, toStop)) {
+            throw new ApiException(400, "Train " + train.getTrainNumber() + " does not run from "
+                    + (from == null ? train.getStop(0) : from) + " to " + (to == null ? train.getStop(train.getLastStop()) : to));
+        }
+        return new int[] { fromStop, toStop };
+    }
+
+    private static String required(Map<String, String> query, String name) {
+        String v = query.get(name);
+        if (v == null || v.isBlank()) throw new ApiException(400, "Missing query parameter " + name);
+        return v;
+    }
+
+    private static String string(Map<String, Object> body, String name, boolean required) {
+        Object v = body.get(name);
+        if (v == null && !required) return null;
+        if (!(v instanceof String) || ((String) v).isBlank()) throw new ApiException(400, "Missing or invalid field " + name);
+        return (String) v;
+    }
+
+    private static Map<String, Object> readBody(HttpExchange exchange) throws IOException {
+        try (InputStream in = exchange.getRequestBody()) {
+            byte[] bytes = in.readNBytes(MAX_BODY_BYTES + 1);
+            if (bytes.length > MAX_BODY_BYTES) throw new ApiException(413, "Request body too large");
+            try {
+                return Json.parseObject(new String(bytes, StandardCharsets.UTF_8));
+            } catch (ValidationException e) {
+                throw new ApiException(400, e.getMessage());
+            }
+        }
+    }
+
+    private static Map<String, Object> trainJson(Train t) {
+        Map<String, Object> row = new LinkedHashMap<>();
+        row.put("trainNumber", t.getTrainNumber());
+        row.put("trainName", t.getTrainName());
+        row.put("route", t.getRoute());
+        row.put("totalSeats", t.getTotalSeats());
+        return row;
+    }
+
+    private static List<Object> ticketsJson(List<Ticket> tickets) {
+        List<Object> list = new ArrayList<>(tickets.size());
+        for (Ticket t : tickets) {
+            Map<String, Object> row = new LinkedHashMap<>();
+            row.put("pnr", t.getPnrNumber());
+            row.put("passenger", t.getPassenger().getUsername());
+            row.put("bookedBy", t.getBookedBy());
+            row.put("trainNumber", t.getTrain().getTrainNumber());
+            row.put("trainName", t.getTrain().getTrainName());
+            row.put("seatNumber", t.getSeat().getSeatNumber());
+            row.put("date", t.getTravelDate());
+            row.put("from", t.getTrain().getStop(t.getFromStop()));
+            row.put("to", t.getTrain().getStop(t.getToStop()));
+            list.add(row);
+        }
+        return list;
+    }
+
+    private static Map<String, Object> error(String message) {
+        return Map.of("error", message == null ? "" : message);
+    }
+
+    private static void send(HttpExchange exchange, int status, Object body) throws IOException {
+        byte[] bytes = Json.write(body).getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", "application/json; charset=utf-8");
+        exchange.sendResponseHeaders(status, bytes.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(bytes);
+        }
+    }
+
+    private static String[] segments(String rawPath) {
+        String trimmed = rawPath == null ? "" : rawPath.replaceAll("^/+|/+$", "");
+        return trimmed.isEmpty() ? new String[0] : trimmed.split("/+");
+    }
+
+    private static Map<String, String> query(String rawQuery) {
+        Map<String, String> params = new HashMap<>();
+        if (rawQuery == null || rawQuery.isEmpty()) return params;
+        for (String pair : rawQuery.split("&")) {
+            int eq = pair.indexOf('=');
+            if (eq <= 0) continue;
+            params.put(decode(pair.substring(0, eq)), decode(pair.substring(eq + 1)));
+        }
+        return params;
+    }
+
+    private static String decode(String s) {
+        try {
+            return URLDecoder.decode(s, StandardCharsets.UTF_8);
+        } catch (IllegalArgumentException e) {
+            throw new ApiException(400, "Malformed URL encoding");
+        }
+    }
+
+    private static final class ApiException extends RuntimeException {
+        private final int status;
+
+        private ApiException(int status, String message) {
+            super(message);
+            this.status = status;
+        }
+    }
+}
@@ -0,0 +1,240 @@
+package com.booking.api;
+
+import com.booking.exception.ValidationException;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Just enough JSON for the HTTP API: a recursive-descent parser for request bodies and a
+ * writer for maps, lists, strings, numbers and booleans.
+ */
+final class Json {
+
+    private Json() { }
+
+    static Map<String, Object> parseObject(String text) {
+        Parser p = new Parser(text == null ? "" : text);
+        p.skipWhitespace();
+        Object value = p.readValue();
+        p.skipWhitespace();
+        if (!p.atEnd()) throw p.error("Unexpected trailing content");
+        if (!(value instanceof Map)) throw new ValidationException("Request body must be a JSON object");
+        @SuppressWarnings("unchecked")
+        Map<String, Object> map = (Map<String, Object>) value;
+        return map;
+    }
+
+    static String write(Object value) {
+        StringBuilder sb = new StringBuilder(256);
+        write(sb, value);
+        return sb.toString();
+    }
+
+    private static void write(StringBuilder sb, Object value) {
+        if (value == null) {
+            sb.append("null");
+        } else if (value instanceof String) {
+            quote(sb, (String) value);
+        } else if (value instanceof Number || value instanceof Boolean) {
+            sb.append(value);
+        } else if (value instanceof Map) {
+            sb.append('{');
+            Iterator<? extends Map.Entry<?, ?>> it = ((Map<?, ?>) value).entrySet().iterator();
+            while (it.hasNext()) {
+                Map.Entry<?, ?> e = it.next();
+                quote(sb, String.valueOf(e.getKey()));
+                sb.append(':');
+                write(sb, e.getValue());
+                if (it.hasNext()) sb.append(',');
+            }
+            sb.append('}');
+        } else if (value instanceof Iterable) {
+            sb.append('[');
+            Iterator<?> it = ((Iterable<?>) value).iterator();
+            while (it.hasNext()) {
+                write(sb, it.next());
+                if (it.hasNext()) sb.append(',');
+            }
+            sb.append(']');
+        } else {
+            quote(sb, value.toString());
+        }
+    }
+
+    private static void quote(StringBuilder sb, String s) {
+        sb.append('"');
+        for (int i = 0; i < s.length(); i++) {
+            char ch = s.charAt(i);
+            switch (ch) {
+                case '"': sb.append("\\\""); break;
+                case '\\': sb.append("\\\\"); break;
+                case '\n': sb.append("\\n"); break;
+                case '\r': sb.append("\\r"); break;
+                case '\t': sb.append("\\t"); break;
+                default:
+                    if (ch < 0x20) sb.append(String.format("\\u%04x", (int) ch)); else sb.append(ch);
+            }
+        }
+        sb.append('"');
+    }
+
+    private static final class Parser {
+        private static final int MAX_DEPTH = 32;
+
+        private final String s;
+        private int pos;
+        private int depth;
+
+        private Parser(String s) {
+            this.s = s;
+        }
+
+        private boolean atEnd() {
+            return pos >= s.length();
+        }
+
+        private ValidationException error(String message) {
+            return new ValidationException("Malformed JSON at offset " + pos + ": " + message);
+        }
+
+        private void skipWhitespace() {
+            while (pos < s.length() && Character.isWhitespace(s.charAt(pos))) pos++;
+        }
+
+        private Object readValue() {
+            if (atEnd()) throw error("Unexpected end of input");
+            char ch = s.charAt(pos);
+            switch (ch) {
+                case '{': return readObject();
+                case '[': return readArray();
+                case '"': return readString();
+                case 't': return readLiteral("true", Boolean.TRUE);
+                case 'f': return readLiteral("false", Boolean.FALSE);
+                case 'n': return readLiteral("null", null);
+                default:
+                    if (ch == '-' || (ch >= '0' && ch <= '9')) return readNumber();
+                    throw error("Unexpected character '" + ch + "'");
+            }
+        }
+
+        private Map<String, Object> readObject() {
+            if (++depth > MAX_DEPTH) throw error("Nesting too deep");
+            Map<String, Object> map = new LinkedHashMap<>();
+            pos++;
+            skipWhitespace();
+            if (peek('}')) {
+                pos++;
+                depth--;
+                return map;
+            }
+            while (true) {
+                skipWhitespace();
+                if (!peek('"')) throw error("Expected a field name");
+                String key = readString();
+                skipWhitespace();
+                expect(':');
+                skipWhitespace();
+                map.put(key, readValue());
+                skipWhitespace();
+                if (peek(',')) {
+                    pos++;
+                    continue;
+                }
+                expect('}');
+                depth--;
+                return map;
+            }
+        }
+
+        private List<Object> readArray() {
+            if (++depth > MAX_DEPTH) throw error("Nesting too deep");
+            List<Object> list = new ArrayList<>();
+            pos++;
+            skipWhitespace();
+            if (peek(']')) {
+                pos++;
+                depth--;
+                return list;
+            }
+            while (true) {
+                skipWhitespace();
+                list.add(readValue());
+                skipWhitespace();
+                if (peek(',')) {
+                    pos++;
+                    continue;
+                }
+                expect(']');
+                depth--;
+                return list;
+            }
+        }
+
+        private String readString() {
+            pos++;
+            StringBuilder sb = new StringBuilder();
+            while (true) {
+                if (atEnd()) throw error("Unterminated string");
+                char ch = s.charAt(pos++);
+                if (ch == '"') return sb.toString();
+                if (ch != '\\') {
+                    sb.append(ch);
+                    continue;
+                }
+                if (atEnd()) throw error("Unterminated escape");
+                char esc = s.charAt(pos++);
+                switch (esc) {
+                    case '"': case '\\': case '/': sb.append(esc); break;
+                    case 'b': sb.append('\b'); break;
+                    case 'f': sb.append('\f'); break;
+                    case 'n': sb.append('\n'); break;
+                    case 'r': sb.append('\r'); break;
+                    case 't': sb.append('\t'); break;
+                    case 'u':
+                        if (pos + 4 > s.length()) throw error("Truncated unicode escape");
+                        try {
+                            sb.append((char) Integer.parseInt(s.substring(pos, pos + 4), 16));
+                        } catch (NumberFormatException e) {
+                            throw error("Invalid unicode escape");
+                        }
+                        pos += 4;
+                        break;
+                    default:
+                        throw error("Invalid escape '\\" + esc + "'");
+                }
+            }
+        }
+
+        private Object readNumber() {
+            int start = pos;
+            if (peek('-')) pos++;
+            while (pos < s.length() && "0123456789.eE+-".indexOf(s.charAt(pos)) >= 0) pos++;
+            String n = s.substring(start, pos);
+            try {
+                if (n.indexOf('.') < 0 && n.indexOf('e') < 0 && n.indexOf('E') < 0) return Long.parseLong(n);
+                return Double.parseDouble(n);
+            } catch (NumberFormatException e) {
+                throw error("Invalid number '" + n + "'");
+            }
+        }
+
+        private Object readLiteral(String literal, Object value) {
+            if (!s.startsWith(literal, pos)) throw error("Expected " + literal);
+            pos += literal.length();
+            return value;
+        }
+
+        private boolean peek(char ch) {
+            return pos < s.length() && s.charAt(pos) == ch;
+        }
+
+        private void expect(char ch) {
+            if (!peek(ch)) throw error("Expected '" + ch + "'");
+            pos++;
+        }
+    }
+}
@@ -1,30 +1,177 @@
 package com.booking;
 
+import com.booking.api.ApiServer;
+import com.booking.metrics.MetricsRegistry;
+import com.booking.service.AuditLog;
 import com.booking.service.AuthProvider;
 import com.booking.service.AuthService;
 import com.booking.service.TrainService;
 import com.booking.service.BookingService;
 import com.booking.service.Database;
+import com.booking.service.DatabaseProvider;
+import com.booking.service.EmbeddedDatabase;
+import com.booking.service.OccupancySnapshot;
+import com.booking.service.PooledDatabase;
+import com.booking.service.ProfilingDatabase;
+import com.booking.service.SeatChangeLog;
+import com.booking.service.TicketRegistry;
+import com.booking.service.UserCache;
 import com.booking.exception.AuthException;
 import com.booking.exception.DatabaseException;
+import com.booking.util.AppConfig;
 import com.booking.util.AppUI;
+import com.booking.util.PnrGenerator;
 
+import java.io.IOException;
+import java.nio.file.Paths;
+import java.util.Arrays;
 import java.util.Scanner;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
 
 public class Main {
     public static void main(String[] args) {
-        Database db;
+        DatabaseProvider db = null;
+        AuditLog auditLog = null;
+        OccupancySnapshot snapshot = null;
+        SeatChangeLog changeLog = null;
         try {
-            db = new Database();
-            AuthProvider authService = new AuthService(db);
+            db = createDatabase();
+            UserCache userCache = new UserCache(db, AppConfig.getUserCacheMaxSize(), AppConfig.getUserCacheTtlMillis());
+            startMetrics(db, userCache);
+            AuthProvider authService = new AuthService(db, userCache);
             TrainService trainService = new TrainService(db);
-            BookingService bookingService = new BookingService(trainService, db);
+            TicketRegistry tickets = new TicketRegistry(AppConfig.isTicketRegistryHotOnly());
+            auditLog = new AuditLog(db, userCache,
+                    AppConfig.getAuditQueueCapacity(),
+                    AppConfig.getAuditBatchSize(),
+                    AppConfig.getAuditFlushIntervalMillis(),
+                    AppConfig.getAuditOfferTimeoutMillis(),
+                    Paths.get(AppConfig.getAuditSpillFile()));
+            snapshot = createSnapshot(trainService, db);
+            long pollMillis = AppConfig.getChangePollIntervalMillis();
+            if (pollMillis > 0) {
+                // a derived node id can repeat across instances, which would then skip each other's changes
+                if (!PnrGenerator.isNodeIdConfigured()) {
+                    System.err.println("Fatal: CHANGE_POLL_INTERVAL_MS needs PNR_NODE_ID set to a different value on every instance");
+                    return;
+                }
+                changeLog = new SeatChangeLog(db, trainService, tickets, PnrGenerator.getNodeId(),
+                        AppConfig.getChangeLogGapTimeoutMillis(),
+                        AppConfig.getChangeLogRetentionSeconds());
+            }
+            BookingService bookingService = new BookingService(trainService, db, tickets, auditLog, AppConfig.getStartupFetchSize(), snapshot, changeLog);
+            if (changeLog != null) {
+                changeLog.start(pollMillis);
+            }
+            if (snapshot != null && AppConfig.getSnapshotIntervalSeconds() > 0) {
+                snapshot.startPeriodicWrite(AppConfig.getSnapshotIntervalSeconds());
+            }
+
+            if (AppConfig.isHttpEnabled() || Arrays.asList(args).contains("--http")) {
+                serveHttp(authService, trainService, bookingService);
+                return;
+            }
 
             Scanner scanner = new Scanner(System.in);
             AppUI ui = new AppUI(authService, trainService, bookingService, scanner);
             ui.run();
         } catch (AuthException | DatabaseException e) {
             System.err.println("Fatal: failed to initialize application: " + e.getMessage());
+        } catch (IOException e) {
+            System.err.println("Fatal: failed to start HTTP server: " + e.getMessage());
+        } finally {
+            if (changeLog != null) {
+                changeLog.close();
+            }
+            if (snapshot != null) {
+                snapshot.close();
+            }
+            if (auditLog != null) {
+                auditLog.close();
+            }
+            if (db instanceof ProfilingDatabase) {
+                ((ProfilingDatabase) db).close();
+            } else if (db instanceof PooledDatabase) {
+                ((PooledDatabase) db).close();
+            } else if (db instanceof EmbeddedDatabase) {
+                ((EmbeddedDatabase) db).close();
+            }
+            MetricsRegistry.getDefault().close();
+        }
+    }
+
+    private static void startMetrics(DatabaseProvider db, UserCache userCache) {
+        MetricsRegistry metrics = MetricsRegistry.getDefault();
+        metrics.gauge("users.cache.size", userCache::size);
+        metrics.gauge("users.cache.hits", userCache::getHitCount);
+        metrics.gauge("users.cache.misses", userCache::getMissCount);
+        DatabaseProvider target = db instanceof ProfilingDatabase ? ((ProfilingDatabase) db).getDelegate() : db;
+        if (target instanceof PooledDatabase) {
+            PooledDatabase pool = (PooledDatabase) target;
+            metrics.gauge("db.pool.active", pool::getActiveCount);
+            metrics.gauge("db.pool.idle", pool::getIdleCount);
+            metrics.gauge("db.pool.timeouts", pool::getTimeoutCount);
+        }
+        if (AppConfig.isMetricsJmxEnabled()) {
+            metrics.registerMBean(MetricsRegistry.DEFAULT_OBJECT_NAME);
+        }
+        String dumpFile = AppConfig.getMetricsDumpFile();
+        if (!dumpFile.isBlank() && AppConfig.getMetricsDumpIntervalSeconds() > 0) {
+            metrics.startPeriodicDump(Paths.get(dumpFile), AppConfig.getMetricsDumpIntervalSeconds());
+        }
+    }
+
+    /** Serves the HTTP API until the JVM is asked to stop, then drains in-flight requests. */
+    private static void serveHttp(AuthProvider authService, TrainService trainService, BookingService bookingService) throws IOException {
+        ApiServer server = new ApiServer(authService, trainService, bookingService,
+                AppConfig.getHttpPort(),
+                AppConfig.getHttpMaxConcurrent(),
+                AppConfig.getHttpAcquireTimeoutMillis(),
+                AppConfig.getHttpShutdownGraceSeconds(),
+                AppConfig.getBookingsViewLimit());
+        CountDownLatch stopped = new CountDownLatch(1);
+        Thread mainThread = Thread.currentThread();
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            server.close();
+            stopped.countDown();
+            // let main's finally block close the audit log and the pool before the JVM exits
+            try {
+                mainThread.join(TimeUnit.SECONDS.toMillis(AppConfig.getHttpShutdownGraceSeconds() + 30L));
+            } catch (InterruptedException ignored) {
+            }
+        }, "http-shutdown"));
+        server.start();
+        System.out.println("Serving HTTP API on port " + server.getPort() + ". Press Ctrl+C to stop.");
+        try {
+            stopped.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            server.close();
+        }
+    }
+
+    private static OccupancySnapshot createSnapshot(TrainService trainService, DatabaseProvider db) {
+        String file = AppConfig.getSnapshotFile();
+        if (file.isBlank()) return null;
+        return new OccupancySnapshot(Paths.get(file), trainService, db,
+                AppConfig.getSnapshotMaxAgeSeconds(),
+                AppConfig.getSnapshotReplayMarginSeconds());
+    }
+
+    private static DatabaseProvider createDatabase() {
+        DatabaseProvider database = "embedded".equals(AppConfig.getDbKind()) ? new EmbeddedDatabase() : new Database();
+        if (AppConfig.isDbPoolEnabled()) {
+            database = new PooledDatabase(database,
+                    AppConfig.getDbPoolMaxSize(),
+                    AppConfig.getDbPoolMaxWaitMillis(),
+                    AppConfig.getDbPoolIdleTimeoutMillis(),
+                    AppConfig.getDbPoolLeakThresholdMillis(),
+                    AppConfig.getDbPoolValidationTimeoutSeconds());
+        }
+        if (AppConfig.isDbProfilingEnabled()) {
+            database = new ProfilingDatabase(database, AppConfig.getDbSlowStatementMillis());
         }
+        return database;
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,21 @@
+package com.booking.metrics;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/** Monotonic count backed by a {@link LongAdder}, so hot paths on many threads do not contend. */
+public final class Counter {
+
+    private final LongAdder count = new LongAdder();
+
+    public void increment() {
+        count.increment();
+    }
+
+    public void add(long n) {
+        count.add(n);
+    }
+
+    public long getCount() {
+        return count.sum();
+    }
+}
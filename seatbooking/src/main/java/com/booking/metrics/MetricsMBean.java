@@ -0,0 +1,82 @@
+package com.booking.metrics;
+
+import javax.management.Attribute;
+import javax.management.AttributeList;
+import javax.management.AttributeNotFoundException;
+import javax.management.DynamicMBean;
+import javax.management.MBeanAttributeInfo;
+import javax.management.MBeanException;
+import javax.management.MBeanInfo;
+import javax.management.MBeanOperationInfo;
+import javax.management.MBeanParameterInfo;
+import javax.management.ReflectionException;
+import java.io.IOException;
+import java.nio.file.Paths;
+import java.util.Map;
+import java.util.SortedMap;
+
+/** Read-only view of a {@link MetricsRegistry}; the attribute list follows the metrics that exist. */
+class MetricsMBean implements DynamicMBean {
+
+    private final MetricsRegistry registry;
+
+    MetricsMBean(MetricsRegistry registry) {
+        this.registry = registry;
+    }
+
+    @Override
+    public Object getAttribute(String attribute) throws AttributeNotFoundException {
+        Number value = registry.snapshot().get(attribute);
+        if (value == null) throw new AttributeNotFoundException(attribute);
+        return value;
+    }
+
+    @Override
+    public AttributeList getAttributes(String[] attributes) {
+        SortedMap<String, Number> values = registry.snapshot();
+        AttributeList list = new AttributeList();
+        for (String name : attributes) {
+            Number value = values.get(name);
+            if (value != null) list.add(new Attribute(name, value));
+        }
+        return list;
+    }
+
+    @Override
+    public void setAttribute(Attribute attribute) throws AttributeNotFoundException {
+        throw new AttributeNotFoundException("Metrics are read-only: " + attribute.getName());
+    }
+
+    @Override
+    public AttributeList setAttributes(AttributeList attributes) {
+        return new AttributeList();
+    }
+
+    @Override
+    public Object invoke(String actionName, Object[] params, String[] signature) throws MBeanException, ReflectionException {
+        if ("dump".equals(actionName) && params != null && params.length == 1 && params[0] instanceof String) {
+            try {
+                registry.dump(Paths.get((String) params[0]));
+                return null;
+            } catch (IOException e) {
+                throw new MBeanException(e, "Could not write metrics to " + params[0]);
+            }
+        }
+        throw new ReflectionException(new NoSuchMethodException(actionName));
+    }
+
+    @Override
+    public MBeanInfo getMBeanInfo() {
+        SortedMap<String, Number> values = registry.snapshot();
+        MBeanAttributeInfo[] attributes = new MBeanAttributeInfo[values.size()];
+        int i = 0;
+        for (Map.Entry<String, Number> e : values.entrySet()) {
+            attributes[i++] = new MBeanAttributeInfo(e.getKey(), e.getValue().getClass().getName(), e.getKey(), true, false, false);
+        }
+        MBeanOperationInfo dump = new MBeanOperationInfo("dump", "Write all metrics to a file",
+                new MBeanParameterInfo[] { new MBeanParameterInfo("path", String.class.getName(), "Target file") },
+                void.class.getName(), MBeanOperationInfo.ACTION);
+        return new MBeanInfo(getClass().getName(), "Seat booking service metrics", attributes, null,
+                new MBeanOperationInfo[] { dump }, null);
+    }
+}
@@ -0,0 +1,213 @@
+package com.booking.metrics;
+
+import javax.management.InstanceAlreadyExistsException;
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.time.Instant;
+import java.util.List;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Named counters, gauges and latency timers for the services. Metrics are created on first
+ * use and live for the life of the registry; recording never takes a lock. The values can be
+ * read as one flat snapshot, browsed over JMX, or written to a text file periodically.
+ */
+public class MetricsRegistry implements AutoCloseable {
+
+    private static final Logger LOGGER = Logger.getLogger(MetricsRegistry.class.getName());
+
+    private static final MetricsRegistry DEFAULT = new MetricsRegistry();
+
+    public static final String DEFAULT_OBJECT_NAME = "com.booking:type=Metrics";
+
+    private final Map<String, Counter> counters = new ConcurrentHashMap<>();
+    private final Map<String, LongSupplier> gauges = new ConcurrentHashMap<>();
+    private final Map<String, Timer> timers = new ConcurrentHashMap<>();
+    private final Map<String, Histogram> histograms = new ConcurrentHashMap<>();
+    private final List<OperationListener> listeners = new CopyOnWriteArrayList<>();
+
+    private ObjectName registeredName;
+    private ScheduledExecutorService dumper;
+    private Path dumpFile;
+
+    /** The registry the services report to. */
+    public static MetricsRegistry getDefault() {
+        return DEFAULT;
+    }
+
+    public Counter counter(String name) {
+        return counters.computeIfAbsent(name, n -> new Counter());
+    }
+
+    public Timer timer(String name) {
+        return timers.computeIfAbsent(name, n -> new Timer(n, this));
+    }
+
+    public Histogram histogram(String name) {
+        return histograms.computeIfAbsent(name, n -> new Histogram());
+    }
+
+    /** Registers or replaces a gauge; the supplier is called whenever the metrics are read. */
+    public void gauge(String name, LongSupplier value) {
+        gauges.put(name, value);
+    }
+
+    public void removeGauge(String name) {
+        gauges.remove(name);
+    }
+
+    public void addListener(OperationListener listener) {
+        listeners.add(listener);
+    }
+
+    public void removeListener(OperationListener listener) {
+        listeners.remove(listener);
+    }
+
+    void fireStart(Operation operation) {
+        if (listeners.isEmpty()) return;
+        for (OperationListener l : listeners) {
+            try {
+                l.onStart(operation);
+            } catch (RuntimeException e) {
+                LOGGER.log(Level.WARNING, "Operation listener failed", e);
+            }
+        }
+    }
+
+    void fireFinish(Operation operation, long elapsedNanos) {
+        if (listeners.isEmpty()) return;
+        for (OperationListener l : listeners) {
+            try {
+                l.onFinish(operation, elapsedNanos);
+            } catch (RuntimeException e) {
+                LOGGER.log(Level.WARNING, "Operation listener failed", e);
+            }
+        }
+    }
+
+    /**
+     * Every metric as a flat name/value map, sorted by name. Timers contribute
+     * {@code .count}, {@code .mean_us}, {@code .p50_us}, {@code .p99_us}, {@code .p999_us}
+     * and {@code .max_us}; histograms the same keys without the unit.
+     */
+    public SortedMap<String, Number> snapshot() {
+        SortedMap<String, Number> values = new TreeMap<>();
+        counters.forEach((name, c) -> values.put(name, c.getCount()));
+        gauges.forEach((name, g) -> {
+            try {
+                values.put(name, g.getAsLong());
+            } catch (RuntimeException e) {
+                LOGGER.log(Level.FINE, "Gauge " + name + " failed", e);
+            }
+        });
+        timers.forEach((name, t) -> {
+            Histogram h = t.getHistogram();
+            values.put(name + ".count", h.getCount());
+            values.put(name + ".mean_us", micros(h.getMean()));
+            values.put(name + ".p50_us", micros(h.getValueAtQuantile(0.50)));
+            values.put(name + ".p99_us", micros(h.getValueAtQuantile(0.99)));
+            values.put(name + ".p999_us", micros(h.getValueAtQuantile(0.999)));
+            values.put(name + ".max_us", micros(h.getMax()));
+        });
+        histograms.forEach((name, h) -> {
+            values.put(name + ".count", h.getCount());
+            values.put(name + ".mean", h.getMean());
+            values.put(name + ".p50", h.getValueAtQuantile(0.50));
+            values.put(name + ".p99", h.getValueAtQuantile(0.99));
+            values.put(name + ".p999", h.getValueAtQuantile(0.999));
+            values.put(name + ".max", h.getMax());
+        });
+        return values;
+    }
+
+    private static double micros(double nanos) {
+        return Math.round(nanos / 100.0) / 10.0;
+    }
+
+    /** Writes the snapshot as {@code name value} lines, replacing the file atomically. */
+    public void dump(Path file) throws IOException {
+        StringBuilder sb = new StringBuilder(4096);
+        sb.append("# ").append(Instant.now()).append('\n');
+        for (Map.Entry<String, Number> e : snapshot().entrySet()) {
+            sb.append(e.getKey()).append(' ').append(e.getValue()).append('\n');
+        }
+        Path dir = file.toAbsolutePath().getParent();
+        if (dir != null) Files.createDirectories(dir);
+        Path tmp = file.resolveSibling(file.getFileName() + ".tmp");
+        Files.write(tmp, sb.toString().getBytes(StandardCharsets.UTF_8));
+        Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /** Dumps to {@code file} every {@code intervalSeconds}, and once more on {@link #close()}. */
+    public synchronized void startPeriodicDump(Path file, long intervalSeconds) {
+        if (dumper != null) throw new IllegalStateException("Periodic metrics dump already running");
+        this.dumpFile = file;
+        this.dumper = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "metrics-dump");
+            t.setDaemon(true);
+            return t;
+        });
+        dumper.scheduleWithFixedDelay(this::dumpQuietly, intervalSeconds, intervalSeconds, TimeUnit.SECONDS);
+    }
+
+    private void dumpQuietly() {
+        try {
+            dump(dumpFile);
+        } catch (IOException | UncheckedIOException e) {
+            LOGGER.log(Level.WARNING, "Could not write metrics to " + dumpFile, e);
+        }
+    }
+
+    /** Exposes the registry as one MBean whose attributes are the snapshot keys. */
+    public synchronized void registerMBean(String objectName) {
+        try {
+            ObjectName name = new ObjectName(objectName);
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            try {
+                server.registerMBean(new MetricsMBean(this), name);
+            } catch (InstanceAlreadyExistsException e) {
+                server.unregisterMBean(name);
+                server.registerMBean(new MetricsMBean(this), name);
+            }
+            registeredName = name;
+        } catch (JMException e) {
+            LOGGER.log(Level.WARNING, "Could not register metrics MBean " + objectName, e);
+        }
+    }
+
+    @Override
+    public synchronized void close() {
+        if (dumper != null) {
+            dumper.shutdownNow();
+            dumper = null;
+            dumpQuietly();
+        }
+        if (registeredName != null) {
+            try {
+                ManagementFactory.getPlatformMBeanServer().unregisterMBean(registeredName);
+            } catch (JMException e) {
+                LOGGER.log(Level.FINE, "Could not unregister metrics MBean", e);
+            }
+            registeredName = null;
+        }
+    }
+}
@@ -0,0 +1,59 @@
+package com.booking.metrics;
+
+/**
+ * One timed call of a service method. Operations nest per thread, so code further down the
+ * stack (e.g. the database layer) can find out which logical operation it is working for.
+ */
+public final class Operation implements AutoCloseable {
+
+    private static final ThreadLocal<Operation> CURRENT = new ThreadLocal<>();
+
+    private final Timer timer;
+    private final MetricsRegistry registry;
+    private final Operation parent;
+    private final long startNanos;
+    private boolean closed;
+
+    Operation(Timer timer, MetricsRegistry registry) {
+        this.timer = timer;
+        this.registry = registry;
+        this.parent = CURRENT.get();
+        CURRENT.set(this);
+        registry.fireStart(this);
+        this.startNanos = System.nanoTime();
+    }
+
+    /** @return the innermost operation running on this thread, or null */
+    public static Operation current() {
+        return CURRENT.get();
+    }
+
+    public String getName() {
+        return timer.getName();
+    }
+
+    public Operation getParent() {
+        return parent;
+    }
+
+    /** @return the outermost operation this one is part of, possibly itself */
+    public Operation getRoot() {
+        Operation op = this;
+        while (op.parent != null) op = op.parent;
+        return op;
+    }
+
+    public long getElapsedNanos() {
+        return System.nanoTime() - startNanos;
+    }
+
+    @Override
+    public void close() {
+        if (closed) return;
+        closed = true;
+        long elapsed = System.nanoTime() - startNanos;
+        timer.record(elapsed);
+        CURRENT.set(parent);
+        registry.fireFinish(this, elapsed);
+    }
+}
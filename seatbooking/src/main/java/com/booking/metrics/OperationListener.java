@@ -0,0 +1,10 @@
+package com.booking.metrics;
+
+/** Notified on the calling thread when a timed operation starts and ends; keep it cheap. */
+public interface OperationListener {
+
+    default void onStart(Operation operation) {
+    }
+
+    void onFinish(Operation operation, long elapsedNanos);
+}
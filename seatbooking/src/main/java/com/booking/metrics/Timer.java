@@ -0,0 +1,60 @@
+package com.booking.metrics;
+
+/** Latency of one named operation, in nanoseconds. */
+public final class Timer {
+
+    private final String name;
+    private final MetricsRegistry registry;
+    private final Histogram latency = new Histogram();
+
+    Timer(String name, MetricsRegistry registry) {
+        this.name = name;
+        this.registry = registry;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * Starts timing on the calling thread; use with try-with-resources so the latency is
+     * recorded however the call ends, or let {@link #time(Call)} do that.
+     */
+    public Operation start() {
+        return new Operation(this, registry);
+    }
+
+    /** @return what the call returns, timed as one operation however it ends */
+    @SuppressWarnings("try")
+    public <T, E extends Exception> T time(Call<T, E> call) throws E {
+        try (Operation ignored = start()) {
+            return call.call();
+        }
+    }
+
+    /** Runs the task, timed as one operation however it ends. */
+    @SuppressWarnings("try")
+    public <E extends Exception> void time(Task<E> task) throws E {
+        try (Operation ignored = start()) {
+            task.run();
+        }
+    }
+
+    public void record(long nanos) {
+        latency.record(nanos);
+    }
+
+    public Histogram getHistogram() {
+        return latency;
+    }
+
+    @FunctionalInterface
+    public interface Call<T, E extends Exception> {
+        T call() throws E;
+    }
+
+    @FunctionalInterface
+    public interface Task<E extends Exception> {
+        void run() throws E;
+    }
+}
@@ -0,0 +1,107 @@
+package com.booking.model;
+
+import java.util.BitSet;
+import java.util.function.IntPredicate;
+
+/**
+ * Segment tree over a row of seats that knows, for every range, the longest run of free seats
+ * and the free runs touching either end. Marking a seat and finding the leftmost run of a
+ * given length are both O(log n), the number of free seats O(1). Seats are indexed from 0 here.
+ * Not thread-safe.
+ */
+final class FreeRunIndex {
+
+    private final int size;
+    private final int[] prefix;
+    private final int[] suffix;
+    private final int[] longest;
+    private int free;
+
+    private FreeRunIndex(int seats) {
+        int s = 1;
+        while (s < seats) s <<= 1;
+        this.size = s;
+        this.prefix = new int[2 * s];
+        this.suffix = new int[2 * s];
+        this.longest = new int[2 * s];
+    }
+
+    /** @return an index where seat i is free when bit i of {@code booked} is clear */
+    static FreeRunIndex ofClearBits(BitSet booked, int seats) {
+        return of(seats, i -> !booked.get(i));
+    }
+
+    /** Builds the tree bottom-up in O(n); padding past {@code seats} counts as taken. */
+    static FreeRunIndex of(int seats, IntPredicate free) {
+        FreeRunIndex index = new FreeRunIndex(seats);
+        for (int i = 0; i < seats; i++) {
+            if (free.test(i)) {
+                index.setLeaf(index.size + i, 1);
+                index.free++;
+            }
+        }
+        for (int node = index.size - 1; node >= 1; node--) index.pull(node, index.size >> depth(node));
+        return index;
+    }
+
+    /** @return the length of the longest free run */
+    int longest() {
+        return longest[1];
+    }
+
+    /** @return the number of free seats */
+    int free() {
+        return free;
+    }
+
+    void set(int seat, boolean free) {
+        int node = size + seat;
+        int v = free ? 1 : 0;
+        if (longest[node] == v) return;
+        this.free += free ? 1 : -1;
+        setLeaf(node, v);
+        for (int len = 2; node > 1; len <<= 1) {
+            node >>= 1;
+            pull(node, len);
+        }
+    }
+
+    /** @return the first seat of the leftmost run of at least {@code length} free seats, or -1 */
+    int findRun(int length) {
+        if (length <= 0 || longest[1] < length) return -1;
+        int node = 1;
+        int lo = 0;
+        for (int len = size; node < size; len >>= 1) {
+            int half = len >> 1;
+            int left = 2 * node;
+            if (longest[left] >= length) {
+                node = left;
+            } else if (suffix[left] + prefix[left + 1] >= length) {
+                return lo + half - suffix[left];
+            } else {
+                node = left + 1;
+                lo += half;
+            }
+        }
+        return lo;
+    }
+
+    private void setLeaf(int node, int v) {
+        prefix[node] = v;
+        suffix[node] = v;
+        longest[node] = v;
+    }
+
+    private void pull(int node, int len) {
+        int half = len >> 1;
+        int l = 2 * node;
+        int r = l + 1;
+        prefix[node] = prefix[l] == half ? half + prefix[r] : prefix[l];
+        suffix[node] = suffix[r] == half ? half + suffix[l] : suffix[r];
+        longest[node] = Math.max(Math.max(longest[l], longest[r]), suffix[l] + prefix[r]);
+    }
+
+    private static int depth(int node) {
+        return 31 - Integer.numberOfLeadingZeros(node);
+    }
+}
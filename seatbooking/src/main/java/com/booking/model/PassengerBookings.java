@@ -0,0 +1,39 @@
+package com.booking.model;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * A passenger's tickets split into upcoming, past and cancelled journeys.
+ */
+public class PassengerBookings {
+
+    private final List<Ticket> upcoming;
+    private final List<Ticket> past;
+    private final List<Ticket> cancelled;
+    private final boolean truncated;
+
+    public PassengerBookings(List<Ticket> upcoming, List<Ticket> past, List<Ticket> cancelled, boolean truncated) {
+        this.upcoming = Collections.unmodifiableList(upcoming);
+        this.past = Collections.unmodifiableList(past);
+        this.cancelled = Collections.unmodifiableList(cancelled);
+        this.truncated = truncated;
+    }
+
+    public List<Ticket> getUpcoming() {
+        return upcoming;
+    }
+
+    public List<Ticket> getPast() {
+        return past;
+    }
+
+    public List<Ticket> getCancelled() {
+        return cancelled;
+    }
+
+    /** @return true if the passenger has more bookings than the requested limit */
+    public boolean isTruncated() {
+        return truncated;
+    }
+}
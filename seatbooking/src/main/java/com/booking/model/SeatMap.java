@@ -0,0 +1,340 @@
+package com.booking.model;
+
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Seat occupancy for one train on one travel date. Seats are numbered from 1 and
+ * stored as bits, so counts are O(1) and free-seat searches scan a word at a time.
+ * Not thread-safe; callers serialise mutations.
+ * <p>
+ * A seat can be sold for part of the route. Leg i runs from stop i to stop i + 1, and each
+ * seat's taken legs are one {@code long} mask, so a seat fits a journey when its mask ANDed
+ * with the journey's mask is zero. The masks are only allocated once a seat is sold for part
+ * of the route; until then every booked seat is booked end to end. Routes with more than 64
+ * legs share the last bit among the trailing legs, which can only make a seat look taken.
+ * <p>
+ * Groups are seated together where possible: {@link #findFree(int, long)} takes the leftmost
+ * run of adjacent free seats long enough for the group, and otherwise splits it over as few
+ * runs as it can. Runs of seats free for the whole route come from a {@link FreeRunIndex}
+ * built on the first group allocation and kept up to date from then on; so are the runs of the
+ * last few partial journeys a group was seated on, which also answer their free-seat counts.
+ */
+public class SeatMap {
+
+    public static final int MAX_LEGS = Long.SIZE;
+    /** partial journeys whose runs are kept indexed; the least recently used is dropped beyond this */
+    private static final int MAX_JOURNEY_INDEXES = 4;
+
+    private final int capacity;
+    private final int legCount;
+    private final long fullMask;
+    /** seats with at least one leg taken */
+    private final BitSet booked;
+    /** taken legs per seat, or null while every booked seat is taken end to end */
+    private long[] legs;
+    private int bookedCount;
+    /** runs of seats with no leg taken, or null until a group is first allocated */
+    private FreeRunIndex runs;
+    /** runs of seats free on a partial journey, by leg mask, or null until one is first indexed */
+    private Map<Long, FreeRunIndex> journeyRuns;
+
+    public SeatMap(int capacity) {
+        this(capacity, 1);
+    }
+
+    public SeatMap(int capacity, int legCount) {
+        this.capacity = capacity;
+        this.legCount = Math.max(1, legCount);
+        this.fullMask = legMask(0, this.legCount);
+        this.booked = new BitSet(capacity);
+    }
+
+    /** @return the mask of legs {@code fromStop} to {@code toStop - 1} */
+    public static long legMask(int fromStop, int toStop) {
+        int first = Math.min(fromStop, MAX_LEGS - 1);
+        int last = Math.min(toStop - 1, MAX_LEGS - 1);
+        if (last < first) return 0L;
+        long upTo = last == MAX_LEGS - 1 ? -1L : (1L << (last + 1)) - 1;
+        return upTo & (-1L << first);
+    }
+
+    public int getCapacity() {
+        return capacity;
+    }
+
+    public int getLegCount() {
+        return legCount;
+    }
+
+    public long getFullMask() {
+        return fullMask;
+    }
+
+    /** @return seats with any leg booked */
+    public int getBookedCount() {
+        return bookedCount;
+    }
+
+    /** @return the sum of {@link #legDigest(int, long)} over the booked seats, which does not depend on their order */
+    public long getLegDigest() {
+        long digest = 0;
+        for (int i = booked.nextSetBit(0); i >= 0 && i < capacity; i = booked.nextSetBit(i + 1)) {
+            digest += legDigest(i + 1, legs == null ? fullMask : legs[i]);
+        }
+        return digest;
+    }
+
+    /** @return a well-mixed hash of one seat and the mask of its booked legs */
+    public static long legDigest(int seatNumber, long mask) {
+        long h = seatNumber * 0x9E3779B97F4A7C15L ^ mask;
+        h = (h ^ (h >>> 33)) * 0xFF51AFD7ED558CCDL;
+        h = (h ^ (h >>> 33)) * 0xC4CEB9FE1A85EC53L;
+        return h ^ (h >>> 33);
+    }
+
+    /** @return seats free for the whole route */
+    public int getFreeCount() {
+        return capacity - bookedCount;
+    }
+
+    /** @return seats free on every leg of {@code mask} */
+    public int getFreeCount(long mask) {
+        if (legs == null || (mask & fullMask) == fullMask) return getFreeCount();
+        FreeRunIndex index = journeyRuns == null ? null : journeyRuns.get(mask & fullMask);
+        if (index != null) return index.free();
+        int free = 0;
+        for (int i = 0; i < capacity; i++) {
+            if ((legs[i] & mask) == 0) free++;
+        }
+        return free;
+    }
+
+    public boolean isValid(int seatNumber) {
+        return seatNumber >= 1 && seatNumber <= capacity;
+    }
+
+    /** @return true if any leg of the seat is booked */
+    public boolean isBooked(int seatNumber) {
+        return isValid(seatNumber) && booked.get(seatNumber - 1);
+    }
+
+    /** @return true if the seat is free on every leg of {@code mask} */
+    public boolean isFree(int seatNumber, long mask) {
+        return isValid(seatNumber) && (takenLegs(seatNumber) & mask) == 0;
+    }
+
+    /** @return the mask of the seat's booked legs */
+    public long takenLegs(int seatNumber) {
+        if (!isValid(seatNumber) || !booked.get(seatNumber - 1)) return 0L;
+        return legs == null ? fullMask : legs[seatNumber - 1];
+    }
+
+    /** @return true if the seat was free and is now booked */
+    public boolean book(int seatNumber) {
+        return book(seatNumber, fullMask);
+    }
+
+    /** @return true if the seat was free on every leg of {@code mask} and those legs are now booked */
+    public boolean book(int seatNumber, long mask) {
+        mask &= fullMask;
+        if (!isValid(seatNumber) || mask == 0) return false;
+        long taken = takenLegs(seatNumber);
+        if ((taken & mask) != 0) return false;
+        long now = taken | mask;
+        if (now != fullMask) ensureLegs();
+        if (legs != null) legs[seatNumber - 1] = now;
+        updateJourneyRuns(seatNumber - 1, now);
+        if (taken == 0) {
+            booked.set(seatNumber - 1);
+            bookedCount++;
+            if (runs != null) runs.set(seatNumber - 1, false);
+        }
+        return true;
+    }
+
+    /** @return true if the seat was booked and is now free */
+    public boolean release(int seatNumber) {
+        return release(seatNumber, fullMask);
+    }
+
+    /** @return true if any leg of {@code mask} was booked; all of them are now free */
+    public boolean release(int seatNumber, long mask) {
+        long taken = takenLegs(seatNumber);
+        if ((taken & mask) == 0) return false;
+        long now = taken & ~mask;
+        if (now != 0) ensureLegs();
+        if (legs != null) legs[seatNumber - 1] = now;
+        updateJourneyRuns(seatNumber - 1, now);
+        if (now == 0) {
+            booked.clear(seatNumber - 1);
+            bookedCount--;
+            if (runs != null) runs.set(seatNumber - 1, true);
+        }
+        return true;
+    }
+
+    private void updateJourneyRuns(int seat, long taken) {
+        if (journeyRuns == null) return;
+        for (Map.Entry<Long, FreeRunIndex> e : journeyRuns.entrySet()) e.getValue().set(seat, (taken & e.getKey()) == 0);
+    }
+
+    /** @return the runs of seats free on every leg of the partial journey {@code mask}, built on first use */
+    private FreeRunIndex journeyRuns(long mask) {
+        if (journeyRuns == null) journeyRuns = new LinkedHashMap<>(8, 0.75f, true);
+        FreeRunIndex index = journeyRuns.get(mask);
+        if (index == null) {
+            if (journeyRuns.size() >= MAX_JOURNEY_INDEXES) journeyRuns.remove(journeyRuns.keySet().iterator().next());
+            index = FreeRunIndex.of(capacity, i -> (legs[i] & mask) == 0);
+            journeyRuns.put(mask, index);
+        }
+        return index;
+    }
+
+    private void ensureLegs() {
+        if (legs != null) return;
+        legs = new long[capacity];
+        for (int i = booked.nextSetBit(0); i >= 0 && i < capacity; i = booked.nextSetBit(i + 1)) {
+            legs[i] = fullMask;
+        }
+    }
+
+    /**
+     * The occupancy as {@code [n, n bitmap words, masks...]}: the booked seats as little-endian
+     * words, bit {@code s - 1} standing for seat s, then the leg mask of each booked seat in
+     * seat order if any seat is booked for part of the route.
+     */
+    public long[] toState() {
+        long[] words = booked.toLongArray();
+        int masks = legs == null ? 0 : bookedCount;
+        long[] state = new long[1 + words.length + masks];
+        state[0] = words.length;
+        System.arraycopy(words, 0, state, 1, words.length);
+        if (legs != null) {
+            int j = 1 + words.length;
+            for (int i = booked.nextSetBit(0); i >= 0 && i < capacity; i = booked.nextSetBit(i + 1)) {
+                state[j++] = legs[i];
+            }
+        }
+        return state;
+    }
+
+    /** Replaces the occupancy with one from {@link #toState()}; seats past the capacity are dropped. */
+    public void loadState(long[] state) {
+        booked.clear();
+        legs = null;
+        runs = null;
+        journeyRuns = null;
+        if (state.length == 0) {
+            bookedCount = 0;
+            return;
+        }
+        int words = (int) state[0];
+        BitSet loaded = BitSet.valueOf(Arrays.copyOfRange(state, 1, 1 + words));
+        boolean hasMasks = state.length > 1 + words;
+        int j = 1 + words;
+        for (int i = loaded.nextSetBit(0); i >= 0; i = loaded.nextSetBit(i + 1)) {
+            long mask = hasMasks && j < state.length ? state[j++] & fullMask : fullMask;
+            if (i >= capacity || mask == 0) continue;
+            if (mask != fullMask) ensureLegs();
+            if (legs != null) legs[i] = mask;
+            booked.set(i);
+        }
+        bookedCount = booked.cardinality();
+    }
+
+    /** @return the lowest seat number at or after {@code fromSeat} free for the whole route, or -1 if none */
+    public int nextFree(int fromSeat) {
+        int idx = booked.nextClearBit(Math.max(fromSeat, 1) - 1);
+        return idx < capacity ? idx + 1 : -1;
+    }
+
+    /** @return the lowest seat number at or after {@code fromSeat} free on every leg of {@code mask}, or -1 */
+    public int nextFree(int fromSeat, long mask) {
+        if (legs == null || (mask & fullMask) == fullMask) return nextFree(fromSeat);
+        for (int i = Math.max(fromSeat, 1) - 1; i < capacity; i++) {
+            if ((legs[i] & mask) == 0) return i + 1;
+        }
+        return -1;
+    }
+
+    /** @return the lowest booked seat number at or after {@code fromSeat}, or -1 if none */
+    public int nextBooked(int fromSeat) {
+        int idx = booked.nextSetBit(Math.max(fromSeat, 1) - 1);
+        return idx >= 0 && idx < capacity ? idx + 1 : -1;
+    }
+
+    public int firstFree() {
+        return nextFree(1);
+    }
+
+    /** @return {@code count} seats free for the whole route, adjacent where possible, or null if fewer are free */
+    public int[] findFree(int count) {
+        return findFree(count, fullMask);
+    }
+
+    /**
+     * A single seat for part of the route goes to the lowest seat already sold for other legs,
+     * so whole seats stay free for longer journeys; otherwise the lowest free seat. A group gets
+     * the leftmost run of adjacent seats that fits it, or failing that the fewest runs that do.
+     * @return {@code count} seat numbers free on every leg of {@code mask} in ascending order, or null
+     */
+    public int[] findFree(int count, long mask) {
+        if (count <= 0) return new int[0];
+        boolean wholeSeats = legs == null || (mask & fullMask) == fullMask;
+        if (wholeSeats) {
+            if (count > getFreeCount()) return null;
+            if (count == 1) return new int[] { firstFree() };
+            if (runs == null) runs = FreeRunIndex.ofClearBits(booked, capacity);
+            return takeRuns(runs, count);
+        }
+        if (count == 1) {
+            for (int i = booked.nextSetBit(0); i >= 0 && i < capacity; i = booked.nextSetBit(i + 1)) {
+                if ((legs[i] & mask) == 0) return new int[] { i + 1 };
+            }
+            int seat = firstFree();
+            return seat == -1 ? null : new int[] { seat };
+        }
+        FreeRunIndex index = journeyRuns(mask & fullMask);
+        if (count > index.free()) return null;
+        return takeRuns(index, count);
+    }
+
+    /**
+     * Takes the leftmost run that fits the rest of the group, or else the longest run whole,
+     * until the group is seated; taking the longest runs first keeps the number of runs minimal.
+     * Seats are marked taken in {@code index} while choosing and freed again afterwards.
+     */
+    private static int[] takeRuns(FreeRunIndex index, int count) {
+        int[] result = new int[count];
+        int found = 0;
+        while (found < count) {
+            int take = Math.min(index.longest(), count - found);
+            if (take == 0) break;
+            int start = index.findRun(take);
+            for (int i = start; i < start + take; i++) {
+                index.set(i, false);
+                result[found++] = i + 1;
+            }
+        }
+        for (int i = 0; i < found; i++) index.set(result[i] - 1, true);
+        if (found < count) return null;
+        Arrays.sort(result);
+        return result;
+    }
+
+    /** Books and returns {@code count} seats chosen by {@link #findFree(int)}, or returns null and books nothing. */
+    public int[] allocate(int count) {
+        return allocate(count, fullMask);
+    }
+
+    /** Books the legs of {@code mask} on {@code count} seats chosen by {@link #findFree(int, long)}, or books nothing. */
+    public int[] allocate(int count, long mask) {
+        int[] seats = findFree(count, mask);
+        if (seats == null) return null;
+        for (int s : seats) book(s, mask);
+        return seats;
+    }
+}
@@ -2,27 +2,40 @@ package com.booking.model;
 
 public class Seat {
 
-    private String seatNumber;
-    private boolean isBooked;
+    private static final String PREFIX = "S";
+
+    private final String seatNumber;
 
     public Seat(String seatNumber) {
         this.seatNumber = seatNumber;
-        this.isBooked = false; 
     }
 
     public String getSeatNumber() {
         return seatNumber;
     }
 
-    public boolean isBooked() {
-        return isBooked;
+    public int getNumber() {
+        return parseNumber(seatNumber);
     }
 
-    public void book() {
-        this.isBooked = true;
+    public static String label(int number) {
+        return PREFIX + number;
     }
 
-    public void unbook() {
-        this.isBooked = false;
+    /**
+     * Parse a seat label such as "S12" (case-insensitive) into its 1-based number.
+     * @return the seat number, or -1 if the label is not of the expected form
+     */
+    public static int parseNumber(String seatNumber) {
+        if (seatNumber == null) return -1;
+        String s = seatNumber.trim();
+        if (s.length() < 2 || Character.toUpperCase(s.charAt(0)) != PREFIX.charAt(0)) return -1;
+        int n = 0;
+        for (int i = 1; i < s.length(); i++) {
+            char ch = s.charAt(i);
+            if (ch < '0' || ch > '9' || n > (Integer.MAX_VALUE - 9) / 10) return -1;
+            n = n * 10 + (ch - '0');
+        }
+        return n > 0 ? n : -1;
     }
 }
\ No newline at end of file
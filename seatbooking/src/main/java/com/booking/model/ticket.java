@@ -7,13 +7,28 @@ public class Ticket {
     private Train train;
     private Seat seat;
     private String travelDate;
+    private String bookedBy;
+    private final int fromStop;
+    private final int toStop;
 
     public Ticket(String pnrNumber, User passenger, Train train, Seat seat, String travelDate) {
+        this(pnrNumber, passenger, train, seat, travelDate, passenger.getUsername());
+    }
+
+    public Ticket(String pnrNumber, User passenger, Train train, Seat seat, String travelDate, String bookedBy) {
+        this(pnrNumber, passenger, train, seat, travelDate, bookedBy, 0, train.getLastStop());
+    }
+
+    /** A ticket for the journey between two stop indexes of the train's route. */
+    public Ticket(String pnrNumber, User passenger, Train train, Seat seat, String travelDate, String bookedBy, int fromStop, int toStop) {
         this.pnrNumber = pnrNumber;
         this.passenger = passenger;
         this.train = train;
         this.seat = seat;
         this.travelDate = travelDate;
+        this.bookedBy = bookedBy != null ? bookedBy : passenger.getUsername();
+        this.fromStop = fromStop;
+        this.toStop = toStop;
     }
 
     public String getPnrNumber() {
@@ -36,12 +51,25 @@ public class Ticket {
         return travelDate;
     }
 
+    public String getBookedBy() {
+        return bookedBy;
+    }
+
+    public int getFromStop() {
+        return fromStop;
+    }
+
+    public int getToStop() {
+        return toStop;
+    }
+
 
     public void displayTicketDetails() {
         System.out.println("---------------------------------");
         System.out.println(" PNR Number: " + pnrNumber);
         System.out.println(" Passenger: " + passenger.getUsername());
         System.out.println(" Train: " + train.getTrainName() + " (" + train.getTrainNumber() + ")");
+        System.out.println(" Journey: " + train.getStop(fromStop) + " -> " + train.getStop(toStop));
         System.out.println(" Seat: " + seat.getSeatNumber());
         System.out.println(" Date: " + travelDate);
         System.out.println("---------------------------------");
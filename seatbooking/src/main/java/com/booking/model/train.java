@@ -2,6 +2,11 @@ package com.booking.model;
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.SortedSet;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
 
 
 public class Train {
@@ -9,16 +14,19 @@ public class Train {
     private String trainNumber;
     private String trainName;
     private List<String> route; 
-    private List<Seat> seats;
+    private final String[] normalizedRoute;
+    private final int totalSeats;
+    private final Map<String, SeatMap> occupancyByDate = new ConcurrentHashMap<>();
 
     public Train(String trainNumber, String trainName, List<String> route, int totalSeats) {
         this.trainNumber = trainNumber;
         this.trainName = trainName;
         this.route = route;
+        this.totalSeats = totalSeats;
 
-        this.seats = new ArrayList<>();
-        for (int i = 1; i <= totalSeats; i++) {
-            this.seats.add(new Seat("S" + i)); 
+        this.normalizedRoute = new String[route.size()];
+        for (int i = 0; i < route.size(); i++) {
+            this.normalizedRoute[i] = normalizeStop(route.get(i));
         }
     }
 
@@ -34,40 +42,169 @@ public class Train {
         return route;
     }
 
-    public List<Seat> getSeats() {
-        return seats;
+    public int getTotalSeats() {
+        return totalSeats;
+    }
+
+    /** Legs between consecutive stops; a journey from stop i to stop j uses legs i to j - 1. */
+    public int getLegCount() {
+        return Math.max(1, route.size() - 1);
     }
 
+    /** @return the index of the final stop, where whole-route journeys end */
+    public int getLastStop() {
+        return getLegCount();
+    }
 
-    public int getBookedSeatCount() {
-        int count = 0;
-        for (Seat s : seats) {
-            if (s.isBooked()) count++;
+    /** @return true if {@code fromStop} comes before {@code toStop} and both are on the route */
+    public boolean isValidJourney(int fromStop, int toStop) {
+        return fromStop >= 0 && fromStop < toStop && toStop <= getLastStop();
+    }
+
+    /** @return the {@link SeatMap} leg mask of a journey between two stop indexes */
+    public long legMask(int fromStop, int toStop) {
+        if (!isValidJourney(fromStop, toStop)) {
+            throw new IllegalArgumentException("Train " + trainNumber + " has no journey from stop " + fromStop + " to stop " + toStop);
         }
-        return count;
+        return SeatMap.legMask(fromStop, toStop);
     }
 
+    /** @return the name of the stop at {@code index}, or null if the route has no such stop */
+    public String getStop(int index) {
+        return index >= 0 && index < route.size() ? route.get(index) : null;
+    }
 
-    public int getAvailableSeatCount() {
-        return seats.size() - getBookedSeatCount();
+    /** @return the seat with the given label, or null if this train has no such seat */
+    public Seat getSeat(String seatNumber) {
+        int n = Seat.parseNumber(seatNumber);
+        return n >= 1 && n <= totalSeats ? new Seat(Seat.label(n)) : null;
+    }
+
+    public SeatMap getSeatMap(String travelDate) {
+        return occupancyByDate.computeIfAbsent(travelDate, d -> new SeatMap(totalSeats, getLegCount()));
+    }
+
+    public boolean isSeatBooked(String seatNumber, String travelDate) {
+        SeatMap map = occupancyByDate.get(travelDate);
+        return map != null && map.isBooked(Seat.parseNumber(seatNumber));
+    }
+
+    /** @return true if the seat is free from {@code fromStop} to {@code toStop} */
+    public boolean isSeatFree(String seatNumber, String travelDate, int fromStop, int toStop) {
+        int n = Seat.parseNumber(seatNumber);
+        SeatMap map = occupancyByDate.get(travelDate);
+        return map == null ? n >= 1 && n <= totalSeats : map.isFree(n, legMask(fromStop, toStop));
+    }
+
+    public boolean bookSeat(String seatNumber, String travelDate) {
+        return getSeatMap(travelDate).book(Seat.parseNumber(seatNumber));
+    }
+
+    public boolean bookSeat(String seatNumber, String travelDate, int fromStop, int toStop) {
+        return getSeatMap(travelDate).book(Seat.parseNumber(seatNumber), legMask(fromStop, toStop));
+    }
+
+    public boolean unbookSeat(String seatNumber, String travelDate) {
+        SeatMap map = occupancyByDate.get(travelDate);
+        return map != null && map.release(Seat.parseNumber(seatNumber));
+    }
+
+    public boolean unbookSeat(String seatNumber, String travelDate, int fromStop, int toStop) {
+        SeatMap map = occupancyByDate.get(travelDate);
+        return map != null && map.release(Seat.parseNumber(seatNumber), legMask(fromStop, toStop));
+    }
+
+    public int getBookedSeatCount(String travelDate) {
+        SeatMap map = occupancyByDate.get(travelDate);
+        return map == null ? 0 : map.getBookedCount();
+    }
+
+    /** @return digest of the booked seats and legs on the date, see {@link SeatMap#getLegDigest()} */
+    public long getLegDigest(String travelDate) {
+        SeatMap map = occupancyByDate.get(travelDate);
+        return map == null ? 0 : map.getLegDigest();
+    }
+
+    /** Booked seats summed over every travel date this train has a seat map for. */
+    public long getBookedSeatTotal() {
+        long booked = 0;
+        for (SeatMap map : occupancyByDate.values()) booked += map.getBookedCount();
+        return booked;
+    }
+
+    public int getAvailableSeatCount(String travelDate) {
+        return totalSeats - getBookedSeatCount(travelDate);
+    }
+
+    /** @return seats free on every leg from {@code fromStop} to {@code toStop} */
+    public int getAvailableSeatCount(String travelDate, int fromStop, int toStop) {
+        SeatMap map = occupancyByDate.get(travelDate);
+        return map == null ? totalSeats : map.getFreeCount(legMask(fromStop, toStop));
+    }
+
+    public List<Seat> getAvailableSeats(String travelDate) {
+        SeatMap map = occupancyByDate.get(travelDate);
+        List<Seat> available = new ArrayList<>();
+        if (map == null) {
+            for (int n = 1; n <= totalSeats; n++) available.add(new Seat(Seat.label(n)));
+            return available;
+        }
+        for (int n = map.firstFree(); n != -1; n = map.nextFree(n + 1)) {
+            available.add(new Seat(Seat.label(n)));
+        }
+        return available;
+    }
+
+    /** @return the seats free on every leg from {@code fromStop} to {@code toStop} */
+    public List<Seat> getAvailableSeats(String travelDate, int fromStop, int toStop) {
+        long mask = legMask(fromStop, toStop);
+        SeatMap map = occupancyByDate.get(travelDate);
+        if (map == null) return getAvailableSeats(travelDate);
+        List<Seat> available = new ArrayList<>();
+        for (int n = map.nextFree(1, mask); n != -1; n = map.nextFree(n + 1, mask)) {
+            available.add(new Seat(Seat.label(n)));
+        }
+        return available;
+    }
+
+    public List<String> getBookedSeatNumbers(String travelDate) {
+        SeatMap map = occupancyByDate.get(travelDate);
+        List<String> numbers = new ArrayList<>();
+        if (map == null) return numbers;
+        for (int n = map.nextBooked(1); n != -1; n = map.nextBooked(n + 1)) {
+            numbers.add(Seat.label(n));
+        }
+        return numbers;
+    }
+
+    /** Travel dates that currently have at least one booked seat, in ascending order. */
+    public SortedSet<String> getBookedDates() {
+        SortedSet<String> dates = new TreeSet<>();
+        for (Map.Entry<String, SeatMap> e : occupancyByDate.entrySet()) {
+            if (e.getValue().getBookedCount() > 0) dates.add(e.getKey());
+        }
+        return dates;
     }
 
 
     public boolean hasStops(String startStation, String endStation) {
         if (startStation == null || endStation == null) return false;
-        String start = startStation.trim().toLowerCase();
-        String end = endStation.trim().toLowerCase();
+        int startIdx = indexOfStop(startStation);
+        int endIdx = indexOfStop(endStation);
+        return startIdx != -1 && endIdx != -1 && startIdx < endIdx;
+    }
 
-        int startIdx = -1;
-        int endIdx = -1;
-        for (int i = 0; i < route.size(); i++) {
-            String stop = route.get(i);
-            if (stop == null) continue;
-            String norm = stop.trim().toLowerCase();
-            if (norm.equals(start) && startIdx == -1) startIdx = i;
-            if (norm.equals(end) && endIdx == -1) endIdx = i;
+    /** @return the position of the first stop matching {@code station}, or -1 */
+    public int indexOfStop(String station) {
+        if (station == null) return -1;
+        String target = normalizeStop(station);
+        for (int i = 0; i < normalizedRoute.length; i++) {
+            if (target.equals(normalizedRoute[i])) return i;
         }
+        return -1;
+    }
 
-        return startIdx != -1 && endIdx != -1 && startIdx < endIdx;
+    private static String normalizeStop(String stop) {
+        return stop == null ? null : stop.trim().toLowerCase(Locale.ROOT);
     }
 }
\ No newline at end of file
@@ -0,0 +1,369 @@
+package com.booking.service;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Write-behind queue for {@code user_history} rows. Callers only enqueue; a single worker
+ * writes the records in multi-row inserts once a batch fills up or the flush interval passes.
+ * When the queue stays full or the database is unreachable, records are appended to a local
+ * spill file and replayed before the next successful flush, so no audit record is dropped.
+ */
+public class AuditLog implements AutoCloseable {
+
+    private static final Logger LOGGER = Logger.getLogger(AuditLog.class.getName());
+
+    public static final int DEFAULT_CAPACITY = 10_000;
+    public static final int DEFAULT_BATCH_SIZE = 200;
+    public static final long DEFAULT_FLUSH_INTERVAL_MILLIS = 500L;
+    public static final long DEFAULT_OFFER_TIMEOUT_MILLIS = 50L;
+    public static final String DEFAULT_SPILL_FILE = "audit-spill.log";
+
+    private static final String NULL_FIELD = "\\N";
+    // queued by close() so the worker does not sit out the rest of its poll interval
+    private static final Entry WAKE_UP = new Entry(0L, null, null, null, null);
+
+    private final DatabaseProvider db;
+    private final UserCache users;
+    private final BlockingQueue<Entry> queue;
+    private final int batchSize;
+    private final long flushIntervalMillis;
+    private final long offerTimeoutMillis;
+    private final Path spillFile;
+    private final Path replayFile;
+    private final Object spillLock = new Object();
+    private final Thread worker;
+    private final AtomicBoolean closed = new AtomicBoolean(false);
+
+    private final AtomicLong recordedCount = new AtomicLong();
+    private final AtomicLong writtenCount = new AtomicLong();
+    private final AtomicLong spilledCount = new AtomicLong();
+    private final AtomicLong replayedCount = new AtomicLong();
+    private final AtomicLong flushCount = new AtomicLong();
+
+    public AuditLog(DatabaseProvider db) {
+        this(db, new UserCache(db), DEFAULT_CAPACITY, DEFAULT_BATCH_SIZE, DEFAULT_FLUSH_INTERVAL_MILLIS,
+                DEFAULT_OFFER_TIMEOUT_MILLIS, Paths.get(DEFAULT_SPILL_FILE));
+    }
+
+    public AuditLog(DatabaseProvider db, UserCache users, int capacity, int batchSize, long flushIntervalMillis,
+                    long offerTimeoutMillis, Path spillFile) {
+        if (capacity < 1) throw new IllegalArgumentException("Audit queue capacity must be at least 1");
+        if (batchSize < 1) throw new IllegalArgumentException("Audit batch size must be at least 1");
+        this.db = db;
+        this.users = users;
+        this.queue = new ArrayBlockingQueue<>(capacity);
+        this.batchSize = batchSize;
+        this.flushIntervalMillis = Math.max(1L, flushIntervalMillis);
+        this.offerTimeoutMillis = Math.max(0L, offerTimeoutMillis);
+        this.spillFile = spillFile;
+        this.replayFile = spillFile.resolveSibling(spillFile.getFileName() + ".replay");
+
+        this.worker = new Thread(this::run, "audit-log-writer");
+        this.worker.setDaemon(true);
+        this.worker.start();
+    }
+
+    /**
+     * Queues a history record. Blocks for at most the offer timeout when the queue is full,
+     * then writes the record to the spill file instead.
+     */
+    public void record(String username, String pnr, String action, String details) {
+        Entry entry = new Entry(System.currentTimeMillis(), username, pnr, action, details);
+        recordedCount.incrementAndGet();
+        if (!closed.get()) {
+            try {
+                if (queue.offer(entry, offerTimeoutMillis, TimeUnit.MILLISECONDS)) return;
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        spill(List.of(entry));
+    }
+
+    private void run() {
+        List<Entry> batch = new ArrayList<>(batchSize);
+        while (true) {
+            try {
+                Entry first = queue.poll(flushIntervalMillis, TimeUnit.MILLISECONDS);
+                if (first != null) {
+                    batch.add(first);
+                    long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(flushIntervalMillis);
+                    while (batch.size() < batchSize && !closed.get()) {
+                        long remaining = deadline - System.nanoTime();
+                        Entry next = remaining > 0 ? queue.poll(remaining, TimeUnit.NANOSECONDS) : queue.poll();
+                        if (next == null) break;
+                        batch.add(next);
+                    }
+                }
+            } catch (InterruptedException e) {
+                closed.set(true);
+            }
+            if (closed.get()) queue.drainTo(batch, batchSize - batch.size());
+            batch.removeIf(e -> e == WAKE_UP);
+
+            if (!batch.isEmpty() || hasSpill()) {
+                flush(batch);
+                batch.clear();
+            }
+            if (closed.get() && queue.isEmpty()) break;
+        }
+    }
+
+    /** Writes pending spill records first so the table stays in event order, then the batch. */
+    private void flush(List<Entry> batch) {
+        if (!replaySpill()) {
+            spill(batch);
+            return;
+        }
+        if (batch.isEmpty()) return;
+        try {
+            write(batch);
+        } catch (SQLException | RuntimeException e) {
+            // anything escaping here would end the worker and leave the queue undrained
+            LOGGER.log(Level.WARNING, "Audit flush failed, spilling " + batch.size() + " record(s) to " + spillFile, e);
+            spill(batch);
+        }
+    }
+
+    /** Writes the whole batch in one transaction, so a failed flush leaves no rows to duplicate on retry. */
+    private void write(List<Entry> batch) throws SQLException {
+        try (Connection c = db.getConnection()) {
+            Map<String, Integer> userIds = users.findIds(c, usernames(batch));
+            c.setAutoCommit(false);
+            try {
+                insert(c, batch, userIds);
+                c.commit();
+            } catch (SQLException | RuntimeException e) {
+                try { c.rollback(); } catch (SQLException ignored) { }
+                throw e;
+            } finally {
+                try { c.setAutoCommit(true); } catch (SQLException ignored) { }
+            }
+            writtenCount.addAndGet(batch.size());
+            flushCount.incrementAndGet();
+        }
+    }
+
+    private void insert(Connection c, List<Entry> batch, Map<String, Integer> userIds) throws SQLException {
+        for (int from = 0; from < batch.size(); from += batchSize) {
+            List<Entry> chunk = batch.subList(from, Math.min(batch.size(), from + batchSize));
+            StringBuilder sql = new StringBuilder("INSERT INTO user_history(user_id, pnr, action, details, created_at) VALUES ");
+            for (int i = 0; i < chunk.size(); i++) sql.append(i == 0 ? "(?,?,?,?,?)" : ",(?,?,?,?,?)");
+            try (PreparedStatement ps = c.prepareStatement(sql.toString())) {
+                int idx = 1;
+                for (Entry e : chunk) {
+                    Integer userId = e.username == null ? null : userIds.get(e.username.trim());
+                    if (userId != null) ps.setInt(idx++, userId); else ps.setNull(idx++, Types.INTEGER);
+                    ps.setString(idx++, e.pnr);
+                    ps.setString(idx++, e.action);
+                    ps.setString(idx++, e.details);
+                    ps.setTimestamp(idx++, new Timestamp(e.createdAt));
+                }
+                ps.executeUpdate();
+            }
+        }
+    }
+
+    private static Set<String> usernames(List<Entry> batch) {
+        Set<String> names = new LinkedHashSet<>();
+        for (Entry e : batch) {
+            if (e.username != null && !e.username.isBlank()) names.add(e.username.trim());
+        }
+        return names;
+    }
+
+    private boolean hasSpill() {
+        synchronized (spillLock) {
+            try {
+                return Files.exists(replayFile) || Files.exists(spillFile) && Files.size(spillFile) > 0;
+            } catch (IOException e) {
+                return false;
+            }
+        }
+    }
+
+    private void spill(List<Entry> entries) {
+        if (entries.isEmpty()) return;
+        synchronized (spillLock) {
+            try (BufferedWriter w = Files.newBufferedWriter(spillFile, StandardCharsets.UTF_8,
+                    StandardOpenOption.CREATE, StandardOpenOption.APPEND, StandardOpenOption.WRITE)) {
+                for (Entry e : entries) {
+                    w.write(e.toLine());
+                    w.newLine();
+                }
+                spilledCount.addAndGet(entries.size());
+            } catch (IOException e) {
+                LOGGER.log(Level.SEVERE, "Could not spill " + entries.size() + " audit record(s) to " + spillFile, e);
+            }
+        }
+    }
+
+    /**
+     * Moves the spill file aside and writes its records, repeating until no spill is left. The
+     * moved file is only deleted once its records are committed; a replay file that is still
+     * there (a failed write, or a crash) is written again before any newer spill.
+     * @return true if nothing is left to replay
+     */
+    private boolean replaySpill() {
+        while (true) {
+            List<Entry> pending = new ArrayList<>();
+            synchronized (spillLock) {
+                try {
+                    if (!Files.exists(replayFile)) {
+                        if (!Files.exists(spillFile)) return true;
+                        Files.move(spillFile, replayFile, StandardCopyOption.REPLACE_EXISTING);
+                    }
+                    try (BufferedReader r = Files.newBufferedReader(replayFile, StandardCharsets.UTF_8)) {
+                        String line;
+                        while ((line = r.readLine()) != null) {
+                            Entry e = Entry.fromLine(line);
+                            if (e != null) pending.add(e);
+                        }
+                    }
+                } catch (IOException e) {
+                    LOGGER.log(Level.WARNING, "Could not read audit spill file " + replayFile, e);
+                    return false;
+                }
+            }
+            if (!pending.isEmpty()) {
+                try {
+                    write(pending);
+                } catch (SQLException | RuntimeException e) {
+                    LOGGER.log(Level.FINE, "Audit spill replay failed; keeping " + replayFile, e);
+                    return false;
+                }
+                replayedCount.addAndGet(pending.size());
+                LOGGER.info("Replayed " + pending.size() + " spilled audit record(s)");
+            }
+            synchronized (spillLock) {
+                try {
+                    Files.delete(replayFile);
+                } catch (IOException e) {
+                    // written already; replaying it again would duplicate the rows
+                    LOGGER.log(Level.SEVERE, "Could not remove replayed audit spill file " + replayFile, e);
+                    return false;
+                }
+            }
+        }
+    }
+
+    /** Stops accepting records and waits for the worker to drain the queue. */
+    @Override
+    public void close() {
+        if (!closed.compareAndSet(false, true)) return;
+        queue.offer(WAKE_UP);
+        try {
+            worker.join(TimeUnit.SECONDS.toMillis(30));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        List<Entry> left = new ArrayList<>();
+        queue.drainTo(left);
+        left.removeIf(e -> e == WAKE_UP);
+        if (!left.isEmpty()) {
+            LOGGER.warning("Audit writer did not finish in time, spilling " + left.size() + " record(s) to " + spillFile);
+            spill(left);
+        }
+    }
+
+    public int getQueueDepth() {
+        return queue.size();
+    }
+
+    public long getRecordedCount() {
+        return recordedCount.get();
+    }
+
+    public long getWrittenCount() {
+        return writtenCount.get();
+    }
+
+    public long getSpilledCount() {
+        return spilledCount.get();
+    }
+
+    public long getReplayedCount() {
+        return replayedCount.get();
+    }
+
+    public String statsSummary() {
+        return String.format("queued=%d recorded=%d written=%d flushes=%d spilled=%d replayed=%d",
+                getQueueDepth(), getRecordedCount(), getWrittenCount(), flushCount.get(), getSpilledCount(), getReplayedCount());
+    }
+
+    private static final class Entry {
+        private final long createdAt;
+        private final String username;
+        private final String pnr;
+        private final String action;
+        private final String details;
+
+        private Entry(long createdAt, String username, String pnr, String action, String details) {
+            this.createdAt = createdAt;
+            this.username = username;
+            this.pnr = pnr;
+            this.action = action;
+            this.details = details;
+        }
+
+        /** Tab-separated, with tabs, newlines and backslashes escaped and NULL written as \N. */
+        private String toLine() {
+            return createdAt + "\t" + escape(username) + "\t" + escape(pnr) + "\t" + escape(action) + "\t" + escape(details);
+        }
+
+        private static Entry fromLine(String line) {
+            String[] f = line.split("\t", -1);
+            if (f.length != 5) return null;
+            try {
+                return new Entry(Long.parseLong(f[0]), unescape(f[1]), unescape(f[2]), unescape(f[3]), unescape(f[4]));
+            } catch (NumberFormatException e) {
+                return null;
+            }
+        }
+
+        private static String escape(String s) {
+            if (s == null) return NULL_FIELD;
+            return s.replace("\\", "\\\\").replace("\t", "\\t").replace("\n", "\\n").replace("\r", "\\r");
+        }
+
+        private static String unescape(String s) {
+            if (NULL_FIELD.equals(s)) return null;
+            StringBuilder sb = new StringBuilder(s.length());
+            for (int i = 0; i < s.length(); i++) {
+                char ch = s.charAt(i);
+                if (ch == '\\' && i + 1 < s.length()) {
+                    char n = s.charAt(++i);
+                    sb.append(n == 't' ? '\t' : n == 'n' ? '\n' : n == 'r' ? '\r' : n);
+                } else {
+                    sb.append(ch);
+                }
+            }
+            return sb.toString();
+        }
+    }
+}
@@ -19,6 +19,14 @@ public interface AuthProvider {
      */
     User login(String username, String password);
 
+    /**
+     * Checks credentials without console output, for non-interactive front ends.
+     * @return User on success or null on failure
+     */
+    default User authenticate(String username, String password) {
+        return login(username, password);
+    }
+
     default void recordLogout(String username) {
     }
 }
\ No newline at end of file
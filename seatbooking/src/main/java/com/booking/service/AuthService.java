@@ -4,10 +4,12 @@ import com.booking.model.User;
 import com.booking.model.Role;
 import com.booking.exception.DatabaseException;
 import com.booking.exception.AuthException;
+import com.booking.metrics.Counter;
+import com.booking.metrics.MetricsRegistry;
+import com.booking.metrics.Timer;
 
 import java.sql.Connection;
 import java.sql.PreparedStatement;
-import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.util.logging.Level;
 import java.util.logging.Logger;
@@ -16,10 +18,23 @@ public class AuthService implements AuthProvider {
 
     private static final Logger LOGGER = Logger.getLogger(AuthService.class.getName());
 
+    private static final MetricsRegistry METRICS = MetricsRegistry.getDefault();
+    private static final Timer REGISTER = METRICS.timer("auth.register");
+    private static final Timer AUTHENTICATE = METRICS.timer("auth.authenticate");
+    private static final Timer LOGIN = METRICS.timer("auth.login");
+    private static final Timer CHANGE_ROLE = METRICS.timer("auth.changeRole");
+    private static final Counter AUTH_FAILURES = METRICS.counter("auth.failures");
+
     private final DatabaseProvider db;
+    private final UserCache users;
 
     public AuthService(DatabaseProvider db) {
+        this(db, new UserCache(db));
+    }
+
+    public AuthService(DatabaseProvider db, UserCache users) {
         this.db = db;
+        this.users = users;
         try {
             this.db.init();
         } catch (DatabaseException e) {
@@ -36,6 +51,8 @@ public class AuthService implements AuthProvider {
                     ps.setString(3, Role.ADMIN.name());
                     ps.executeUpdate();
                     System.out.println("Created default admin user (admin/admin123)");
+                } finally {
+                    users.invalidate("admin");
                 }
             }
         } catch (DatabaseException | SQLException e) {
@@ -47,65 +64,95 @@ public class AuthService implements AuthProvider {
         }
     }
 
-    private User findUserByUsername(String username) {
-        String sql = "SELECT username, password, role FROM users WHERE username = ?";
-        try (Connection c = this.db.getConnection(); PreparedStatement ps = c.prepareStatement(sql)) {
-            ps.setString(1, username);
-            try (ResultSet rs = ps.executeQuery()) {
-                if (rs.next()) {
-                    String u = rs.getString("username");
-                    String p = rs.getString("password");
-                    Role r = Role.valueOf(rs.getString("role"));
-                    return new User(u, p, r);
-                }
-            }
-        } catch (DatabaseException | SQLException e) {
+    private UserCache.CachedUser findUserByUsername(String username) {
+        try {
+            return users.get(username);
+        } catch (DatabaseException e) {
             LOGGER.log(Level.SEVERE, "Error querying user by username", e);
             throw new AuthException("Database error while finding user", e);
         }
-        return null;
     }
 
     public boolean register(String username, String password) {
-        try {
-            if (findUserByUsername(username) != null) {
-                System.out.println("Error: Username already exists. Please try another.");
+        return REGISTER.time(() -> {
+            try {
+                if (findUserByUsername(username) != null) {
+                    System.out.println("Error: Username already exists. Please try another.");
+                    return false;
+                }
+
+                String sql = "INSERT INTO users(username, password, role) VALUES(?,?,?)";
+                try (Connection c = this.db.getConnection(); PreparedStatement ps = c.prepareStatement(sql)) {
+                    ps.setString(1, username);
+                    ps.setString(2, password);
+                    ps.setString(3, Role.PASSENGER.name());
+                    ps.executeUpdate();
+                    System.out.println("Registration successful for: " + username);
+                    return true;
+                } finally {
+                    users.invalidate(username);
+                }
+            } catch (AuthException | DatabaseException | SQLException e) {
+                LOGGER.log(Level.SEVERE, "Error registering user", e);
+                System.out.println("Error registering user: " + e.getMessage());
                 return false;
             }
+        });
+    }
 
-            String sql = "INSERT INTO users(username, password, role) VALUES(?,?,?)";
-            try (Connection c = this.db.getConnection(); PreparedStatement ps = c.prepareStatement(sql)) {
-                ps.setString(1, username);
-                ps.setString(2, password);
-                ps.setString(3, Role.PASSENGER.name());
-                ps.executeUpdate();
-                System.out.println("Registration successful for: " + username);
-                return true;
+    @Override
+    public User authenticate(String username, String password) {
+        return AUTHENTICATE.time(() -> {
+            UserCache.CachedUser user = findUserByUsername(username);
+            if (user != null && users.matchesPassword(user, password)) {
+                return new User(user.getUsername(), password, user.getRole());
             }
-        } catch (AuthException | DatabaseException | SQLException e) {
-            LOGGER.log(Level.SEVERE, "Error registering user", e);
-            System.out.println("Error registering user: " + e.getMessage());
-            return false;
-        }
+            AUTH_FAILURES.increment();
+            return null;
+        });
     }
 
     public User login(String username, String password) {
-        try {
-            User user = findUserByUsername(username);
+        return LOGIN.time(() -> {
+            try {
+                User user = authenticate(username, password);
 
-            if (user != null && user.checkPassword(password)) {
-                System.out.println("Login successful! Welcome, " + user.getUsername());
-                return user;
+                if (user != null) {
+                    System.out.println("Login successful! Welcome, " + user.getUsername());
+                    return user;
+                }
+
+                System.out.println("Error: Invalid username or password.");
+                return null;
+            } catch (AuthException | DatabaseException e) {
+                LOGGER.log(Level.SEVERE, "Authentication failed due to system error", e);
+                System.out.println("Authentication failed due to system error. Please try again later.");
+                return null;
             }
+        });
 
-            System.out.println("Error: Invalid username or password.");
-            return null;
-        } catch (AuthException | DatabaseException e) {
-            LOGGER.log(Level.SEVERE, "Authentication failed due to system error", e);
-            System.out.println("Authentication failed due to system error. Please try again later.");
-            return null;
-        }
+    }
+
+    /** @return true if the user exists and now has the given role */
+    public boolean changeRole(String username, Role role) {
+        String sql = "UPDATE users SET role = ? WHERE username = ?";
+        return CHANGE_ROLE.time(() -> {
+            try (Connection c = this.db.getConnection(); PreparedStatement ps = c.prepareStatement(sql)) {
+                ps.setString(1, role.name());
+                ps.setString(2, username);
+                return ps.executeUpdate() > 0;
+            } catch (DatabaseException | SQLException e) {
+                LOGGER.log(Level.SEVERE, "Error changing user role", e);
+                System.out.println("Error changing role: " + e.getMessage());
+                return false;
+            } finally {
+                users.invalidate(username);
+            }
+        });
+    }
 
+    public UserCache getUserCache() {
+        return users;
     }
 
 }
\ No newline at end of file
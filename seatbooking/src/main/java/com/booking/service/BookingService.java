@@ -1,6 +1,10 @@
 package com.booking.service;
 
 import com.booking.exception.ValidationException;
+import com.booking.metrics.Counter;
+import com.booking.metrics.MetricsRegistry;
+import com.booking.metrics.Timer;
+import com.booking.model.PassengerBookings;
 import com.booking.model.Ticket;
 import com.booking.model.User;
 import com.booking.model.Train;
@@ -9,24 +13,103 @@ import com.booking.model.Role;
 import com.booking.util.InputValidator;
 
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import com.booking.util.PnrGenerator;
 import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.sql.SQLIntegrityConstraintViolationException;
+import java.sql.Savepoint;
 import java.time.LocalDate;
-import java.time.format.DateTimeFormatter;
-import java.time.format.DateTimeParseException;
-
-public class BookingService {
-
-    private List<Ticket> allTickets;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+public class BookingService implements AutoCloseable {
+
+    private static final Logger LOGGER = Logger.getLogger(BookingService.class.getName());
+
+    private static final int MAX_SEAT_CLAIM_ATTEMPTS = 5;
+    public static final int DEFAULT_STARTUP_FETCH_SIZE = 500;
+    private static final String UPCOMING_TICKETS_SQL = "SELECT pnr, username, booked_by, train_number, seat_number, travel_date, from_stop, to_stop FROM tickets "
+            + "WHERE status = 'ACTIVE' AND travel_date >= ?";
+
+    private static final MetricsRegistry METRICS = MetricsRegistry.getDefault();
+    private static final Timer CREATE_TICKET = METRICS.timer("booking.createTicket");
+    private static final Timer CREATE_TICKETS = METRICS.timer("booking.createTickets");
+    private static final Timer CREATE_TICKETS_FOR_USERNAMES = METRICS.timer("booking.createTicketsForUsernames");
+    private static final Timer FIND_TICKETS_BY_PASSENGER = METRICS.timer("booking.findTicketsByPassenger");
+    private static final Timer FIND_BOOKINGS_BY_PASSENGER = METRICS.timer("booking.findBookingsByPassenger");
+    private static final Timer FIND_TICKET_BY_PNR = METRICS.timer("booking.findTicketByPnr");
+    private static final Timer CANCEL_TICKET = METRICS.timer("booking.cancelTicket");
+    private static final Counter SEATS_BOOKED = METRICS.counter("booking.seats.booked");
+    private static final Counter SEATS_CANCELLED = METRICS.counter("booking.seats.cancelled");
+    private static final Counter SOLD_OUT = METRICS.counter("booking.rejected.sold_out");
+    private static final Counter SEAT_CONFLICTS = METRICS.counter("booking.seat_conflicts");
+    private static final Counter DB_ERRORS = METRICS.counter("booking.db_errors");
+
+    private final TicketRegistry tickets;
     private TrainService trainService;
     private final DatabaseProvider db;
-
+    private final AuditLog auditLog;
+    /** false after a warm start from a snapshot: tickets are then read into the registry on demand */
+    private final boolean registryPreloaded;
+    /** null when this is the only instance using the database */
+    private final SeatChangeLog changeLog;
+    /** true when the audit log was created here, so {@link #close()} stops it */
+    private final boolean ownsAuditLog;
+
+    /** See {@link #BookingService(TrainService, DatabaseProvider, TicketRegistry)}. */
     public BookingService(TrainService trainService, DatabaseProvider db) {
-        this.allTickets = new ArrayList<>();
+        this(trainService, db, new TicketRegistry());
+    }
+
+    /**
+     * Records history through an {@link AuditLog} of its own, which runs a writer thread and
+     * spills to {@value AuditLog#DEFAULT_SPILL_FILE} in the working directory until {@link #close()}.
+     */
+    public BookingService(TrainService trainService, DatabaseProvider db, TicketRegistry tickets) {
+        this(trainService, db, tickets, new AuditLog(db), DEFAULT_STARTUP_FETCH_SIZE, null, null, true);
+    }
+
+    /** @param auditLog stays the caller's to close */
+    public BookingService(TrainService trainService, DatabaseProvider db, TicketRegistry tickets, AuditLog auditLog) {
+        this(trainService, db, tickets, auditLog, DEFAULT_STARTUP_FETCH_SIZE);
+    }
+
+    /** @param startupFetchSize rows per round trip while the upcoming tickets are read at startup */
+    public BookingService(TrainService trainService, DatabaseProvider db, TicketRegistry tickets, AuditLog auditLog, int startupFetchSize) {
+        this(trainService, db, tickets, auditLog, startupFetchSize, null);
+    }
+
+    /**
+     * @param snapshot if not null and usable, seat occupancy is restored from it instead of
+     *        reading every upcoming ticket at startup
+     */
+    public BookingService(TrainService trainService, DatabaseProvider db, TicketRegistry tickets, AuditLog auditLog, int startupFetchSize,
+                          OccupancySnapshot snapshot) {
+        this(trainService, db, tickets, auditLog, startupFetchSize, snapshot, null);
+    }
+
+    /**
+     * @param changeLog if not null, bookings and cancellations are written to it in the same
+     *        transaction so other instances can apply them; it should be created before this
+     *        service loads its state
+     */
+    public BookingService(TrainService trainService, DatabaseProvider db, TicketRegistry tickets, AuditLog auditLog, int startupFetchSize,
+                          OccupancySnapshot snapshot, SeatChangeLog changeLog) {
+        this(trainService, db, tickets, auditLog, startupFetchSize, snapshot, changeLog, false);
+    }
+
+    private BookingService(TrainService trainService, DatabaseProvider db, TicketRegistry tickets, AuditLog auditLog, int startupFetchSize,
+                           OccupancySnapshot snapshot, SeatChangeLog changeLog, boolean ownsAuditLog) {
+        this.tickets = tickets;
+        this.ownsAuditLog = ownsAuditLog;
+        this.changeLog = changeLog;
+        this.auditLog = auditLog;
         this.trainService = trainService;
         this.db = db;
 
@@ -35,584 +118,577 @@ public class BookingService {
         } catch (com.booking.exception.DatabaseException e) {
             throw e;
         }
-        loadActiveTicketsFromDb();
+        this.registryPreloaded = snapshot == null || !snapshot.restore();
+        if (this.registryPreloaded) loadUpcomingTickets(startupFetchSize);
+
+        METRICS.gauge("booking.tickets.in_memory", this.tickets::size);
+        METRICS.gauge("booking.audit.queue_depth", this.auditLog::getQueueDepth);
     }
 
     public Ticket createTicket(User passenger, Train train, Seat seat, String date) {
-        if (date == null || !InputValidator.isValidDate(date)) {
-            throw new ValidationException("Invalid travel date format. Expected YYYY-MM-DD.");
-        }
-        if (!InputValidator.isNotPastDate(date)) {
-            throw new ValidationException("Travel date cannot be before today.");
-        }
-        String pnr = PnrGenerator.generate();
-        String sql = "INSERT INTO tickets(pnr, username, train_number, seat_number, travel_date, booked_by, status) VALUES(?,?,?,?,?,?,?)";
-        try (Connection c = this.db.getConnection(); PreparedStatement ps = c.prepareStatement(sql)) {
-            ps.setString(1, pnr);
-            ps.setString(2, passenger.getUsername());
-            ps.setString(3, train.getTrainNumber());
-            ps.setString(4, seat.getSeatNumber());
-            ps.setString(5, date);
-            ps.setString(6, passenger.getUsername());
-            ps.setString(7, "ACTIVE");
-            ps.executeUpdate();
-
-            Ticket newTicket = new Ticket(pnr, passenger, train, seat, date);
-            this.allTickets.add(newTicket);
-            seat.book();
-
-            String findId = "SELECT id FROM users WHERE username = ?";
-            Integer userId = null;
-            try (Connection conn2 = this.db.getConnection(); PreparedStatement ps2 = conn2.prepareStatement(findId)) {
-                ps2.setString(1, passenger.getUsername());
-                try (ResultSet rs2 = ps2.executeQuery()) {
-                    if (rs2.next()) userId = rs2.getInt("id");
-                }
-            } catch (SQLException | com.booking.exception.DatabaseException e) {
-            }
+        return createTicket(passenger, train, seat, date, 0, train.getLastStop());
+    }
 
-            String insertHistory = "INSERT INTO user_history(user_id, pnr, username, action, details) VALUES(?,?,?,?,?)";
-            try (Connection conn3 = this.db.getConnection(); PreparedStatement ps3 = conn3.prepareStatement(insertHistory)) {
-                if (userId != null) ps3.setInt(1, userId); else ps3.setNull(1, java.sql.Types.INTEGER);
-                ps3.setString(2, pnr);
-                ps3.setString(3, passenger.getUsername());
-                ps3.setString(4, "BOOK");
-                ps3.setString(5, "Booked seat " + seat.getSeatNumber() + " on train " + train.getTrainNumber());
-                ps3.executeUpdate();
-            } catch (SQLException | com.booking.exception.DatabaseException e) {
-                try {
-                    String legacy = "INSERT INTO user_history(username, action, details) VALUES(?,?,?)";
-                    try (Connection c2 = this.db.getConnection(); PreparedStatement ps2 = c2.prepareStatement(legacy)) {
-                        ps2.setString(1, passenger.getUsername());
-                        ps2.setString(2, "BOOK");
-                        ps2.setString(3, "Booked seat " + seat.getSeatNumber() + " on train " + train.getTrainNumber());
-                        ps2.executeUpdate();
+    /** Books one seat for the journey between two stop indexes of the train's route. */
+    public Ticket createTicket(User passenger, Train train, Seat seat, String date, int fromStop, int toStop) {
+        return CREATE_TICKET.time(() -> {
+            if (date == null || !InputValidator.isValidDate(date)) {
+                throw new ValidationException("Invalid travel date format. Expected YYYY-MM-DD.");
+            }
+            if (!InputValidator.isNotPastDate(date)) {
+                throw new ValidationException("Travel date cannot be before today.");
+            }
+            requireJourney(train, fromStop, toStop);
+            SeatInventory inventory = trainService.getSeatInventory();
+            if (!inventory.reserve(train, date, seat.getSeatNumber(), fromStop, toStop)) {
+                throw new ValidationException("Seat " + seat.getSeatNumber() + " is already booked on " + date + ".");
+            }
+            String pnr = PnrGenerator.generate();
+            Ticket newTicket = new Ticket(pnr, passenger, train, seat, date, passenger.getUsername(), fromStop, toStop);
+            try (Connection c = this.db.getConnection()) {
+                runInTransaction(c, () -> {
+                    try (PreparedStatement ps = c.prepareStatement(INSERT_TICKET_SQL)) {
+                        bindTicket(ps, newTicket);
+                        ps.executeUpdate();
                     }
-                } catch (SQLException | com.booking.exception.DatabaseException ex) {
+                    insertLegs(c, List.of(newTicket));
+                    if (changeLog != null) changeLog.recordBooked(c, List.of(newTicket));
+                    return 1;
+                });
+            } catch (com.booking.exception.DatabaseException | SQLException e) {
+                if (e instanceof SQLException && isSeatConflict((SQLException) e)) {
+                    SEAT_CONFLICTS.increment();
+                    releaseLostSeat(train, date, fromStop, toStop, seat.getNumber());
+                    throw new ValidationException("Seat " + seat.getSeatNumber() + " was just booked by another passenger.");
                 }
+                inventory.release(train, date, fromStop, toStop, new int[] { seat.getNumber() });
+                DB_ERRORS.increment();
+                System.out.println("Error creating ticket in DB: " + e.getMessage());
+                return null;
             }
 
+            this.tickets.add(newTicket);
+            SEATS_BOOKED.increment();
+
+            auditLog.record(passenger.getUsername(), pnr, "BOOK", "Booked seat " + seat.getSeatNumber() + " on train " + train.getTrainNumber());
+
             return newTicket;
-        } catch (com.booking.exception.DatabaseException | SQLException e) {
-            System.out.println("Error creating ticket in DB: " + e.getMessage());
-            return null;
-        }
+        });
     }
 
     public List<Ticket> createTickets(User passenger, Train train, int numSeats, String date) {
-        List<Ticket> created = new ArrayList<>();
-        if (numSeats <= 0) throw new ValidationException("Number of seats to book must be at least 1.");
-
-        Connection conn = null;
-        try {
-            conn = this.db.getConnection();
-            conn.setAutoCommit(false);
+        return createTickets(passenger, train, numSeats, date, 0, train.getLastStop());
+    }
 
-            String lockSql = "SELECT seat_number FROM tickets WHERE train_number = ? AND status = 'ACTIVE' FOR UPDATE";
-            List<String> activeSeatNumbers = new ArrayList<>();
-            try (PreparedStatement psLock = conn.prepareStatement(lockSql)) {
-                psLock.setString(1, train.getTrainNumber());
-                try (ResultSet rs = psLock.executeQuery()) {
-                    while (rs.next()) activeSeatNumbers.add(rs.getString("seat_number"));
-                }
-            }
+    public List<Ticket> createTickets(User passenger, Train train, int numSeats, String date, int fromStop, int toStop) {
+        return CREATE_TICKETS.time(() -> {
+            if (numSeats <= 0) throw new ValidationException("Number of seats to book must be at least 1.");
+            requireJourney(train, fromStop, toStop);
+            return bookSeats(Collections.nCopies(numSeats, passenger.getUsername()), train, date, passenger.getUsername(), fromStop, toStop);
+        });
+    }
 
-            List<Seat> availableSeats = new ArrayList<>();
-            for (Seat s : train.getSeats()) {
-                if (!activeSeatNumbers.contains(s.getSeatNumber())) availableSeats.add(s);
-            }
+    public List<Ticket> createTicketsForUsernames(List<String> usernames, Train train, String date, String bookedBy) {
+        return createTicketsForUsernames(usernames, train, date, bookedBy, 0, train.getLastStop());
+    }
 
-            if (availableSeats.size() < numSeats) {
-                conn.rollback();
-                throw new ValidationException("Not enough seats available. Requested " + numSeats + ", available " + availableSeats.size());
-            }
+    public List<Ticket> createTicketsForUsernames(List<String> usernames, Train train, String date, String bookedBy, int fromStop, int toStop) {
+        return CREATE_TICKETS_FOR_USERNAMES.time(() -> {
+            if (usernames == null || usernames.isEmpty()) throw new ValidationException("No usernames provided");
+            requireJourney(train, fromStop, toStop);
+            return bookSeats(usernames, train, date, bookedBy, fromStop, toStop);
+        });
+    }
 
-            Integer userId = null;
-            String findId = "SELECT id FROM users WHERE username = ?";
-            try (PreparedStatement psFind = conn.prepareStatement(findId)) {
-                psFind.setString(1, passenger.getUsername());
-                try (ResultSet rs = psFind.executeQuery()) {
-                    if (rs.next()) userId = rs.getInt("id");
-                }
-            } catch (SQLException ignored) {
-            }
+    private static void requireJourney(Train train, int fromStop, int toStop) {
+        if (!train.isValidJourney(fromStop, toStop)) {
+            throw new ValidationException("Train " + train.getTrainNumber() + " does not run from stop " + fromStop + " to stop " + toStop + ".");
+        }
+    }
 
-            String insertTicketSql = "INSERT INTO tickets(pnr, username, train_number, seat_number, travel_date, status) VALUES(?,?,?,?,?,?)";
-            String insertHistorySql = "INSERT INTO user_history(user_id, pnr, action, details) VALUES(?,?,?,?)";
-
-            try (PreparedStatement psTicket = conn.prepareStatement(insertTicketSql);
-                 PreparedStatement psHistory = conn.prepareStatement(insertHistorySql)) {
-
-                for (int i = 0; i < numSeats; i++) {
-                    Seat seatToBook = availableSeats.get(i);
-                    String pnr = PnrGenerator.generate();
-
-                    psTicket.setString(1, pnr);
-                    psTicket.setString(2, passenger.getUsername());
-                    psTicket.setString(3, train.getTrainNumber());
-                    psTicket.setString(4, seatToBook.getSeatNumber());
-                    psTicket.setString(5, date);
-                    psTicket.setString(6, "ACTIVE");
-                    psTicket.executeUpdate();
-
-                    try {
-                        if (userId != null) psHistory.setInt(1, userId); else psHistory.setNull(1, java.sql.Types.INTEGER);
-                        psHistory.setString(2, pnr);
-                        psHistory.setString(3, "BOOK");
-                        psHistory.setString(4, "Booked seat " + seatToBook.getSeatNumber() + " on train " + train.getTrainNumber());
-                        psHistory.executeUpdate();
-                    } catch (SQLException he) {
-                        try (PreparedStatement psLegacy = conn.prepareStatement("INSERT INTO user_history(username, action, details) VALUES(?,?,?)")) {
-                            psLegacy.setString(1, passenger.getUsername());
-                            psLegacy.setString(2, "BOOK");
-                            psLegacy.setString(3, "Booked seat " + seatToBook.getSeatNumber() + " on train " + train.getTrainNumber());
-                            psLegacy.executeUpdate();
-                        } catch (SQLException ignored) {
-                        }
-                    }
+    /**
+     * Holds seats in the in-memory inventory first, then writes the tickets in one short
+     * transaction. The held seats are handed back if the transaction does not commit.
+     */
+    private List<Ticket> bookSeats(List<String> usernames, Train train, String date, String bookedBy, int fromStop, int toStop) {
+        SeatInventory inventory = trainService.getSeatInventory();
+        int numSeats = usernames.size();
+        int[] seats = inventory.reserve(train, date, numSeats, fromStop, toStop);
+        if (seats == null) {
+            SOLD_OUT.increment();
+            throw new ValidationException("Not enough seats available. Requested " + numSeats + ", available "
+                    + inventory.getAvailableSeatCount(train, date, fromStop, toStop));
+        }
 
-                    User u = new User(passenger.getUsername(), "", Role.PASSENGER);
-                    Ticket t = new Ticket(pnr, u, train, seatToBook, date);
-                    created.add(t);
-                }
-            }
+        Connection conn = null;
+        boolean committed = false;
+        try {
+            conn = this.db.getConnection();
+            conn.setAutoCommit(false);
 
+            List<Ticket> created = insertTickets(conn, usernames, train, date, bookedBy, fromStop, toStop, seats);
+            if (changeLog != null) changeLog.recordBooked(conn, created);
             conn.commit();
+            committed = true;
+            SEATS_BOOKED.add(created.size());
 
             for (Ticket t : created) {
-                for (Seat s : train.getSeats()) {
-                    if (s.getSeatNumber().equalsIgnoreCase(t.getSeat().getSeatNumber())) {
-                        s.book();
-                        break;
-                    }
-                }
-                this.allTickets.add(t);
+                this.tickets.add(t);
+                auditLog.record(t.getPassenger().getUsername(), t.getPnrNumber(), "BOOK",
+                        "Booked seat " + t.getSeat().getSeatNumber() + " on train " + train.getTrainNumber() + " for user " + t.getPassenger().getUsername());
             }
-
             return created;
         } catch (SQLException | com.booking.exception.DatabaseException e) {
-            try {
-                if (conn != null) conn.rollback();
-            } catch (SQLException ex) {
-            }
+            try { if (conn != null) conn.rollback(); } catch (SQLException ex) { }
+            DB_ERRORS.increment();
             throw new com.booking.exception.DatabaseException("Failed to create tickets transactionally", e);
+        } catch (RuntimeException e) {
+            // e.g. sold out while replacing seats another instance took
+            try { if (conn != null) conn.rollback(); } catch (SQLException ex) { }
+            throw e;
         } finally {
+            if (!committed) inventory.release(train, date, fromStop, toStop, seats);
             if (conn != null) {
-                try {
-                    conn.setAutoCommit(true);
-                    conn.close();
-                } catch (SQLException ignored) {
-                }
+                try { conn.setAutoCommit(true); conn.close(); } catch (SQLException ignored) { }
             }
         }
     }
 
-    public List<Ticket> createTicketsForUsernames(List<String> usernames, Train train, String date, String bookedBy) {
-        if (usernames == null || usernames.isEmpty()) throw new ValidationException("No usernames provided");
-        int numSeats = usernames.size();
-        List<Ticket> created = new ArrayList<>();
+    /** Writes the tickets for a booking as one batched insert; history goes through the audit log. */
+    private List<Ticket> insertTickets(Connection conn, List<String> usernames, Train train, String date, String bookedBy,
+                                       int fromStop, int toStop, int[] seats) throws SQLException {
+        String[] names = new String[usernames.size()];
+        for (int i = 0; i < names.length; i++) {
+            String username = usernames.get(i);
+            names[i] = (username == null || username.isBlank()) ? "" : username;
+        }
 
-        Connection conn = null;
-        try {
-            conn = this.db.getConnection();
-            conn.setAutoCommit(false);
+        for (int attempt = 1; ; attempt++) {
+            List<Ticket> created = new ArrayList<>();
+            String[] pnrs = PnrGenerator.generate(names.length);
+            for (int i = 0; i < names.length; i++) {
+                User u = new User(names[i], "", Role.PASSENGER);
+                created.add(new Ticket(pnrs[i], u, train, new Seat(Seat.label(seats[i])), date, bookedBy, fromStop, toStop));
+            }
+            if (claimSeats(conn, created, seats, attempt)) return created;
+            // otherwise some seats were replaced in {@code seats}, or the PNRs collided
+        }
+    }
 
-            String lockSql = "SELECT seat_number FROM tickets WHERE train_number = ? AND status = 'ACTIVE' FOR UPDATE";
-            List<String> activeSeatNumbers = new ArrayList<>();
-            try (PreparedStatement psLock = conn.prepareStatement(lockSql)) {
-                psLock.setString(1, train.getTrainNumber());
-                try (ResultSet rs = psLock.executeQuery()) {
-                    while (rs.next()) activeSeatNumbers.add(rs.getString("seat_number"));
+    /**
+     * Inserts the ticket rows and their legs as JDBC batches, relying on the unique seat-leg
+     * key instead of locking. If another instance already holds some of the seats for an
+     * overlapping journey, the legs it holds stay marked taken here, replacements are held and
+     * {@code seats} is updated to match.
+     * @return true if the tickets were inserted, false if the caller should retry with fresh PNRs
+     */
+    private boolean claimSeats(Connection conn, List<Ticket> created, int[] seats, int attempt) throws SQLException {
+        Savepoint beforeBatch = conn.setSavepoint();
+        try {
+            try (PreparedStatement psTicket = conn.prepareStatement(INSERT_TICKET_SQL)) {
+                for (Ticket t : created) {
+                    bindTicket(psTicket, t);
+                    psTicket.addBatch();
                 }
+                psTicket.executeBatch();
             }
-
-            List<Seat> availableSeats = new ArrayList<>();
-            for (Seat s : train.getSeats()) {
-                if (!activeSeatNumbers.contains(s.getSeatNumber())) availableSeats.add(s);
+            insertLegs(conn, created);
+            return true;
+        } catch (SQLException e) {
+            if (!isDuplicateKey(e)) throw e;
+            conn.rollback(beforeBatch);
+            Ticket first = created.get(0);
+            boolean seatConflict = isSeatConflict(e);
+            if (attempt >= MAX_SEAT_CLAIM_ATTEMPTS) {
+                if (seatConflict) {
+                    throw new ValidationException("Seats on train " + first.getTrain().getTrainNumber() + " are being booked concurrently. Please try again.");
+                }
+                throw e;
             }
-
-            if (availableSeats.size() < numSeats) {
-                conn.rollback();
-                throw new ValidationException("Not enough seats available. Requested " + numSeats + ", available " + availableSeats.size());
+            if (seatConflict) {
+                SEAT_CONFLICTS.increment();
+                replaceTakenSeats(conn, first, seats);
             }
+            return false;
+        }
+    }
 
-          String insertTicketSql = "INSERT INTO tickets(pnr, username, train_number, seat_number, travel_date, booked_by, status) VALUES(?,?,?,?,?,?,?)";
-            String insertHistorySql = "INSERT INTO user_history(user_id, pnr, action, details) VALUES(?,?,?,?)";
-
-          try (PreparedStatement psTicket = conn.prepareStatement(insertTicketSql);
-              PreparedStatement psHistory = conn.prepareStatement(insertHistorySql);
-              PreparedStatement psFind = conn.prepareStatement("SELECT id FROM users WHERE username = ?")) {
-
-                for (int i = 0; i < numSeats; i++) {
-                    String username = usernames.get(i);
-                    if (username == null || username.isBlank()) username = "";
-                    String pnr = PnrGenerator.generate();
-                    Seat seatToBook = availableSeats.get(i);
-
-                    psTicket.setString(1, pnr);
-                    psTicket.setString(2, username);
-                    psTicket.setString(3, train.getTrainNumber());
-                    psTicket.setString(4, seatToBook.getSeatNumber());
-                    psTicket.setString(5, date);
-                    psTicket.setString(6, bookedBy);
-                    psTicket.setString(7, "ACTIVE");
-                    psTicket.executeUpdate();
-
-                    Integer userId = null;
-                    try {
-                        psFind.setString(1, username);
-                        try (ResultSet rs = psFind.executeQuery()) {
-                            if (rs.next()) userId = rs.getInt("id");
-                        }
-                    } catch (SQLException ignored) {
-                    }
-
-                    try {
-                        if (userId != null) psHistory.setInt(1, userId); else psHistory.setNull(1, java.sql.Types.INTEGER);
-                        psHistory.setString(2, pnr);
-                        psHistory.setString(3, "BOOK");
-                        psHistory.setString(4, "Booked seat " + seatToBook.getSeatNumber() + " on train " + train.getTrainNumber() + " for user " + username);
-                        psHistory.executeUpdate();
-                    } catch (SQLException he) {
-                        try (PreparedStatement psLegacy = conn.prepareStatement("INSERT INTO user_history(username, action, details) VALUES(?,?,?)")) {
-                            psLegacy.setString(1, username);
-                            psLegacy.setString(2, "BOOK");
-                            psLegacy.setString(3, "Booked seat " + seatToBook.getSeatNumber() + " on train " + train.getTrainNumber() + " for user " + username);
-                            psLegacy.executeUpdate();
-                        } catch (SQLException ignored) {
-                        }
-                    }
+    private static final String INSERT_TICKET_SQL = "INSERT INTO tickets(pnr, username, train_number, seat_number, travel_date, booked_by, status, from_stop, to_stop) "
+            + "VALUES(?,?,?,?,?,?,?,?,?)";
+
+    private static void bindTicket(PreparedStatement ps, Ticket t) throws SQLException {
+        ps.setString(1, t.getPnrNumber());
+        ps.setString(2, t.getPassenger().getUsername());
+        ps.setString(3, t.getTrain().getTrainNumber());
+        ps.setString(4, t.getSeat().getSeatNumber());
+        ps.setString(5, t.getTravelDate());
+        ps.setString(6, t.getBookedBy());
+        ps.setString(7, "ACTIVE");
+        ps.setInt(8, t.getFromStop());
+        ps.setInt(9, t.getToStop());
+    }
 
-                    User u = new User(username, "", Role.PASSENGER);
-                    Ticket t = new Ticket(pnr, u, train, seatToBook, date);
-                    created.add(t);
+    /** One ticket_legs row per leg of each ticket's journey; the seat-leg key rejects overlaps. */
+    private static void insertLegs(Connection conn, List<Ticket> created) throws SQLException {
+        String sql = "INSERT INTO ticket_legs(pnr, leg, train_number, travel_date, seat_number) VALUES(?,?,?,?,?)";
+        try (PreparedStatement ps = conn.prepareStatement(sql)) {
+            for (Ticket t : created) {
+                for (int leg = t.getFromStop(); leg < t.getToStop(); leg++) {
+                    ps.setString(1, t.getPnrNumber());
+                    ps.setInt(2, leg);
+                    ps.setString(3, t.getTrain().getTrainNumber());
+                    ps.setString(4, t.getTravelDate());
+                    ps.setString(5, t.getSeat().getSeatNumber());
+                    ps.addBatch();
                 }
             }
+            ps.executeBatch();
+        }
+    }
 
-            conn.commit();
+    /** Hands back each seat another ticket holds, keeps exactly the legs it holds marked, and holds a replacement. */
+    private void replaceTakenSeats(Connection conn, Ticket first, int[] seats) throws SQLException {
+        Train train = first.getTrain();
+        String date = first.getTravelDate();
+        int fromStop = first.getFromStop();
+        int toStop = first.getToStop();
+        SeatInventory inventory = trainService.getSeatInventory();
+        Map<Integer, List<Integer>> taken = findCommittedLegs(conn, train, date, fromStop, toStop, seats);
+        for (int i = 0; i < seats.length; i++) {
+            List<Integer> legs = taken.get(seats[i]);
+            if (legs == null) continue;
+            String label = Seat.label(seats[i]);
+            inventory.release(train, date, fromStop, toStop, new int[] { seats[i] });
+            for (int leg : legs) inventory.markBooked(train, date, label, leg, leg + 1);
+            // no longer ours, so a failed booking must not hand it back
+            seats[i] = 0;
+            int[] next = inventory.reserve(train, date, 1, fromStop, toStop);
+            if (next == null) {
+                throw new ValidationException("Not enough seats available on " + date + " for train " + train.getTrainNumber() + ".");
+            }
+            seats[i] = next[0];
+        }
+    }
 
-            for (Ticket t : created) {
-                for (Seat s : train.getSeats()) {
-                    if (s.getSeatNumber().equalsIgnoreCase(t.getSeat().getSeatNumber())) {
-                        s.book();
-                        break;
-                    }
+    /**
+     * Drops the hold on a seat another instance committed first, keeping only the legs its
+     * tickets hold; the rest of the journey is free again.
+     */
+    private void releaseLostSeat(Train train, String date, int fromStop, int toStop, int seat) {
+        SeatInventory inventory = trainService.getSeatInventory();
+        List<Integer> legs;
+        try (Connection c = this.db.getConnection()) {
+            legs = findCommittedLegs(c, train, date, fromStop, toStop, new int[] { seat }).getOrDefault(seat, List.of());
+        } catch (com.booking.exception.DatabaseException | SQLException e) {
+            // keeping the hold only overstates what is booked, until the next restart
+            LOGGER.log(Level.WARNING, "Could not read the legs of seat " + Seat.label(seat) + " on " + date + "; keeping its hold", e);
+            return;
+        }
+        inventory.release(train, date, fromStop, toStop, new int[] { seat });
+        for (int leg : legs) inventory.markBooked(train, date, Seat.label(seat), leg, leg + 1);
+    }
+
+    /** @return the legs of the journey already held by committed tickets, by seat number */
+    private Map<Integer, List<Integer>> findCommittedLegs(Connection conn, Train train, String date, int fromStop, int toStop, int[] seats) throws SQLException {
+        StringBuilder sql = new StringBuilder("SELECT seat_number, leg FROM ticket_legs WHERE train_number = ? AND travel_date = ? AND leg >= ? AND leg < ? AND seat_number IN (");
+        appendPlaceholders(sql, seats.length);
+        // a locking read sees the latest committed rows rather than this transaction's snapshot
+        sql.append(") FOR UPDATE");
+
+        Map<Integer, List<Integer>> taken = new HashMap<>();
+        try (PreparedStatement ps = conn.prepareStatement(sql.toString())) {
+            ps.setString(1, train.getTrainNumber());
+            ps.setString(2, date);
+            ps.setInt(3, fromStop);
+            ps.setInt(4, toStop);
+            for (int i = 0; i < seats.length; i++) ps.setString(5 + i, Seat.label(seats[i]));
+            try (ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) {
+                    taken.computeIfAbsent(Seat.parseNumber(rs.getString("seat_number")), n -> new ArrayList<>()).add(rs.getInt("leg"));
                 }
-                this.allTickets.add(t);
             }
+        }
+        return taken;
+    }
 
-            return created;
-        } catch (SQLException | com.booking.exception.DatabaseException e) {
-            try { if (conn != null) conn.rollback(); } catch (SQLException ex) { }
-            throw new com.booking.exception.DatabaseException("Failed to create tickets transactionally", e);
-        } finally {
-            if (conn != null) {
-                try { conn.setAutoCommit(true); conn.close(); } catch (SQLException ignored) { }
+    private static void appendPlaceholders(StringBuilder sql, int count) {
+        for (int i = 0; i < count; i++) sql.append(i == 0 ? "?" : ",?");
+    }
+
+    private static boolean isDuplicateKey(SQLException e) {
+        for (Throwable t = e; t != null; t = t.getCause()) {
+            if (t instanceof SQLIntegrityConstraintViolationException) return true;
+            if (t instanceof SQLException) {
+                String state = ((SQLException) t).getSQLState();
+                if (state != null && state.startsWith("23")) return true;
             }
         }
+        SQLException next = e.getNextException();
+        return next != null && next != e && isDuplicateKey(next);
     }
-public List<Ticket> findTicketsByPassenger(User passenger) {
-    List<Ticket> passengerTickets = new ArrayList<>();
-    String sqlBookedBy = "SELECT pnr, train_number, seat_number, travel_date, username, status FROM tickets WHERE booked_by = ? AND status = 'ACTIVE'";
 
-    try (Connection c = this.db.getConnection()) {
-        boolean usedBookedBy = true;
-        PreparedStatement ps;
-        try {
-            ps = c.prepareStatement(sqlBookedBy);
-            ps.setString(1, passenger.getUsername());
-        } catch (SQLException se) {
-            usedBookedBy = false;
-            String sql = "SELECT pnr, train_number, seat_number, travel_date, status FROM tickets WHERE username = ? AND status = 'ACTIVE'";
-            ps = c.prepareStatement(sql);
-            ps.setString(1, passenger.getUsername());
+    private static boolean isSeatConflict(SQLException e) {
+        if (!isDuplicateKey(e)) return false;
+        for (Throwable t = e; t != null; t = t.getCause()) {
+            String message = t.getMessage() == null ? "" : t.getMessage().toLowerCase();
+            if (message.contains(Database.SEAT_LEG_KEY) || message.contains(Database.ACTIVE_SEAT_KEY)) return true;
         }
+        SQLException next = e.getNextException();
+        return next != null && next != e && isSeatConflict(next);
+    }
 
-        try (PreparedStatement psFinal = ps; ResultSet rs = psFinal.executeQuery()) {
-            while (rs.next()) {
-                String pnr = rs.getString("pnr");
-                String trainNumber = rs.getString("train_number");
-                String seatNumber = rs.getString("seat_number");
-                String travelDate = rs.getString("travel_date");
-                String username = usedBookedBy ? rs.getString("username") : passenger.getUsername();
-                String status = rs.getString("status");
-
-                LocalDate travel = null;
-                if (travelDate != null && travelDate.matches("\\d{4}-\\d{2}-\\d{2}")) {
-                    try {
-                        travel = LocalDate.parse(travelDate, DateTimeFormatter.ISO_LOCAL_DATE);
-                    } catch (DateTimeParseException ex) {
-                        System.out.println("[WARN] Skipping malformed date for ticket " + pnr + ": " + travelDate);
-                        continue;
+    /** @return the passenger's active tickets travelling today or later */
+    public List<Ticket> findTicketsByPassenger(User passenger) {
+        return FIND_TICKETS_BY_PASSENGER.time(() -> {
+            List<Ticket> upcoming = new ArrayList<>();
+            String sql = "SELECT pnr, username, booked_by, train_number, seat_number, travel_date, from_stop, to_stop FROM tickets "
+                    + "WHERE booked_by = ? AND status = 'ACTIVE' AND travel_date >= ? ORDER BY travel_date, pnr";
+            try (Connection c = this.db.getConnection(); PreparedStatement ps = c.prepareStatement(sql)) {
+                ps.setString(1, passenger.getUsername());
+                ps.setString(2, LocalDate.now().toString());
+                try (ResultSet rs = ps.executeQuery()) {
+                    TicketRowMapper mapper = new TicketRowMapper(trainService, rs);
+                    while (rs.next()) {
+                        Ticket t = mapper.map(rs);
+                        if (t != null) upcoming.add(t);
                     }
-                } else {
-                    System.out.println("[WARN] Ignoring invalid travel_date for ticket " + pnr + ": " + travelDate);
-                    continue;
-                }
-
-                if (travel.isBefore(LocalDate.now())) {
-                    continue;
                 }
+            } catch (SQLException | com.booking.exception.DatabaseException e) {
+                DB_ERRORS.increment();
+                System.out.println("Error loading active tickets from DB: " + e.getMessage());
+            }
+            return upcoming;
+        });
+    }
 
-                Train foundTrain = null;
-                Seat foundSeat = null;
-                for (Train t : trainService.getAllTrains()) {
-                    if (t.getTrainNumber().equalsIgnoreCase(trainNumber)) {
-                        foundTrain = t;
-                        for (Seat s : t.getSeats()) {
-                            if (s.getSeatNumber().equalsIgnoreCase(seatNumber)) {
-                                foundSeat = s;
-                                break;
-                            }
+    /**
+     * Loads the tickets booked by a passenger with one query and sorts them into upcoming,
+     * past and cancelled journeys in a single pass. Only the {@code limit} most recent
+     * bookings by travel date are read; zero or less means no limit.
+     */
+    public PassengerBookings findBookingsByPassenger(User passenger, int limit) {
+        return FIND_BOOKINGS_BY_PASSENGER.time(() -> {
+            List<Ticket> upcoming = new ArrayList<>();
+            List<Ticket> past = new ArrayList<>();
+            List<Ticket> cancelled = new ArrayList<>();
+            boolean truncated = false;
+
+            String sql = "SELECT pnr, username, booked_by, train_number, seat_number, travel_date, from_stop, to_stop, status FROM tickets "
+                    + "WHERE booked_by = ? ORDER BY travel_date DESC, pnr" + (limit > 0 ? " LIMIT ?" : "");
+            String today = LocalDate.now().toString();
+            try (Connection c = this.db.getConnection(); PreparedStatement ps = c.prepareStatement(sql)) {
+                ps.setString(1, passenger.getUsername());
+                // one extra row tells us whether there is more than the caller asked for
+                if (limit > 0) ps.setInt(2, limit + 1);
+                try (ResultSet rs = ps.executeQuery()) {
+                    TicketRowMapper mapper = new TicketRowMapper(trainService, rs);
+                    int rows = 0;
+                    while (rs.next()) {
+                        if (limit > 0 && ++rows > limit) {
+                            truncated = true;
+                            break;
+                        }
+                        Ticket t = mapper.map(rs);
+                        if (t == null) continue;
+                        String status = mapper.status(rs);
+                        if ("CANCELLED".equals(status)) {
+                            cancelled.add(t);
+                        } else if ("ACTIVE".equals(status)) {
+                            if (t.getTravelDate().compareTo(today) >= 0) upcoming.add(t); else past.add(t);
                         }
-                        break;
                     }
                 }
-
-                if (foundTrain != null && foundSeat != null && "ACTIVE".equalsIgnoreCase(status)) {
-                    User u = new User(username, "", Role.PASSENGER);
-                    Ticket tkt = new Ticket(pnr, u, foundTrain, foundSeat, travelDate);
-                    passengerTickets.add(tkt);
-                } else {
-                    System.out.println("Warning: Could not resolve train/seat for active ticket " + pnr);
-                }
+            } catch (SQLException | com.booking.exception.DatabaseException e) {
+                DB_ERRORS.increment();
+                System.out.println("Error loading bookings from DB: " + e.getMessage());
             }
-        }
-    } catch (SQLException | com.booking.exception.DatabaseException e) {
-        System.out.println("Error loading active tickets from DB: " + e.getMessage());
+            // rows arrive latest first; show upcoming journeys soonest first
+            Collections.reverse(upcoming);
+            return new PassengerBookings(upcoming, past, cancelled, truncated);
+        });
     }
 
-    return passengerTickets;
-}
-
-
     public Ticket findTicketByPnr(String pnr) {
-        for (Ticket ticket : allTickets) {
-            if (ticket.getPnrNumber().equalsIgnoreCase(pnr)) {
-                return ticket;
-            }
-        }
-        return null;
+        return FIND_TICKET_BY_PNR.time(() -> {
+            Ticket ticket = this.tickets.findByPnr(pnr);
+            return ticket != null || pnr == null || pnr.isBlank() ? ticket : loadActiveTicket(pnr.trim());
+        });
     }
 
-    public boolean cancelTicket(Ticket ticket) {
-        String sql = "UPDATE tickets SET status = 'CANCELLED' WHERE pnr = ?";
+    /**
+     * Past tickets, and all tickets after a warm start, are not held in memory; read one on
+     * demand. Only an upcoming one is kept in the registry, which holds no past tickets.
+     */
+    private Ticket loadActiveTicket(String pnr) {
+        String sql = "SELECT pnr, username, booked_by, train_number, seat_number, travel_date, from_stop, to_stop FROM tickets WHERE pnr = ? AND status = 'ACTIVE'";
         try (Connection c = this.db.getConnection(); PreparedStatement ps = c.prepareStatement(sql)) {
-            ps.setString(1, ticket.getPnrNumber());
-            int updated = ps.executeUpdate();
-            if (updated > 0) {
-                try {
-                    ticket.getSeat().unbook();
-                } catch (Exception ignore) {
-                }
-                try {
-                    this.allTickets.remove(ticket);
-                } catch (Exception ignore) {
-                }
-                String findId = "SELECT id FROM users WHERE username = ?";
-                Integer userId = null;
-                try (Connection conn2 = this.db.getConnection(); PreparedStatement ps2 = conn2.prepareStatement(findId)) {
-                    ps2.setString(1, ticket.getPassenger().getUsername());
-                    try (ResultSet rs2 = ps2.executeQuery()) {
-                        if (rs2.next()) userId = rs2.getInt("id");
-                    }
-                } catch (SQLException | com.booking.exception.DatabaseException e) {
-                }
-
-                String insertHistory = "INSERT INTO user_history(user_id, pnr, username, action, details) VALUES(?,?,?,?,?)";
-                try (Connection conn3 = this.db.getConnection(); PreparedStatement ps3 = conn3.prepareStatement(insertHistory)) {
-                    if (userId != null) ps3.setInt(1, userId); else ps3.setNull(1, java.sql.Types.INTEGER);
-                    ps3.setString(2, ticket.getPnrNumber());
-                    ps3.setString(3, ticket.getPassenger().getUsername());
-                    ps3.setString(4, "CANCEL");
-                    ps3.setString(5, "Cancelled ticket PNR " + ticket.getPnrNumber());
-                    ps3.executeUpdate();
-                } catch (SQLException | com.booking.exception.DatabaseException e) {
-                }
-
-                return true;
-            } else {
-                return false;
+            ps.setString(1, pnr);
+            try (ResultSet rs = ps.executeQuery()) {
+                if (!rs.next()) return null;
+                Ticket t = new TicketRowMapper(trainService, rs).map(rs);
+                if (t == null || !pnr.equalsIgnoreCase(t.getPnrNumber())) return null;
+                if (t.getTravelDate().compareTo(LocalDate.now().toString()) >= 0) this.tickets.add(t);
+                return t;
             }
-        } catch (com.booking.exception.DatabaseException | SQLException e) {
-            System.out.println("Error cancelling ticket in DB: " + e.getMessage());
-            return false;
+        } catch (SQLException | com.booking.exception.DatabaseException e) {
+            DB_ERRORS.increment();
+            System.out.println("Error loading ticket " + pnr + " from DB: " + e.getMessage());
+            return null;
         }
     }
 
-    public List<Ticket> getAllTickets() {
-        return this.allTickets;
-    }
-
-    private void loadActiveTicketsFromDb() {
-        String sql = "SELECT pnr, username, train_number, seat_number, travel_date FROM tickets WHERE status = 'ACTIVE'";
-        try (Connection c = this.db.getConnection(); PreparedStatement ps = c.prepareStatement(sql); ResultSet rs = ps.executeQuery()) {
-            while (rs.next()) {
-                String pnr = rs.getString("pnr");
-                String username = rs.getString("username");
-                String trainNumber = rs.getString("train_number");
-                String seatNumber = rs.getString("seat_number");
-                String travelDate = rs.getString("travel_date");
-
-                Train foundTrain = null;
-                Seat foundSeat = null;
-                for (Train t : trainService.getAllTrains()) {
-                    if (t.getTrainNumber().equalsIgnoreCase(trainNumber)) {
-                        foundTrain = t;
-                        for (Seat s : t.getSeats()) {
-                            if (s.getSeatNumber().equalsIgnoreCase(seatNumber)) {
-                                foundSeat = s;
-                                break;
-                            }
-                        }
-                        break;
+    public boolean cancelTicket(Ticket ticket) {
+        return CANCEL_TICKET.time(() -> {
+            String sql = "UPDATE tickets SET status = 'CANCELLED', active_flag = NULL WHERE pnr = ? AND status = 'ACTIVE'";
+            try (Connection c = this.db.getConnection()) {
+                int updated = runInTransaction(c, () -> {
+                    int rows;
+                    try (PreparedStatement ps = c.prepareStatement(sql)) {
+                        ps.setString(1, ticket.getPnrNumber());
+                        rows = ps.executeUpdate();
                     }
-                }
-
-                if (foundTrain != null && foundSeat != null) {
-                    User u = new User(username, "", Role.PASSENGER);
-                    Ticket tkt = new Ticket(pnr, u, foundTrain, foundSeat, travelDate);
-                    this.allTickets.add(tkt);
-                    foundSeat.book();
+                    if (rows == 0) return 0;
+                    try (PreparedStatement ps = c.prepareStatement("DELETE FROM ticket_legs WHERE pnr = ?")) {
+                        ps.setString(1, ticket.getPnrNumber());
+                        ps.executeUpdate();
+                    }
+                    if (changeLog != null) changeLog.recordCancelled(c, ticket);
+                    return rows;
+                });
+                if (updated > 0) {
+                    trainService.getSeatInventory().markReleased(ticket.getTrain(), ticket.getTravelDate(), ticket.getSeat().getSeatNumber(),
+                            ticket.getFromStop(), ticket.getToStop());
+                    this.tickets.remove(ticket.getPnrNumber());
+                    SEATS_CANCELLED.increment();
+                    auditLog.record(ticket.getPassenger().getUsername(), ticket.getPnrNumber(), "CANCEL", "Cancelled ticket PNR " + ticket.getPnrNumber());
+
+                    return true;
                 } else {
-                    System.out.println("Warning: Could not resolve train/seat for ticket " + pnr);
+                    return false;
                 }
+            } catch (com.booking.exception.DatabaseException | SQLException e) {
+                DB_ERRORS.increment();
+                System.out.println("Error cancelling ticket in DB: " + e.getMessage());
+                return false;
             }
-        } catch (SQLException e) {
-            System.out.println("Error loading active tickets from DB: " + e.getMessage());
-        }
+        });
     }
 
-   public List<Ticket> findPastTicketsByPassenger(User passenger) {
-    List<Ticket> past = new ArrayList<>();
-    String sqlBookedBy = "SELECT pnr, username, train_number, seat_number, travel_date, status FROM tickets WHERE booked_by = ?";
-
-    try (Connection c = this.db.getConnection()) {
-        boolean usedBookedBy = true;
-        PreparedStatement ps;
+    /**
+     * Runs {@code work} as one transaction on {@code c}, so a ticket row, its seat legs and its
+     * change-log entry are written together or not at all.
+     * @return the work's update count
+     */
+    private static int runInTransaction(Connection c, SqlWork work) throws SQLException {
+        c.setAutoCommit(false);
         try {
-            ps = c.prepareStatement(sqlBookedBy);
-            ps.setString(1, passenger.getUsername());
-        } catch (SQLException se) {
-            usedBookedBy = false;
-            String sql = "SELECT pnr, username, train_number, seat_number, travel_date, status FROM tickets WHERE username = ?";
-            ps = c.prepareStatement(sql);
-            ps.setString(1, passenger.getUsername());
+            int updated = work.run();
+            c.commit();
+            return updated;
+        } catch (SQLException | RuntimeException e) {
+            try { c.rollback(); } catch (SQLException ignored) { }
+            throw e;
+        } finally {
+            try { c.setAutoCommit(true); } catch (SQLException ignored) { }
         }
+    }
 
-        try (PreparedStatement psFinal = ps; ResultSet rs = psFinal.executeQuery()) {
-            while (rs.next()) {
-                String pnr = rs.getString("pnr");
-                String username = rs.getString("username") != null ? rs.getString("username") : passenger.getUsername();
-                String trainNumber = rs.getString("train_number");
-                String seatNumber = rs.getString("seat_number");
-                String travelDate = rs.getString("travel_date");
-                String status = rs.getString("status");
-
-                LocalDate travel = null;
-                boolean isPast = false;
-                if (travelDate != null && travelDate.matches("\\d{4}-\\d{2}-\\d{2}")) {
-                    try {
-                        travel = LocalDate.parse(travelDate, DateTimeFormatter.ISO_LOCAL_DATE);
-                        isPast = travel.isBefore(LocalDate.now());
-                    } catch (DateTimeParseException ex) {
-                        System.out.println("[WARN] Skipping invalid date for past ticket " + pnr + ": " + travelDate);
-                        continue;
-                    }
-                } else {
-                    System.out.println("[WARN] Ignoring non-ISO date for past ticket " + pnr + ": " + travelDate);
-                    continue;
-                }
+    @FunctionalInterface
+    private interface SqlWork {
+        int run() throws SQLException;
+    }
 
-                    boolean isActive = status != null && status.trim().equalsIgnoreCase("ACTIVE");
-                    boolean isCancelled = status != null && status.trim().equalsIgnoreCase("CANCELLED");
-
-                    // Only include tickets that are active and whose travel date is before today
-                    if (isActive && isPast) {
-                    Train foundTrain = null;
-                    Seat foundSeat = null;
-                    for (Train t : trainService.getAllTrains()) {
-                        if (t.getTrainNumber().equalsIgnoreCase(trainNumber)) {
-                            foundTrain = t;
-                            for (Seat s : t.getSeats()) {
-                                if (s.getSeatNumber().equalsIgnoreCase(seatNumber)) {
-                                    foundSeat = s;
-                                    break;
-                                }
-                            }
-                            break;
-                        }
-                    }
+    /** @return the active tickets travelling today or later */
+    public List<Ticket> getAllTickets() {
+        if (!this.registryPreloaded) return readUpcomingTickets();
+        // tickets loaded at startup stay in the registry after their travel date has passed
+        String today = LocalDate.now().toString();
+        List<Ticket> upcoming = new ArrayList<>();
+        for (Ticket t : this.tickets.snapshot()) {
+            if (t.getTravelDate().compareTo(today) >= 0) upcoming.add(t);
+        }
+        return upcoming;
+    }
 
-                    if (foundTrain != null && foundSeat != null) {
-                        User u = new User(username, "", Role.PASSENGER);
-                        Ticket tkt = new Ticket(pnr, u, foundTrain, foundSeat, travelDate);
-                        past.add(tkt);
-                    } else {
-                        System.out.println("Warning: Could not resolve train/seat for past ticket " + pnr);
-                    }
+    private List<Ticket> readUpcomingTickets() {
+        List<Ticket> upcoming = new ArrayList<>();
+        try (Connection c = this.db.getConnection(); PreparedStatement ps = c.prepareStatement(UPCOMING_TICKETS_SQL)) {
+            ps.setString(1, LocalDate.now().toString());
+            try (ResultSet rs = ps.executeQuery()) {
+                TicketRowMapper mapper = null;
+                while (rs.next()) {
+                    if (mapper == null) mapper = new TicketRowMapper(trainService, rs);
+                    Ticket t = mapper.map(rs);
+                    if (t != null) upcoming.add(t);
                 }
             }
+        } catch (SQLException | com.booking.exception.DatabaseException e) {
+            DB_ERRORS.increment();
+            System.out.println("Error loading upcoming tickets from DB: " + e.getMessage());
         }
-    } catch (SQLException | com.booking.exception.DatabaseException e) {
-        System.out.println("Error loading past tickets from DB: " + e.getMessage());
+        return upcoming;
     }
 
-    return past;
-}
-    
-    public List<Ticket> findCancelledTicketsByPassenger(User passenger) {
-        List<Ticket> cancelled = new ArrayList<>();
-        String sqlBookedBy = "SELECT pnr, username, train_number, seat_number, travel_date, status FROM tickets WHERE booked_by = ? AND status = 'CANCELLED'";
-        try (Connection c = this.db.getConnection()) {
-            boolean usedBookedBy = true;
-            PreparedStatement ps;
-            try {
-                ps = c.prepareStatement(sqlBookedBy);
-                ps.setString(1, passenger.getUsername());
-            } catch (SQLException se) {
-                usedBookedBy = false;
-                String sql = "SELECT pnr, username, train_number, seat_number, travel_date, status FROM tickets WHERE username = ? AND status = 'CANCELLED'";
-                ps = c.prepareStatement(sql);
-                ps.setString(1, passenger.getUsername());
-            }
+    public TicketRegistry getTicketRegistry() {
+        return this.tickets;
+    }
 
-            try (PreparedStatement psFinal = ps; ResultSet rs = psFinal.executeQuery()) {
-                while (rs.next()) {
-                    String pnr = rs.getString("pnr");
-                    String username = null;
-                    try { username = rs.getString("username"); } catch (SQLException ignore) { username = passenger.getUsername(); }
-                    String trainNumber = rs.getString("train_number");
-                    String seatNumber = rs.getString("seat_number");
-                    String travelDate = rs.getString("travel_date");
-
-                    Train foundTrain = null;
-                    Seat foundSeat = null;
-                    for (Train t : trainService.getAllTrains()) {
-                        if (t.getTrainNumber().equalsIgnoreCase(trainNumber)) {
-                            foundTrain = t;
-                            for (Seat s : t.getSeats()) {
-                                if (s.getSeatNumber().equalsIgnoreCase(seatNumber)) {
-                                    foundSeat = s;
-                                    break;
-                                }
-                            }
-                            break;
-                        }
-                    }
+    public AuditLog getAuditLog() {
+        return this.auditLog;
+    }
+
+    /**
+     * Stops the audit log this service created, draining its queued history records. An audit
+     * log passed in, and the database, are the caller's to close.
+     */
+    @Override
+    public void close() {
+        if (ownsAuditLog) auditLog.close();
+    }
 
-                    if (foundTrain != null && foundSeat != null) {
-                        User u = new User(username != null ? username : passenger.getUsername(), "", Role.PASSENGER);
-                        Ticket tkt = new Ticket(pnr, u, foundTrain, foundSeat, travelDate);
-                        cancelled.add(tkt);
-                    } else {
-                        System.out.println("Warning: Could not resolve train/seat for cancelled ticket " + pnr);
+    /**
+     * The one startup pass over the tickets table: streams the active tickets travelling today
+     * or later and fills both the seat inventory and the ticket registry from them. Older
+     * tickets cannot be booked against and are read on demand by {@link #findTicketByPnr}.
+     */
+    private void loadUpcomingTickets(int fetchSize) {
+        long start = System.nanoTime();
+        long firstRowNanos = 0;
+        int loaded = 0;
+        int skipped = 0;
+        try (Connection c = this.db.getConnection();
+             PreparedStatement ps = c.prepareStatement(UPCOMING_TICKETS_SQL, ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY)) {
+            ps.setFetchSize(fetchSize);
+            ps.setString(1, LocalDate.now().toString());
+            try (ResultSet rs = ps.executeQuery()) {
+                firstRowNanos = System.nanoTime() - start;
+                TicketRowMapper mapper = null;
+                SeatInventory inventory = trainService.getSeatInventory();
+                while (rs.next()) {
+                    if (mapper == null) mapper = new TicketRowMapper(trainService, rs);
+                    Ticket t = mapper.map(rs);
+                    if (t == null) {
+                        skipped++;
+                        continue;
                     }
+                    inventory.markBooked(t.getTrain(), t.getTravelDate(), t.getSeat().getSeatNumber(), t.getFromStop(), t.getToStop());
+                    this.tickets.add(t);
+                    loaded++;
                 }
             }
         } catch (SQLException | com.booking.exception.DatabaseException e) {
-            System.out.println("Error loading cancelled tickets from DB: " + e.getMessage());
+            DB_ERRORS.increment();
+            System.out.println("Error loading active tickets from DB: " + e.getMessage());
         }
-        return cancelled;
+        LOGGER.info(String.format("Startup: loaded %d upcoming ticket(s) in %d ms (query %d ms, %d unresolved)",
+                loaded, (System.nanoTime() - start) / 1_000_000, firstRowNanos / 1_000_000, skipped));
     }
-}
\ No newline at end of file
+
+    public List<Ticket> findPastTicketsByPassenger(User passenger) {
+        return findBookingsByPassenger(passenger, 0).getPast();
+    }
+
+    public List<Ticket> findCancelledTicketsByPassenger(User passenger) {
+        return findBookingsByPassenger(passenger, 0).getCancelled();
+    }
+}
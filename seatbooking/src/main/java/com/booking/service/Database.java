@@ -4,18 +4,34 @@ import io.github.cdimascio.dotenv.Dotenv;
 import java.sql.Connection;
 import java.sql.DriverManager;
 import java.sql.SQLException;
-import java.sql.Statement;
-import java.sql.ResultSet;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 import com.booking.exception.DatabaseException;
 
 public class Database implements DatabaseProvider {
+    /**
+     * Unique key over (train_number, travel_date, seat_number, active_flag). active_flag is 1
+     * for active tickets and NULL once cancelled, so only one active ticket can hold a seat
+     * per train and date while cancelled rows never conflict. Replaced by {@link #SEAT_LEG_KEY}
+     * once seats could be sold per leg.
+     */
+    public static final String ACTIVE_SEAT_KEY = "uq_tickets_active_seat";
+
+    /**
+     * Unique key over ticket_legs (train_number, travel_date, seat_number, leg). An active
+     * ticket holds one row per leg of its journey, so two tickets can share a seat only on
+     * legs that do not overlap.
+     */
+    public static final String SEAT_LEG_KEY = "uq_ticket_legs_seat_leg";
+
+    private static final Set<String> MIGRATED = ConcurrentHashMap.newKeySet();
     private final Dotenv dotenv = Dotenv.load();
     private final String url;
     private final String user;
     private final String password;
 
     public Database() {
-        this.url = dotenv.get("DB_URL", "jdbc:mysql://localhost:3306/seatbooking?useSSL=false&serverTimezone=UTC");
+        this.url = withBatchRewrite(dotenv.get("DB_URL", "jdbc:mysql://localhost:3306/seatbooking?useSSL=false&serverTimezone=UTC"));
         this.user = dotenv.get("DB_USER", "root");
         this.password = dotenv.get("DB_PASSWORD", "");
 
@@ -26,6 +42,12 @@ public class Database implements DatabaseProvider {
         }
     }
 
+    /** Lets Connector/J send a JDBC batch as one multi-row INSERT unless the URL says otherwise. */
+    static String withBatchRewrite(String url) {
+        if (url == null || !url.startsWith("jdbc:mysql:") || url.contains("rewriteBatchedStatements")) return url;
+        return url + (url.contains("?") ? "&" : "?") + "rewriteBatchedStatements=true";
+    }
+
     @Override
     public Connection getConnection() {
         try {
@@ -35,72 +57,17 @@ public class Database implements DatabaseProvider {
         }
     }
 
+    /**
+     * Brings the schema up to date through {@link SchemaMigrator}. The services all call this
+     * at startup; the migrations run only for the first call per database URL in the process.
+     */
     @Override
     public void init() {
-        String createUsers = "CREATE TABLE IF NOT EXISTS users ("
-                + "id INT AUTO_INCREMENT PRIMARY KEY,"
-                + "username VARCHAR(100) UNIQUE NOT NULL,"
-                + "password VARCHAR(255) NOT NULL,"
-                + "role VARCHAR(50) NOT NULL"
-                + ") ENGINE=InnoDB;";
-
-        String createTrains = "CREATE TABLE IF NOT EXISTS trains ("
-                + "train_number VARCHAR(50) PRIMARY KEY,"
-                + "train_name VARCHAR(255) NOT NULL,"
-                + "route TEXT NOT NULL,"
-                + "total_seats INT NOT NULL"
-                + ") ENGINE=InnoDB;";
-
-        String createTickets = "CREATE TABLE IF NOT EXISTS tickets ("
-                + "pnr VARCHAR(50) PRIMARY KEY,"
-        + "username VARCHAR(100) NOT NULL,"
-        + "booked_by VARCHAR(100) DEFAULT NULL,"
-                + "train_number VARCHAR(50) NOT NULL,"
-                + "seat_number VARCHAR(50) NOT NULL,"
-                + "travel_date VARCHAR(20) NOT NULL,"
-                + "status VARCHAR(20) NOT NULL,"
-                + "created_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP"
-                + ") ENGINE=InnoDB;";
-
-        String createUserHistory = "CREATE TABLE IF NOT EXISTS user_history (" +
-            "id INT AUTO_INCREMENT PRIMARY KEY," +
-            "user_id INT DEFAULT NULL," +
-            "pnr VARCHAR(50) DEFAULT NULL," +
-            "action VARCHAR(50) NOT NULL," +
-            "details TEXT," +
-            "created_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP," +
-            "FOREIGN KEY (user_id) REFERENCES users(id) ON DELETE SET NULL" +
-            ") ENGINE=InnoDB;";
-
-        try (Connection c = getConnection(); Statement s = c.createStatement()) {
-            s.executeUpdate(createUsers);
-            s.executeUpdate(createTrains);
-            s.executeUpdate(createTickets);
-            s.executeUpdate(createUserHistory);
-
-            try (ResultSet rs = s.executeQuery("SHOW COLUMNS FROM user_history LIKE 'user_id'")) {
-                if (!rs.next()) {
-                    s.executeUpdate("ALTER TABLE user_history ADD COLUMN user_id INT DEFAULT NULL");
-                    try {
-                        s.executeUpdate("ALTER TABLE user_history ADD CONSTRAINT fk_user_history_user_id FOREIGN KEY (user_id) REFERENCES users(id) ON DELETE SET NULL");
-                    } catch (SQLException ignored) {
-                    }
-                }
-            }
-
-            try (ResultSet rs = s.executeQuery("SHOW COLUMNS FROM user_history LIKE 'pnr'")) {
-                if (!rs.next()) {
-                    s.executeUpdate("ALTER TABLE user_history ADD COLUMN pnr VARCHAR(50) DEFAULT NULL");
-                }
-            }
-            try (ResultSet rs = s.executeQuery("SHOW COLUMNS FROM tickets LIKE 'booked_by'")) {
-                if (!rs.next()) {
-                    s.executeUpdate("ALTER TABLE tickets ADD COLUMN booked_by VARCHAR(100) DEFAULT NULL");
-                }
-            }
-
-        } catch (SQLException e) {
-            throw new DatabaseException("Failed to initialize database schema", e);
+        if (MIGRATED.contains(url)) return;
+        synchronized (MIGRATED) {
+            if (MIGRATED.contains(url)) return;
+            new SchemaMigrator(this).migrate();
+            MIGRATED.add(url);
         }
     }
-}
\ No newline at end of file
+}
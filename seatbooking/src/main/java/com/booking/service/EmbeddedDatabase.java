@@ -0,0 +1,69 @@
+package com.booking.service;
+
+import com.booking.exception.DatabaseException;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * In-process H2 database in MySQL compatibility mode with the schema from
+ * {@link SchemaMigrator}, for benchmarks and tests that must run without a MySQL server.
+ * Text columns compare case-insensitively, as under MySQL's default collation.
+ * H2 is an optional dependency; add {@code com.h2database:h2} to the classpath to use this.
+ */
+public class EmbeddedDatabase implements DatabaseProvider, AutoCloseable {
+
+    private static final String DRIVER = "org.h2.Driver";
+    private static final AtomicInteger INSTANCES = new AtomicInteger();
+
+    private final String url;
+    private boolean initialized;
+
+    /** Creates a fresh, uniquely named in-memory database. */
+    public EmbeddedDatabase() {
+        this("seatbooking" + INSTANCES.incrementAndGet());
+    }
+
+    /** Opens the named in-memory database; instances with the same name share data. */
+    public EmbeddedDatabase(String name) {
+        // DB_CLOSE_DELAY keeps the data alive between connections until close()
+        this.url = "jdbc:h2:mem:" + name + ";MODE=MySQL;DATABASE_TO_LOWER=TRUE;IGNORECASE=TRUE;DB_CLOSE_DELAY=-1";
+        try {
+            Class.forName(DRIVER);
+        } catch (ClassNotFoundException e) {
+            throw new DatabaseException("H2 driver not found; add com.h2database:h2 to use the embedded database", e);
+        }
+    }
+
+    @Override
+    public Connection getConnection() {
+        try {
+            return DriverManager.getConnection(url, "sa", "");
+        } catch (SQLException e) {
+            throw new DatabaseException("Unable to obtain embedded database connection", e);
+        }
+    }
+
+    @Override
+    public synchronized void init() {
+        if (initialized) return;
+        new SchemaMigrator(this).migrate();
+        initialized = true;
+    }
+
+    public String getUrl() {
+        return url;
+    }
+
+    /** Drops the in-memory database. */
+    @Override
+    public void close() {
+        try (Connection c = getConnection(); Statement s = c.createStatement()) {
+            s.execute("SHUTDOWN");
+        } catch (SQLException | DatabaseException ignored) {
+        }
+    }
+}
@@ -0,0 +1,460 @@
+package com.booking.service;
+
+import com.booking.exception.DatabaseException;
+import com.booking.metrics.Counter;
+import com.booking.metrics.MetricsRegistry;
+import com.booking.metrics.Timer;
+import com.booking.model.Seat;
+import com.booking.model.SeatMap;
+import com.booking.model.Train;
+
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.zip.CRC32;
+
+/**
+ * Keeps the seat occupancy of upcoming travel dates in a memory-mapped file so a restart does
+ * not have to read every active ticket. Each snapshot records the newest {@code tickets.updated_at}
+ * seen before the occupancy was copied; on startup the snapshot is checked against the train
+ * catalogue and that high-water mark, tickets changed since then are replayed, and any
+ * (train, date) whose booked seat legs disagree with {@code ticket_legs} is re-read from it.
+ */
+public class OccupancySnapshot implements AutoCloseable {
+
+    private static final Logger LOGGER = Logger.getLogger(OccupancySnapshot.class.getName());
+
+    private static final int MAGIC = 0x53424F43; // "SBOC"
+    private static final int FORMAT_VERSION = 2;
+    private static final int HEADER_BYTES = 4 + 4 + 8 + 8 + 4;
+    private static final int TRAILER_BYTES = 8;
+
+    private static final MetricsRegistry METRICS = MetricsRegistry.getDefault();
+    private static final Timer WRITE = METRICS.timer("snapshot.write");
+    private static final Counter WRITE_FAILURES = METRICS.counter("snapshot.write_failures");
+
+    private final Path file;
+    private final TrainService trainService;
+    private final DatabaseProvider db;
+    private final long maxAgeMillis;
+    private final long replayMarginMillis;
+
+    private ScheduledExecutorService writer;
+    private volatile long lastWrittenAt;
+    private volatile long lastWrittenBytes;
+
+    /**
+     * @param maxAgeSeconds snapshots older than this are ignored at startup
+     * @param replayMarginSeconds changes this long before the high-water mark are replayed too,
+     *        covering transactions that committed after the snapshot with an earlier timestamp
+     */
+    public OccupancySnapshot(Path file, TrainService trainService, DatabaseProvider db, long maxAgeSeconds, long replayMarginSeconds) {
+        this.file = file;
+        this.trainService = trainService;
+        this.db = db;
+        this.maxAgeMillis = TimeUnit.SECONDS.toMillis(maxAgeSeconds);
+        this.replayMarginMillis = TimeUnit.SECONDS.toMillis(replayMarginSeconds);
+        METRICS.gauge("snapshot.age_s", () -> lastWrittenAt == 0 ? -1 : (System.currentTimeMillis() - lastWrittenAt) / 1000);
+        METRICS.gauge("snapshot.bytes", () -> lastWrittenBytes);
+    }
+
+    public Path getFile() {
+        return file;
+    }
+
+    /** Writes the occupancy of today and later dates, replacing the file atomically. */
+    public synchronized void write() throws IOException {
+        WRITE.time(() -> {
+            long highWater;
+            try (Connection c = db.getConnection()) {
+                highWater = readHighWater(c);
+            } catch (SQLException | DatabaseException e) {
+                throw new IOException("Could not read the tickets high-water mark", e);
+            }
+
+            // copied after the high-water mark, so everything at or before it is in the copy
+            long today = LocalDate.now().toEpochDay();
+            SeatInventory inventory = trainService.getSeatInventory();
+            List<TrainImage> trains = new ArrayList<>();
+            long size = HEADER_BYTES + TRAILER_BYTES;
+            for (Train train : new ArrayList<>(trainService.getAllTrains())) {
+                TrainImage image = new TrainImage(train.getTrainNumber(), train.getTotalSeats(), train.getLegCount());
+                for (String date : train.getBookedDates()) {
+                    long day = LocalDate.parse(date).toEpochDay();
+                    if (day < today) continue;
+                    image.add(day, inventory.copyState(train, date));
+                }
+                trains.add(image);
+                size += image.byteSize();
+            }
+
+            Path dir = file.toAbsolutePath().getParent();
+            if (dir != null) Files.createDirectories(dir);
+            Path tmp = file.resolveSibling(file.getFileName() + ".tmp");
+            try (FileChannel ch = FileChannel.open(tmp, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING,
+                    StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+                MappedByteBuffer buf = ch.map(FileChannel.MapMode.READ_WRITE, 0, size);
+                long writtenAt = System.currentTimeMillis();
+                buf.putInt(MAGIC).putInt(FORMAT_VERSION).putLong(writtenAt).putLong(highWater).putInt(trains.size());
+                for (TrainImage image : trains) image.writeTo(buf);
+                buf.putLong(checksum(buf, buf.position()));
+                buf.force();
+                lastWrittenAt = writtenAt;
+            }
+            Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            lastWrittenBytes = size;
+        });
+    }
+
+    /**
+     * Loads the snapshot into the seat inventory and brings it up to date with the database.
+     * @return false if there was no usable snapshot; the inventory is then left untouched
+     */
+    public boolean restore() {
+        long start = System.nanoTime();
+        Image image = read();
+        if (image == null) return false;
+
+        SeatInventory inventory = trainService.getSeatInventory();
+        try (Connection c = db.getConnection()) {
+            long dbHighWater = readHighWater(c);
+            if (dbHighWater < image.highWater) {
+                LOGGER.warning("Ignoring occupancy snapshot " + file + ": it is newer than the tickets table");
+                return false;
+            }
+            List<Change> changes = readChanges(c, image.highWater - replayMarginMillis);
+            Map<Train, Map<String, Long>> digests = readLegDigests(c);
+
+            image.states.forEach((train, byDate) -> byDate.forEach((date, state) -> inventory.restoreState(train, date, state)));
+            // a released seat leg can only have been re-booked by a later change, so releases go first
+            for (Change ch : changes) {
+                if (!ch.active) inventory.markReleased(ch.train, ch.date, ch.seatNumber, ch.fromStop, ch.toStop);
+            }
+            for (Change ch : changes) {
+                if (ch.active) inventory.markBooked(ch.train, ch.date, ch.seatNumber, ch.fromStop, ch.toStop);
+            }
+            int repaired = repairDrift(c, digests);
+
+            LOGGER.info(String.format("Startup: restored occupancy from %s written %d s ago, replayed %d change(s), re-read %d train-date(s), in %d ms",
+                    file, (System.currentTimeMillis() - image.writtenAt) / 1000, changes.size(), repaired, (System.nanoTime() - start) / 1_000_000));
+            return true;
+        } catch (SQLException | DatabaseException e) {
+            LOGGER.log(Level.WARNING, "Could not bring occupancy snapshot " + file + " up to date; loading from the database", e);
+            clearUpcoming(inventory);
+            return false;
+        }
+    }
+
+    /** @return the validated snapshot, or null if it is missing, stale, corrupt or for other trains */
+    private Image read() {
+        try (FileChannel ch = FileChannel.open(file, StandardOpenOption.READ)) {
+            long size = ch.size();
+            if (size < HEADER_BYTES + TRAILER_BYTES || size > Integer.MAX_VALUE) {
+                LOGGER.warning("Ignoring occupancy snapshot " + file + ": unexpected size " + size);
+                return null;
+            }
+            MappedByteBuffer buf = ch.map(FileChannel.MapMode.READ_ONLY, 0, size);
+            int bodyEnd = (int) size - TRAILER_BYTES;
+            if (buf.getInt() != MAGIC || buf.getInt() != FORMAT_VERSION) {
+                LOGGER.warning("Ignoring occupancy snapshot " + file + ": unknown format");
+                return null;
+            }
+            if (checksum(buf, bodyEnd) != buf.getLong(bodyEnd)) {
+                LOGGER.warning("Ignoring occupancy snapshot " + file + ": checksum mismatch");
+                return null;
+            }
+            Image image = new Image(buf.getLong(), buf.getLong());
+            if (System.currentTimeMillis() - image.writtenAt > maxAgeMillis) {
+                LOGGER.info("Ignoring occupancy snapshot " + file + ": older than " + maxAgeMillis / 1000 + " s");
+                return null;
+            }
+            long today = LocalDate.now().toEpochDay();
+            int trainCount = buf.getInt();
+            for (int i = 0; i < trainCount; i++) {
+                byte[] number = new byte[buf.getShort() & 0xffff];
+                buf.get(number);
+                String trainNumber = new String(number, StandardCharsets.UTF_8);
+                int totalSeats = buf.getInt();
+                int legCount = buf.getInt();
+                Train train = trainService.findTrain(trainNumber);
+                if (train == null || train.getTotalSeats() != totalSeats || train.getLegCount() != legCount) {
+                    LOGGER.warning("Ignoring occupancy snapshot " + file + ": train " + trainNumber + " no longer matches the catalogue");
+                    return null;
+                }
+                int dateCount = buf.getInt();
+                for (int d = 0; d < dateCount; d++) {
+                    long day = buf.getInt();
+                    long[] state = new long[buf.getInt()];
+                    buf.asLongBuffer().get(state);
+                    buf.position(buf.position() + state.length * Long.BYTES);
+                    if (day >= today) image.put(train, LocalDate.ofEpochDay(day).toString(), state);
+                }
+            }
+            if (buf.position() != bodyEnd) {
+                LOGGER.warning("Ignoring occupancy snapshot " + file + ": trailing data");
+                return null;
+            }
+            return image;
+        } catch (NoSuchFileException e) {
+            LOGGER.info("No occupancy snapshot at " + file + "; loading from the database");
+            return null;
+        } catch (IOException | BufferUnderflowException | IndexOutOfBoundsException | IllegalArgumentException e) {
+            LOGGER.log(Level.WARNING, "Ignoring unreadable occupancy snapshot " + file, e);
+            return null;
+        }
+    }
+
+    private static long readHighWater(Connection c) throws SQLException {
+        try (PreparedStatement ps = c.prepareStatement("SELECT MAX(updated_at) FROM tickets");
+             ResultSet rs = ps.executeQuery()) {
+            Timestamp ts = rs.next() ? rs.getTimestamp(1) : null;
+            return ts == null ? 0 : ts.getTime();
+        }
+    }
+
+    private List<Change> readChanges(Connection c, long since) throws SQLException {
+        List<Change> changes = new ArrayList<>();
+        String sql = "SELECT train_number, seat_number, travel_date, status, from_stop, to_stop FROM tickets WHERE updated_at >= ? AND travel_date >= ?";
+        try (PreparedStatement ps = c.prepareStatement(sql)) {
+            ps.setTimestamp(1, new Timestamp(since));
+            ps.setString(2, LocalDate.now().toString());
+            try (ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) {
+                    Train train = trainService.findTrain(rs.getString(1));
+                    if (train == null) continue;
+                    int[] journey = TicketRowMapper.journey(rs, 5, 6, train);
+                    changes.add(new Change(train, rs.getString(3), rs.getString(2), journey[0], journey[1], "ACTIVE".equalsIgnoreCase(rs.getString(4))));
+                }
+            }
+        }
+        return changes;
+    }
+
+    /**
+     * {@link SeatMap#getLegDigest()} of the seat legs held per (train, date) in the database. Rows
+     * come in key order, an index-only scan unlike reading the tickets, so each seat's legs are
+     * adjacent and fold into one mask as they would in the seat map.
+     */
+    private Map<Train, Map<String, Long>> readLegDigests(Connection c) throws SQLException {
+        Map<Train, Map<String, Long>> digests = new HashMap<>();
+        String sql = "SELECT train_number, travel_date, seat_number, leg FROM ticket_legs WHERE travel_date >= ?"
+                + " ORDER BY train_number, travel_date, seat_number";
+        try (PreparedStatement ps = c.prepareStatement(sql)) {
+            ps.setString(1, LocalDate.now().toString());
+            try (ResultSet rs = ps.executeQuery()) {
+                String trainNumber = null;
+                String date = null;
+                String seat = null;
+                long mask = 0;
+                while (rs.next()) {
+                    if (!rs.getString(1).equals(trainNumber) || !rs.getString(2).equals(date) || !rs.getString(3).equals(seat)) {
+                        addDigest(digests, trainNumber, date, seat, mask);
+                        trainNumber = rs.getString(1);
+                        date = rs.getString(2);
+                        seat = rs.getString(3);
+                        mask = 0;
+                    }
+                    int leg = rs.getInt(4);
+                    mask |= SeatMap.legMask(leg, leg + 1);
+                }
+                addDigest(digests, trainNumber, date, seat, mask);
+            }
+        }
+        return digests;
+    }
+
+    private void addDigest(Map<Train, Map<String, Long>> digests, String trainNumber, String date, String seat, long mask) {
+        if (trainNumber == null) return;
+        Train train = trainService.findTrain(trainNumber);
+        if (train == null) return;
+        int seatNumber = Seat.parseNumber(seat);
+        // only what SeatMap.book would keep
+        mask &= SeatMap.legMask(0, train.getLegCount());
+        if (seatNumber < 1 || seatNumber > train.getTotalSeats() || mask == 0) return;
+        digests.computeIfAbsent(train, t -> new HashMap<>()).merge(date, SeatMap.legDigest(seatNumber, mask), Long::sum);
+    }
+
+    /**
+     * Re-reads the seats of every upcoming (train, date) whose in-memory seat legs differ from
+     * the database, e.g. seats another instance booked or a hold that never committed. Legs are
+     * compared by digest rather than count, so a hold that was snapshotted but rolled back while
+     * another seat was sold in its place is caught too.
+     * @return the number of (train, date) pairs re-read
+     */
+    private int repairDrift(Connection c, Map<Train, Map<String, Long>> digests) throws SQLException {
+        SeatInventory inventory = trainService.getSeatInventory();
+        String today = LocalDate.now().toString();
+        int repaired = 0;
+        for (Train train : new ArrayList<>(trainService.getAllTrains())) {
+            Map<String, Long> expected = digests.getOrDefault(train, Map.of());
+            List<String> dates = new ArrayList<>(expected.keySet());
+            for (String date : train.getBookedDates()) {
+                if (date.compareTo(today) >= 0 && !expected.containsKey(date)) dates.add(date);
+            }
+            for (String date : dates) {
+                if (train.getLegDigest(date) == expected.getOrDefault(date, 0L)) continue;
+                inventory.restoreState(train, date, readState(c, train, date));
+                repaired++;
+            }
+        }
+        return repaired;
+    }
+
+    private static long[] readState(Connection c, Train train, String date) throws SQLException {
+        SeatMap map = new SeatMap(train.getTotalSeats(), train.getLegCount());
+        String sql = "SELECT seat_number, leg FROM ticket_legs WHERE train_number = ? AND travel_date = ?";
+        try (PreparedStatement ps = c.prepareStatement(sql)) {
+            ps.setString(1, train.getTrainNumber());
+            ps.setString(2, date);
+            try (ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) {
+                    int leg = rs.getInt(2);
+                    map.book(Seat.parseNumber(rs.getString(1)), SeatMap.legMask(leg, leg + 1));
+                }
+            }
+        }
+        return map.toState();
+    }
+
+    private void clearUpcoming(SeatInventory inventory) {
+        for (Train train : new ArrayList<>(trainService.getAllTrains())) {
+            for (String date : train.getBookedDates()) inventory.restoreState(train, date, new long[0]);
+        }
+    }
+
+    private static long checksum(ByteBuffer buf, int end) {
+        CRC32 crc = new CRC32();
+        crc.update(buf.duplicate().position(0).limit(end));
+        return crc.getValue();
+    }
+
+    /** Writes a snapshot every {@code intervalSeconds}, and once more on {@link #close()}. */
+    public synchronized void startPeriodicWrite(long intervalSeconds) {
+        if (writer != null) throw new IllegalStateException("Periodic occupancy snapshot already running");
+        writer = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "occupancy-snapshot");
+            t.setDaemon(true);
+            return t;
+        });
+        writer.scheduleWithFixedDelay(this::writeQuietly, intervalSeconds, intervalSeconds, TimeUnit.SECONDS);
+    }
+
+    private void writeQuietly() {
+        try {
+            write();
+        } catch (IOException | RuntimeException e) {
+            WRITE_FAILURES.increment();
+            LOGGER.log(Level.WARNING, "Could not write occupancy snapshot " + file, e);
+        }
+    }
+
+    /** Stops the periodic writes and writes a final snapshot; the database must still be open. */
+    @Override
+    public void close() {
+        ScheduledExecutorService w;
+        synchronized (this) {
+            w = writer;
+            writer = null;
+        }
+        if (w != null) {
+            w.shutdown();
+            try {
+                w.awaitTermination(10, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        writeQuietly();
+    }
+
+    private static final class TrainImage {
+        private final byte[] number;
+        private final int totalSeats;
+        private final int legCount;
+        private final List<long[]> dates = new ArrayList<>();
+
+        TrainImage(String trainNumber, int totalSeats, int legCount) {
+            this.number = trainNumber.getBytes(StandardCharsets.UTF_8);
+            this.totalSeats = totalSeats;
+            this.legCount = legCount;
+        }
+
+        /** Stored as {epoch day, {@link SeatMap#toState()}...}. */
+        void add(long epochDay, long[] state) {
+            long[] entry = new long[state.length + 1];
+            entry[0] = epochDay;
+            System.arraycopy(state, 0, entry, 1, state.length);
+            dates.add(entry);
+        }
+
+        long byteSize() {
+            long size = 2 + number.length + 4 + 4 + 4;
+            for (long[] entry : dates) size += 4 + 4 + (long) (entry.length - 1) * Long.BYTES;
+            return size;
+        }
+
+        void writeTo(ByteBuffer buf) {
+            buf.putShort((short) number.length).put(number).putInt(totalSeats).putInt(legCount).putInt(dates.size());
+            for (long[] entry : dates) {
+                buf.putInt((int) entry[0]).putInt(entry.length - 1);
+                for (int i = 1; i < entry.length; i++) buf.putLong(entry[i]);
+            }
+        }
+    }
+
+    private static final class Image {
+        private final long writtenAt;
+        private final long highWater;
+        private final Map<Train, Map<String, long[]>> states = new HashMap<>();
+
+        Image(long writtenAt, long highWater) {
+            this.writtenAt = writtenAt;
+            this.highWater = highWater;
+        }
+
+        void put(Train train, String date, long[] state) {
+            states.computeIfAbsent(train, t -> new HashMap<>()).put(date, state);
+        }
+    }
+
+    private static final class Change {
+        private final Train train;
+        private final String date;
+        private final String seatNumber;
+        private final int fromStop;
+        private final int toStop;
+        private final boolean active;
+
+        Change(Train train, String date, String seatNumber, int fromStop, int toStop, boolean active) {
+            this.train = train;
+            this.date = date;
+            this.seatNumber = seatNumber;
+            this.fromStop = fromStop;
+            this.toStop = toStop;
+            this.active = active;
+        }
+    }
+}
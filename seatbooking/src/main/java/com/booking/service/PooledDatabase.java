@@ -0,0 +1,314 @@
+package com.booking.service;
+
+import com.booking.exception.DatabaseException;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingDeque;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Bounded JDBC connection pool in front of another {@link DatabaseProvider}.
+ * Connections handed out by {@link #getConnection()} go back to the pool when closed,
+ * so callers keep using try-with-resources exactly as they do with {@link Database}.
+ */
+public class PooledDatabase implements DatabaseProvider, AutoCloseable {
+
+    private static final Logger LOGGER = Logger.getLogger(PooledDatabase.class.getName());
+
+    private final DatabaseProvider delegate;
+    private final int maxSize;
+    private final long maxWaitMillis;
+    private final long idleTimeoutMillis;
+    private final long leakThresholdMillis;
+    private final int validationTimeoutSeconds;
+
+    private final Semaphore permits;
+    private final LinkedBlockingDeque<PooledEntry> idle = new LinkedBlockingDeque<>();
+    private final Map<PooledEntry, Borrow> borrowed = new ConcurrentHashMap<>();
+    private final ScheduledExecutorService housekeeper;
+    private final AtomicBoolean closed = new AtomicBoolean(false);
+
+    private final AtomicLong borrowCount = new AtomicLong();
+    private final AtomicLong totalWaitNanos = new AtomicLong();
+    private final AtomicLong maxWaitNanos = new AtomicLong();
+    private final AtomicLong timeoutCount = new AtomicLong();
+    private final AtomicLong createdCount = new AtomicLong();
+    private final AtomicLong destroyedCount = new AtomicLong();
+    private final AtomicLong validationFailures = new AtomicLong();
+    private final AtomicLong leakCount = new AtomicLong();
+
+    public PooledDatabase(DatabaseProvider delegate, int maxSize, long maxWaitMillis,
+                          long idleTimeoutMillis, long leakThresholdMillis, int validationTimeoutSeconds) {
+        if (maxSize < 1) throw new IllegalArgumentException("Pool size must be at least 1");
+        this.delegate = delegate;
+        this.maxSize = maxSize;
+        this.maxWaitMillis = maxWaitMillis;
+        this.idleTimeoutMillis = idleTimeoutMillis;
+        this.leakThresholdMillis = leakThresholdMillis;
+        this.validationTimeoutSeconds = validationTimeoutSeconds;
+        this.permits = new Semaphore(maxSize, true);
+
+        this.housekeeper = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "db-pool-housekeeper");
+            t.setDaemon(true);
+            return t;
+        });
+        long period = Math.max(1000L, Math.min(idleTimeoutMillis, leakThresholdMillis > 0 ? leakThresholdMillis : idleTimeoutMillis) / 2);
+        this.housekeeper.scheduleWithFixedDelay(this::housekeep, period, period, TimeUnit.MILLISECONDS);
+    }
+
+    @Override
+    public Connection getConnection() {
+        if (closed.get()) throw new DatabaseException("Connection pool is closed");
+
+        long start = System.nanoTime();
+        try {
+            if (!permits.tryAcquire(maxWaitMillis, TimeUnit.MILLISECONDS)) {
+                timeoutCount.incrementAndGet();
+                throw new DatabaseException("Timed out after " + maxWaitMillis + " ms waiting for a database connection (pool size " + maxSize + ")");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new DatabaseException("Interrupted while waiting for a database connection", e);
+        }
+
+        PooledEntry entry;
+        try {
+            entry = takeOrCreate();
+        } catch (RuntimeException e) {
+            permits.release();
+            throw e;
+        }
+
+        long waited = System.nanoTime() - start;
+        borrowCount.incrementAndGet();
+        totalWaitNanos.addAndGet(waited);
+        maxWaitNanos.accumulateAndGet(waited, Math::max);
+
+        Borrow borrow = new Borrow(System.currentTimeMillis(),
+                leakThresholdMillis > 0 ? new Exception("Connection borrowed here") : null);
+        borrowed.put(entry, borrow);
+        return (Connection) Proxy.newProxyInstance(Connection.class.getClassLoader(),
+                new Class<?>[] { Connection.class }, new LeaseHandler(entry));
+    }
+
+    private PooledEntry takeOrCreate() {
+        PooledEntry entry;
+        while ((entry = idle.pollFirst()) != null) {
+            if (System.currentTimeMillis() - entry.lastUsed > idleTimeoutMillis || !isValid(entry.physical)) {
+                destroy(entry);
+                continue;
+            }
+            return entry;
+        }
+        Connection physical = delegate.getConnection();
+        createdCount.incrementAndGet();
+        return new PooledEntry(physical);
+    }
+
+    private boolean isValid(Connection c) {
+        try {
+            if (c.isValid(validationTimeoutSeconds)) return true;
+        } catch (SQLException e) {
+            LOGGER.log(Level.FINE, "Connection validation failed", e);
+        }
+        validationFailures.incrementAndGet();
+        return false;
+    }
+
+    private void release(PooledEntry entry) {
+        borrowed.remove(entry);
+        try {
+            Connection c = entry.physical;
+            if (!c.isClosed()) {
+                if (!c.getAutoCommit()) {
+                    c.rollback();
+                    c.setAutoCommit(true);
+                }
+                c.clearWarnings();
+                entry.lastUsed = System.currentTimeMillis();
+                if (!closed.get()) {
+                    idle.offerFirst(entry);
+                    return;
+                }
+            }
+            destroy(entry);
+        } catch (SQLException e) {
+            LOGGER.log(Level.WARNING, "Discarding connection that could not be reset", e);
+            destroy(entry);
+        } finally {
+            permits.release();
+        }
+    }
+
+    private void destroy(PooledEntry entry) {
+        destroyedCount.incrementAndGet();
+        try {
+            entry.physical.close();
+        } catch (SQLException e) {
+            LOGGER.log(Level.FINE, "Error closing pooled connection", e);
+        }
+    }
+
+    private void housekeep() {
+        long now = System.currentTimeMillis();
+        Iterator<PooledEntry> it = idle.descendingIterator();
+        while (it.hasNext()) {
+            PooledEntry entry = it.next();
+            if (now - entry.lastUsed > idleTimeoutMillis && idle.removeFirstOccurrence(entry)) {
+                destroy(entry);
+            }
+        }
+
+        if (leakThresholdMillis <= 0) return;
+        for (Borrow borrow : borrowed.values()) {
+            if (!borrow.reported && now - borrow.since > leakThresholdMillis) {
+                borrow.reported = true;
+                leakCount.incrementAndGet();
+                LOGGER.log(Level.WARNING, "Possible connection leak: connection held for "
+                        + (now - borrow.since) + " ms", borrow.origin);
+            }
+        }
+    }
+
+    @Override
+    public void init() {
+        delegate.init();
+    }
+
+    @Override
+    public void close() {
+        if (!closed.compareAndSet(false, true)) return;
+        housekeeper.shutdownNow();
+        PooledEntry entry;
+        while ((entry = idle.pollFirst()) != null) {
+            destroy(entry);
+        }
+        LOGGER.info("Connection pool closed: " + statsSummary());
+        // an embedded database lives only as long as the pool in front of it
+        if (delegate instanceof AutoCloseable) {
+            try {
+                ((AutoCloseable) delegate).close();
+            } catch (Exception e) {
+                LOGGER.warning("Error closing pooled database: " + e.getMessage());
+            }
+        }
+    }
+
+    public int getActiveCount() {
+        return borrowed.size();
+    }
+
+    public int getIdleCount() {
+        return idle.size();
+    }
+
+    public long getBorrowCount() {
+        return borrowCount.get();
+    }
+
+    public double getAverageWaitMillis() {
+        long n = borrowCount.get();
+        return n == 0 ? 0.0 : totalWaitNanos.get() / 1_000_000.0 / n;
+    }
+
+    public double getMaxWaitMillis() {
+        return maxWaitNanos.get() / 1_000_000.0;
+    }
+
+    public long getTimeoutCount() {
+        return timeoutCount.get();
+    }
+
+    public long getCreatedCount() {
+        return createdCount.get();
+    }
+
+    public long getDestroyedCount() {
+        return destroyedCount.get();
+    }
+
+    public long getValidationFailureCount() {
+        return validationFailures.get();
+    }
+
+    public long getLeakCount() {
+        return leakCount.get();
+    }
+
+    public String statsSummary() {
+        return String.format("active=%d idle=%d max=%d borrows=%d avgWait=%.3fms maxWait=%.3fms timeouts=%d created=%d destroyed=%d invalid=%d leaks=%d",
+                getActiveCount(), getIdleCount(), maxSize, getBorrowCount(), getAverageWaitMillis(), getMaxWaitMillis(),
+                getTimeoutCount(), getCreatedCount(), getDestroyedCount(), getValidationFailureCount(), getLeakCount());
+    }
+
+    private static final class PooledEntry {
+        private final Connection physical;
+        private volatile long lastUsed;
+
+        private PooledEntry(Connection physical) {
+            this.physical = physical;
+            this.lastUsed = System.currentTimeMillis();
+        }
+    }
+
+    private static final class Borrow {
+        private final long since;
+        private final Exception origin;
+        private volatile boolean reported;
+
+        private Borrow(long since, Exception origin) {
+            this.since = since;
+            this.origin = origin;
+        }
+    }
+
+    private final class LeaseHandler implements InvocationHandler {
+        private final PooledEntry entry;
+        private final AtomicBoolean returned = new AtomicBoolean(false);
+
+        private LeaseHandler(PooledEntry entry) {
+            this.entry = entry;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            switch (method.getName()) {
+                case "close":
+                    if (returned.compareAndSet(false, true)) release(entry);
+                    return null;
+                case "isClosed":
+                    return returned.get() || entry.physical.isClosed();
+                case "equals":
+                    return proxy == args[0];
+                case "hashCode":
+                    return System.identityHashCode(proxy);
+                case "toString":
+                    return "PooledConnection[" + entry.physical + "]";
+                default:
+                    break;
+            }
+            if (returned.get()) throw new SQLException("Connection has already been returned to the pool");
+            try {
+                return method.invoke(entry.physical, args);
+            } catch (InvocationTargetException e) {
+                throw e.getCause();
+            }
+        }
+    }
+}
@@ -0,0 +1,393 @@
+package com.booking.service;
+
+import com.booking.metrics.Counter;
+import com.booking.metrics.Histogram;
+import com.booking.metrics.MetricsRegistry;
+import com.booking.metrics.Operation;
+import com.booking.metrics.OperationListener;
+import com.booking.metrics.Timer;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.logging.Logger;
+import java.util.regex.Pattern;
+
+/**
+ * Wraps another {@link DatabaseProvider} and times everything that goes through it: how long
+ * callers wait for a connection, how long each statement takes and how many rows it returns or
+ * changes (grouped by SQL shape, i.e. with literals and IN-lists folded), and how many
+ * connections and statements each service operation uses. Statements slower than the
+ * threshold are logged together with the operation that issued them.
+ */
+public class ProfilingDatabase implements DatabaseProvider, OperationListener, AutoCloseable {
+
+    private static final Logger LOGGER = Logger.getLogger(ProfilingDatabase.class.getName());
+
+    private static final int MAX_TRACKED_SQL = 1000;
+    private static final String OTHER_SHAPE = "<other>";
+    private static final Pattern WHITESPACE = Pattern.compile("\\s+");
+    private static final Pattern STRING_LITERAL = Pattern.compile("'(?:[^']|'')*'");
+    private static final Pattern NUMBER_LITERAL = Pattern.compile("(?<![\\w.])-?\\d+(?:\\.\\d+)?\\b");
+    private static final Pattern PLACEHOLDER_LIST = Pattern.compile("\\?(?:\\s*,\\s*\\?)+");
+    private static final Pattern ROW_LIST = Pattern.compile("(\\(\\?(?:, \\.\\.\\.)?\\))(?:\\s*,\\s*\\(\\?(?:, \\.\\.\\.)?\\))+");
+
+    private final DatabaseProvider delegate;
+    private final MetricsRegistry metrics;
+    private final long slowStatementNanos;
+
+    private final Map<String, ShapeStats> bySql = new ConcurrentHashMap<>();
+    private final Map<String, ShapeStats> byShape = new ConcurrentHashMap<>();
+    private final ThreadLocal<OperationUsage> usage = ThreadLocal.withInitial(OperationUsage::new);
+
+    private final Timer acquire;
+    private final Timer statements;
+    private final Counter connections;
+    private final Counter slowStatements;
+    private final Counter failedStatements;
+
+    public ProfilingDatabase(DatabaseProvider delegate, long slowStatementMillis) {
+        this(delegate, MetricsRegistry.getDefault(), slowStatementMillis);
+    }
+
+    public ProfilingDatabase(DatabaseProvider delegate, MetricsRegistry metrics, long slowStatementMillis) {
+        this.delegate = delegate;
+        this.metrics = metrics;
+        this.slowStatementNanos = slowStatementMillis * 1_000_000L;
+        this.acquire = metrics.timer("db.acquire");
+        this.statements = metrics.timer("db.statements");
+        this.connections = metrics.counter("db.connections");
+        this.slowStatements = metrics.counter("db.statements.slow");
+        this.failedStatements = metrics.counter("db.statements.failed");
+        metrics.addListener(this);
+    }
+
+    public DatabaseProvider getDelegate() {
+        return delegate;
+    }
+
+    @Override
+    public Connection getConnection() {
+        long start = System.nanoTime();
+        Connection physical = delegate.getConnection();
+        acquire.record(System.nanoTime() - start);
+        connections.increment();
+        if (Operation.current() != null) usage.get().connections++;
+        return (Connection) Proxy.newProxyInstance(Connection.class.getClassLoader(),
+                new Class<?>[] { Connection.class }, new ConnectionHandler(physical));
+    }
+
+    @Override
+    public void init() {
+        delegate.init();
+    }
+
+    @Override
+    public void onStart(Operation operation) {
+        if (operation.getParent() == null) usage.get().reset();
+    }
+
+    @Override
+    public void onFinish(Operation operation, long elapsedNanos) {
+        if (operation.getParent() != null) return;
+        OperationUsage u = usage.get();
+        metrics.histogram("db.connections_per_op." + operation.getName()).record(u.connections);
+        metrics.histogram("db.statements_per_op." + operation.getName()).record(u.statements);
+        u.reset();
+    }
+
+    /** @return per-shape statistics, the shapes with the most total execution time first */
+    public List<ShapeStats> getShapeStats() {
+        List<ShapeStats> list = new ArrayList<>(byShape.values());
+        list.sort(Comparator.comparingLong(ShapeStats::getTotalNanos).reversed());
+        return list;
+    }
+
+    /** One line per SQL shape with calls, latency, rows and failures, busiest first. */
+    public String report(int limit) {
+        StringBuilder sb = new StringBuilder();
+        int n = 0;
+        for (ShapeStats s : getShapeStats()) {
+            if (limit > 0 && n++ >= limit) break;
+            Histogram h = s.latency;
+            sb.append(String.format("calls=%d total=%.1fms mean=%.3fms p99=%.3fms max=%.3fms rows=%d failed=%d  %s%n",
+                    h.getCount(), s.getTotalNanos() / 1e6, h.getMean() / 1e6, h.getValueAtQuantile(0.99) / 1e6,
+                    h.getMax() / 1e6, s.getRows(), s.failures.sum(), s.shape));
+        }
+        return sb.toString();
+    }
+
+    /** Logs the statement report; the wrapped provider is closed too if it can be. */
+    @Override
+    public void close() {
+        metrics.removeListener(this);
+        if (!byShape.isEmpty()) LOGGER.info("SQL profile by shape:\n" + report(20));
+        if (delegate instanceof AutoCloseable) {
+            try {
+                ((AutoCloseable) delegate).close();
+            } catch (Exception e) {
+                LOGGER.warning("Error closing profiled database: " + e.getMessage());
+            }
+        }
+    }
+
+    /** Folds literals, IN-lists and whitespace so statements that differ only in values group together. */
+    static String shapeOf(String sql) {
+        String s = WHITESPACE.matcher(sql.trim()).replaceAll(" ");
+        s = STRING_LITERAL.matcher(s).replaceAll("?");
+        s = NUMBER_LITERAL.matcher(s).replaceAll("?");
+        s = PLACEHOLDER_LIST.matcher(s).replaceAll("?, ...");
+        return ROW_LIST.matcher(s).replaceAll("$1, ...");
+    }
+
+    private ShapeStats statsFor(String sql) {
+        ShapeStats stats = bySql.get(sql);
+        if (stats != null) return stats;
+        if (bySql.size() >= MAX_TRACKED_SQL) {
+            return byShape.computeIfAbsent(OTHER_SHAPE, ShapeStats::new);
+        }
+        stats = byShape.computeIfAbsent(shapeOf(sql), ShapeStats::new);
+        bySql.putIfAbsent(sql, stats);
+        return stats;
+    }
+
+    private void recorded(ShapeStats stats, long nanos, long rows, boolean failed) {
+        stats.latency.record(nanos);
+        if (rows > 0) stats.rows.add(rows);
+        statements.record(nanos);
+        if (Operation.current() != null) usage.get().statements++;
+        if (failed) {
+            stats.failures.increment();
+            failedStatements.increment();
+        }
+        if (slowStatementNanos > 0 && nanos >= slowStatementNanos) {
+            slowStatements.increment();
+            Operation op = Operation.current();
+            LOGGER.warning(String.format("Slow statement (%.1f ms%s): %s", nanos / 1e6,
+                    op == null ? "" : " in " + op.getRoot().getName(), stats.shape));
+        }
+    }
+
+    private static Object invoke(Object target, Method method, Object[] args) throws Throwable {
+        try {
+            return method.invoke(target, args);
+        } catch (InvocationTargetException e) {
+            throw e.getCause();
+        }
+    }
+
+    private static long affectedRows(Object result) {
+        if (result instanceof Integer) return Math.max(0, (Integer) result);
+        if (result instanceof Long) return Math.max(0, (Long) result);
+        long sum = 0;
+        if (result instanceof int[]) for (int n : (int[]) result) sum += Math.max(0, n);
+        if (result instanceof long[]) for (long n : (long[]) result) sum += Math.max(0, n);
+        return sum;
+    }
+
+    private Object timed(ShapeStats stats, Object target, Method method, Object[] args) throws Throwable {
+        long start = System.nanoTime();
+        boolean failed = true;
+        try {
+            Object result = invoke(target, method, args);
+            failed = false;
+            return result;
+        } finally {
+            recorded(stats, System.nanoTime() - start, 0, failed);
+        }
+    }
+
+    private ResultSet wrap(ResultSet rs, ShapeStats stats) {
+        return (ResultSet) Proxy.newProxyInstance(Connection.class.getClassLoader(), new Class<?>[] { ResultSet.class },
+                new ResultSetHandler(rs, stats));
+    }
+
+    /** Aggregated timings for one SQL shape. */
+    public static final class ShapeStats {
+        private final String shape;
+        private final Histogram latency = new Histogram();
+        private final LongAdder rows = new LongAdder();
+        private final LongAdder failures = new LongAdder();
+
+        private ShapeStats(String shape) {
+            this.shape = shape;
+        }
+
+        public String getShape() {
+            return shape;
+        }
+
+        public Histogram getLatency() {
+            return latency;
+        }
+
+        public long getRows() {
+            return rows.sum();
+        }
+
+        public long getFailures() {
+            return failures.sum();
+        }
+
+        public long getTotalNanos() {
+            return Math.round(latency.getMean() * latency.getCount());
+        }
+    }
+
+    private static final class OperationUsage {
+        private int connections;
+        private int statements;
+
+        private void reset() {
+            connections = 0;
+            statements = 0;
+        }
+    }
+
+    private final class ConnectionHandler implements InvocationHandler {
+        private final Connection physical;
+
+        private ConnectionHandler(Connection physical) {
+            this.physical = physical;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            switch (method.getName()) {
+                case "prepareStatement":
+                case "prepareCall": {
+                    Statement st = (Statement) ProfilingDatabase.invoke(physical, method, args);
+                    Class<?> type = method.getReturnType();
+                    return Proxy.newProxyInstance(Connection.class.getClassLoader(), new Class<?>[] { type },
+                            new StatementHandler(st, (String) args[0], proxy));
+                }
+                case "createStatement": {
+                    Statement st = (Statement) ProfilingDatabase.invoke(physical, method, args);
+                    return Proxy.newProxyInstance(Connection.class.getClassLoader(), new Class<?>[] { Statement.class },
+                            new StatementHandler(st, null, proxy));
+                }
+                case "commit":
+                case "rollback":
+                    return timed(statsFor(method.getName().toUpperCase()), physical, method, args);
+                case "equals":
+                    return proxy == args[0];
+                case "hashCode":
+                    return System.identityHashCode(proxy);
+                case "toString":
+                    return "ProfiledConnection[" + physical + "]";
+                default:
+                    return ProfilingDatabase.invoke(physical, method, args);
+            }
+        }
+    }
+
+    private final class StatementHandler implements InvocationHandler {
+        private final Statement physical;
+        private final String preparedSql;
+        private final Object connectionProxy;
+        private String batchSql;
+
+        private StatementHandler(Statement physical, String preparedSql, Object connectionProxy) {
+            this.physical = physical;
+            this.preparedSql = preparedSql;
+            this.connectionProxy = connectionProxy;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            String name = method.getName();
+            switch (name) {
+                case "executeQuery":
+                case "execute":
+                case "executeUpdate":
+                case "executeLargeUpdate":
+                case "executeBatch":
+                case "executeLargeBatch":
+                    return execute(name, method, args);
+                case "addBatch":
+                    if (args != null && args.length == 1 && batchSql == null) batchSql = (String) args[0];
+                    return ProfilingDatabase.invoke(physical, method, args);
+                case "getResultSet": {
+                    ResultSet rs = (ResultSet) ProfilingDatabase.invoke(physical, method, args);
+                    return rs == null ? null : wrap(rs, statsFor(sqlOf(null)));
+                }
+                case "getConnection":
+                    return connectionProxy;
+                case "equals":
+                    return proxy == args[0];
+                case "hashCode":
+                    return System.identityHashCode(proxy);
+                case "toString":
+                    return "ProfiledStatement[" + physical + "]";
+                default:
+                    return ProfilingDatabase.invoke(physical, method, args);
+            }
+        }
+
+        private String sqlOf(Object[] args) {
+            if (args != null && args.length > 0 && args[0] instanceof String) return (String) args[0];
+            if (preparedSql != null) return preparedSql;
+            return batchSql != null ? batchSql : "<batch>";
+        }
+
+        private Object execute(String name, Method method, Object[] args) throws Throwable {
+            ShapeStats stats = statsFor(sqlOf(args));
+            if (name.endsWith("Batch")) batchSql = null;
+            long start = System.nanoTime();
+            Object result = null;
+            boolean failed = true;
+            try {
+                result = ProfilingDatabase.invoke(physical, method, args);
+                failed = false;
+            } finally {
+                long nanos = System.nanoTime() - start;
+                // rows of a query are counted as they are read, when its result set is closed
+                recorded(stats, nanos, failed ? 0 : affectedRows(result), failed);
+            }
+            return result instanceof ResultSet ? wrap((ResultSet) result, stats) : result;
+        }
+    }
+
+    private static final class ResultSetHandler implements InvocationHandler {
+        private final ResultSet physical;
+        private final ShapeStats stats;
+        private final AtomicBoolean counted = new AtomicBoolean(false);
+        private long rows;
+
+        private ResultSetHandler(ResultSet physical, ShapeStats stats) {
+            this.physical = physical;
+            this.stats = stats;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            switch (method.getName()) {
+                case "next": {
+                    Object more = ProfilingDatabase.invoke(physical, method, args);
+                    if (Boolean.TRUE.equals(more)) rows++;
+                    return more;
+                }
+                case "close":
+                    if (counted.compareAndSet(false, true)) stats.rows.add(rows);
+                    return ProfilingDatabase.invoke(physical, method, args);
+                case "equals":
+                    return proxy == args[0];
+                case "hashCode":
+                    return System.identityHashCode(proxy);
+                default:
+                    return ProfilingDatabase.invoke(physical, method, args);
+            }
+        }
+    }
+}
@@ -0,0 +1,363 @@
+package com.booking.service;
+
+import com.booking.exception.DatabaseException;
+
+import java.sql.Connection;
+import java.sql.DatabaseMetaData;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Types;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Applies numbered schema migrations in order and records each one in {@code schema_version},
+ * so a started database only runs the migrations it has not seen yet. Every step is written to
+ * be safe on databases created by older releases that had no version table.
+ */
+public class SchemaMigrator {
+
+    private static final Logger LOGGER = Logger.getLogger(SchemaMigrator.class.getName());
+
+    private static final String LOCK_NAME = "seatbooking_schema_migration";
+    private static final int LOCK_TIMEOUT_SECONDS = 60;
+
+    private final DatabaseProvider db;
+    private final List<Migration> migrations = new ArrayList<>();
+
+    public SchemaMigrator(DatabaseProvider db) {
+        this.db = db;
+        migrations.add(new Migration(1, "baseline tables", SchemaMigrator::createBaseline));
+        migrations.add(new Migration(2, "history and booked_by columns", SchemaMigrator::addLegacyColumns));
+        migrations.add(new Migration(3, "unique active-seat key", SchemaMigrator::addActiveSeatKey));
+        migrations.add(new Migration(4, "tickets.travel_date as DATE", SchemaMigrator::convertTravelDate));
+        migrations.add(new Migration(5, "secondary indexes for ticket and history queries", SchemaMigrator::addQueryIndexes));
+        migrations.add(new Migration(6, "tickets.updated_at for occupancy snapshots", SchemaMigrator::addTicketUpdatedAt));
+        migrations.add(new Migration(7, "seat_changes log", SchemaMigrator::createSeatChanges));
+        migrations.add(new Migration(8, "ticket journeys and per-leg seat key", SchemaMigrator::addTicketLegs));
+    }
+
+    /** @return the number of migrations applied by this call */
+    public int migrate() {
+        long start = System.nanoTime();
+        int applied = 0;
+        try (Connection c = db.getConnection(); Statement s = c.createStatement()) {
+            boolean locked = acquireLock(c);
+            try {
+                s.executeUpdate("CREATE TABLE IF NOT EXISTS schema_version ("
+                        + "version INT PRIMARY KEY,"
+                        + "description VARCHAR(255) NOT NULL,"
+                        + "duration_ms BIGINT NOT NULL,"
+                        + "applied_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP"
+                        + ") ENGINE=InnoDB");
+                Set<Integer> done = appliedVersions(s);
+
+                for (Migration m : migrations) {
+                    if (done.contains(m.version)) continue;
+                    long t0 = System.nanoTime();
+                    try {
+                        m.step.apply(c, s);
+                    } catch (SQLException e) {
+                        throw new DatabaseException("Schema migration " + m.version + " (" + m.description + ") failed", e);
+                    }
+                    long millis = (System.nanoTime() - t0) / 1_000_000;
+                    try (PreparedStatement ps = c.prepareStatement("INSERT INTO schema_version(version, description, duration_ms) VALUES(?,?,?)")) {
+                        ps.setInt(1, m.version);
+                        ps.setString(2, m.description);
+                        ps.setLong(3, millis);
+                        ps.executeUpdate();
+                    }
+                    applied++;
+                    LOGGER.info(String.format("Applied schema migration %d (%s) in %d ms", m.version, m.description, millis));
+                }
+            } finally {
+                if (locked) releaseLock(c);
+            }
+        } catch (SQLException e) {
+            throw new DatabaseException("Failed to initialize database schema", e);
+        }
+        LOGGER.info(String.format("Schema at version %d; %d migration(s) applied in %d ms",
+                latestVersion(), applied, (System.nanoTime() - start) / 1_000_000));
+        return applied;
+    }
+
+    public int latestVersion() {
+        return migrations.get(migrations.size() - 1).version;
+    }
+
+    private static Set<Integer> appliedVersions(Statement s) throws SQLException {
+        Set<Integer> versions = new HashSet<>();
+        try (ResultSet rs = s.executeQuery("SELECT version FROM schema_version")) {
+            while (rs.next()) versions.add(rs.getInt(1));
+        }
+        return versions;
+    }
+
+    /** Serialises concurrently starting instances; best effort on servers without GET_LOCK. */
+    private static boolean acquireLock(Connection c) {
+        try (PreparedStatement ps = c.prepareStatement("SELECT GET_LOCK(?, ?)")) {
+            ps.setString(1, LOCK_NAME);
+            ps.setInt(2, LOCK_TIMEOUT_SECONDS);
+            try (ResultSet rs = ps.executeQuery()) {
+                if (rs.next() && rs.getInt(1) == 1) return true;
+            }
+            throw new DatabaseException("Timed out waiting for another instance to finish schema migrations");
+        } catch (SQLException e) {
+            LOGGER.log(Level.FINE, "Migration lock unavailable, continuing without it", e);
+            return false;
+        }
+    }
+
+    private static void releaseLock(Connection c) {
+        try (PreparedStatement ps = c.prepareStatement("SELECT RELEASE_LOCK(?)")) {
+            ps.setString(1, LOCK_NAME);
+            ps.executeQuery().close();
+        } catch (SQLException e) {
+            LOGGER.log(Level.FINE, "Could not release migration lock", e);
+        }
+    }
+
+    private static void createBaseline(Connection c, Statement s) throws SQLException {
+        s.executeUpdate("CREATE TABLE IF NOT EXISTS users ("
+                + "id INT AUTO_INCREMENT PRIMARY KEY,"
+                + "username VARCHAR(100) UNIQUE NOT NULL,"
+                + "password VARCHAR(255) NOT NULL,"
+                + "role VARCHAR(50) NOT NULL"
+                + ") ENGINE=InnoDB");
+
+        s.executeUpdate("CREATE TABLE IF NOT EXISTS trains ("
+                + "train_number VARCHAR(50) PRIMARY KEY,"
+                + "train_name VARCHAR(255) NOT NULL,"
+                + "route TEXT NOT NULL,"
+                + "total_seats INT NOT NULL"
+                + ") ENGINE=InnoDB");
+
+        s.executeUpdate("CREATE TABLE IF NOT EXISTS tickets ("
+                + "pnr VARCHAR(50) PRIMARY KEY,"
+                + "username VARCHAR(100) NOT NULL,"
+                + "booked_by VARCHAR(100) DEFAULT NULL,"
+                + "train_number VARCHAR(50) NOT NULL,"
+                + "seat_number VARCHAR(50) NOT NULL,"
+                + "travel_date DATE NOT NULL,"
+                + "status VARCHAR(20) NOT NULL,"
+                + "active_flag TINYINT DEFAULT 1,"
+                + "created_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP,"
+                + "UNIQUE KEY " + Database.ACTIVE_SEAT_KEY + " (train_number, travel_date, seat_number, active_flag)"
+                + ") ENGINE=InnoDB");
+
+        s.executeUpdate("CREATE TABLE IF NOT EXISTS user_history ("
+                + "id INT AUTO_INCREMENT PRIMARY KEY,"
+                + "user_id INT DEFAULT NULL,"
+                + "pnr VARCHAR(50) DEFAULT NULL,"
+                + "action VARCHAR(50) NOT NULL,"
+                + "details TEXT,"
+                + "created_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP,"
+                + "FOREIGN KEY (user_id) REFERENCES users(id) ON DELETE SET NULL"
+                + ") ENGINE=InnoDB");
+    }
+
+    private static void addLegacyColumns(Connection c, Statement s) throws SQLException {
+        if (!hasColumn(c, "user_history", "user_id")) {
+            s.executeUpdate("ALTER TABLE user_history ADD COLUMN user_id INT DEFAULT NULL");
+            try {
+                s.executeUpdate("ALTER TABLE user_history ADD CONSTRAINT fk_user_history_user_id FOREIGN KEY (user_id) REFERENCES users(id) ON DELETE SET NULL");
+            } catch (SQLException e) {
+                LOGGER.log(Level.WARNING, "Could not add user_history.user_id foreign key", e);
+            }
+        }
+        if (!hasColumn(c, "user_history", "pnr")) {
+            s.executeUpdate("ALTER TABLE user_history ADD COLUMN pnr VARCHAR(50) DEFAULT NULL");
+        }
+        if (!hasColumn(c, "tickets", "booked_by")) {
+            s.executeUpdate("ALTER TABLE tickets ADD COLUMN booked_by VARCHAR(100) DEFAULT NULL");
+        }
+    }
+
+    private static void addActiveSeatKey(Connection c, Statement s) throws SQLException {
+        if (!hasColumn(c, "tickets", "active_flag")) {
+            s.executeUpdate("ALTER TABLE tickets ADD COLUMN active_flag TINYINT DEFAULT 1");
+            s.executeUpdate("UPDATE tickets SET active_flag = NULL WHERE status <> 'ACTIVE'");
+        }
+        if (!hasIndex(c, "tickets", Database.ACTIVE_SEAT_KEY)) {
+            try {
+                s.executeUpdate("ALTER TABLE tickets ADD UNIQUE KEY " + Database.ACTIVE_SEAT_KEY + " (train_number, travel_date, seat_number, active_flag)");
+            } catch (SQLException e) {
+                LOGGER.log(Level.WARNING, "Could not add unique active-seat key; existing rows hold duplicate active seats", e);
+            }
+        }
+    }
+
+    /**
+     * Older releases stored travel_date as VARCHAR(20). Every date the application wrote is
+     * yyyy-MM-dd, which MySQL converts in place; the key on the column is rebuilt as part of it.
+     */
+    private static void convertTravelDate(Connection c, Statement s) throws SQLException {
+        if (columnType(c, "tickets", "travel_date") == Types.DATE) return;
+        try (ResultSet rs = s.executeQuery("SELECT COUNT(*) FROM tickets WHERE STR_TO_DATE(travel_date, '%Y-%m-%d') IS NULL")) {
+            if (rs.next() && rs.getLong(1) > 0) {
+                throw new SQLException(rs.getLong(1) + " ticket(s) have a travel_date that is not yyyy-MM-dd; fix them before upgrading");
+            }
+        }
+        s.executeUpdate("ALTER TABLE tickets MODIFY travel_date DATE NOT NULL");
+    }
+
+    /**
+     * Indexes for the service queries: a passenger's bookings by travel date, the active
+     * tickets of a train, the startup load of active tickets, and history lookups.
+     */
+    private static void addQueryIndexes(Connection c, Statement s) throws SQLException {
+        addIndex(c, s, "tickets", "idx_tickets_booked_by_date", "booked_by, travel_date");
+        addIndex(c, s, "tickets", "idx_tickets_train_status_date", "train_number, status, travel_date");
+        addIndex(c, s, "tickets", "idx_tickets_status_date", "status, travel_date");
+        addIndex(c, s, "user_history", "idx_user_history_user_created", "user_id, created_at");
+        addIndex(c, s, "user_history", "idx_user_history_pnr", "pnr");
+    }
+
+    /** Lets a restart replay only the tickets booked or cancelled since its occupancy snapshot. */
+    private static void addTicketUpdatedAt(Connection c, Statement s) throws SQLException {
+        if (!hasColumn(c, "tickets", "updated_at")) {
+            s.executeUpdate("ALTER TABLE tickets ADD COLUMN updated_at TIMESTAMP(3) NOT NULL"
+                    + " DEFAULT CURRENT_TIMESTAMP(3) ON UPDATE CURRENT_TIMESTAMP(3)");
+        }
+        addIndex(c, s, "tickets", "idx_tickets_updated_at", "updated_at");
+    }
+
+    /** Bookings and cancellations made by each instance, polled by the others; see SeatChangeLog. */
+    private static void createSeatChanges(Connection c, Statement s) throws SQLException {
+        s.executeUpdate("CREATE TABLE IF NOT EXISTS seat_changes ("
+                + "id BIGINT AUTO_INCREMENT PRIMARY KEY,"
+                + "node_id INT NOT NULL,"
+                + "action VARCHAR(10) NOT NULL,"
+                + "pnr VARCHAR(50) NOT NULL,"
+                + "username VARCHAR(100) DEFAULT NULL,"
+                + "booked_by VARCHAR(100) DEFAULT NULL,"
+                + "train_number VARCHAR(50) NOT NULL,"
+                + "seat_number VARCHAR(50) NOT NULL,"
+                + "travel_date DATE NOT NULL,"
+                + "created_at TIMESTAMP(3) NOT NULL DEFAULT CURRENT_TIMESTAMP(3)"
+                + ") ENGINE=InnoDB");
+        addIndex(c, s, "seat_changes", "idx_seat_changes_created", "created_at");
+    }
+
+    /**
+     * Lets a seat be sold again on legs another ticket does not use. Tickets record the stops
+     * they run between (NULL for the whole route, as every older ticket did) and hold one
+     * ticket_legs row per leg; its unique key takes over from the one-ticket-per-seat key.
+     * Upcoming active tickets are given their legs here, past ones cannot conflict any more.
+     * The DDL commits as it goes, so every step is safe to repeat after a failed run.
+     */
+    private static void addTicketLegs(Connection c, Statement s) throws SQLException {
+        for (String table : new String[] { "tickets", "seat_changes" }) {
+            if (!hasColumn(c, table, "from_stop")) s.executeUpdate("ALTER TABLE " + table + " ADD COLUMN from_stop INT DEFAULT NULL");
+            if (!hasColumn(c, table, "to_stop")) s.executeUpdate("ALTER TABLE " + table + " ADD COLUMN to_stop INT DEFAULT NULL");
+        }
+        s.executeUpdate("CREATE TABLE IF NOT EXISTS ticket_legs ("
+                + "pnr VARCHAR(50) NOT NULL,"
+                + "leg INT NOT NULL,"
+                + "train_number VARCHAR(50) NOT NULL,"
+                + "travel_date DATE NOT NULL,"
+                + "seat_number VARCHAR(50) NOT NULL,"
+                + "PRIMARY KEY (pnr, leg),"
+                + "UNIQUE KEY " + Database.SEAT_LEG_KEY + " (train_number, travel_date, seat_number, leg)"
+                + ") ENGINE=InnoDB");
+
+        Map<String, Integer> legCounts = new HashMap<>();
+        try (ResultSet rs = s.executeQuery("SELECT train_number, route FROM trains")) {
+            while (rs.next()) {
+                int stops = 0;
+                for (String stop : String.valueOf(rs.getString("route")).split(",")) {
+                    if (!stop.isBlank()) stops++;
+                }
+                legCounts.put(rs.getString("train_number"), Math.max(1, stops - 1));
+            }
+        }
+        String today = LocalDate.now().toString();
+        for (int leg = 0; ; leg++) {
+            List<String> trains = new ArrayList<>();
+            for (Map.Entry<String, Integer> e : legCounts.entrySet()) {
+                if (e.getValue() > leg) trains.add(e.getKey());
+            }
+            if (trains.isEmpty()) break;
+            StringBuilder sql = new StringBuilder("INSERT INTO ticket_legs(pnr, leg, train_number, travel_date, seat_number) SELECT pnr, ")
+                    .append(leg).append(", train_number, travel_date, seat_number FROM tickets WHERE status = 'ACTIVE' AND travel_date >= ? AND train_number IN (");
+            for (int i = 0; i < trains.size(); i++) sql.append(i == 0 ? "?" : ",?");
+            // legs copied by an earlier run that failed part way through are left alone
+            sql.append(") AND NOT EXISTS (SELECT 1 FROM ticket_legs l WHERE l.pnr = tickets.pnr AND l.leg = ")
+                    .append(leg).append(")");
+            try (PreparedStatement ps = c.prepareStatement(sql.toString())) {
+                ps.setString(1, today);
+                for (int i = 0; i < trains.size(); i++) ps.setString(2 + i, trains.get(i));
+                ps.executeUpdate();
+            }
+        }
+
+        if (hasIndex(c, "tickets", Database.ACTIVE_SEAT_KEY)) {
+            try {
+                s.executeUpdate("ALTER TABLE tickets DROP INDEX " + Database.ACTIVE_SEAT_KEY);
+            } catch (SQLException e) {
+                // H2 only drops the key through the constraint that created it
+                s.executeUpdate("ALTER TABLE tickets DROP CONSTRAINT " + Database.ACTIVE_SEAT_KEY);
+            }
+        }
+    }
+
+    private static void addIndex(Connection c, Statement s, String table, String name, String columns) throws SQLException {
+        if (hasIndex(c, table, name)) return;
+        s.executeUpdate("CREATE INDEX " + name + " ON " + table + " (" + columns + ")");
+    }
+
+    private static boolean hasColumn(Connection c, String table, String column) throws SQLException {
+        return columnType(c, table, column) != Types.NULL;
+    }
+
+    /** @return the java.sql.Types code of the column, or Types.NULL if it does not exist */
+    private static int columnType(Connection c, String table, String column) throws SQLException {
+        DatabaseMetaData meta = c.getMetaData();
+        try (ResultSet rs = meta.getColumns(c.getCatalog(), null, table, column)) {
+            while (rs.next()) {
+                if (column.equalsIgnoreCase(rs.getString("COLUMN_NAME"))) return rs.getInt("DATA_TYPE");
+            }
+        }
+        return Types.NULL;
+    }
+
+    private static boolean hasIndex(Connection c, String table, String index) throws SQLException {
+        DatabaseMetaData meta = c.getMetaData();
+        String prefix = (index + "_index").toLowerCase();
+        try (ResultSet rs = meta.getIndexInfo(c.getCatalog(), null, table, false, true)) {
+            while (rs.next()) {
+                String name = rs.getString("INDEX_NAME");
+                if (name == null) continue;
+                // H2 names the index backing a named constraint <constraint>_INDEX_<n>
+                if (index.equalsIgnoreCase(name) || name.toLowerCase().startsWith(prefix)) return true;
+            }
+        }
+        return false;
+    }
+
+    @FunctionalInterface
+    private interface Step {
+        void apply(Connection c, Statement s) throws SQLException;
+    }
+
+    private static final class Migration {
+        private final int version;
+        private final String description;
+        private final Step step;
+
+        private Migration(int version, String description, Step step) {
+            this.version = version;
+            this.description = description;
+            this.step = step;
+        }
+    }
+}
@@ -0,0 +1,309 @@
+package com.booking.service;
+
+import com.booking.exception.DatabaseException;
+import com.booking.metrics.Counter;
+import com.booking.metrics.Histogram;
+import com.booking.metrics.MetricsRegistry;
+import com.booking.metrics.Timer;
+import com.booking.model.Role;
+import com.booking.model.Seat;
+import com.booking.model.Ticket;
+import com.booking.model.Train;
+import com.booking.model.User;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Keeps the in-memory seats and tickets of several instances sharing one database in step.
+ * Every booking and cancellation adds a row to {@code seat_changes} in its own transaction,
+ * and a background poller applies the rows written by other instances to the local seat
+ * inventory and ticket registry.
+ * <p>
+ * Ids are assigned when a row is inserted, not when it commits, so a poll can see id n+1
+ * before id n. Skipped ids are remembered and looked up again until they show up or the gap
+ * timeout passes; a gap that never fills is a rolled-back transaction. Each transaction
+ * inserts or deletes a ticket's {@code ticket_legs} rows before it adds its change row, and
+ * the per-leg unique key makes a second transaction on the same seat leg wait for the first
+ * to commit. So for any one seat leg, changes commit in id order. Changes to different legs
+ * of a seat can commit in any order, which is harmless because each change touches only its
+ * own ticket's legs.
+ */
+public class SeatChangeLog implements AutoCloseable {
+
+    private static final Logger LOGGER = Logger.getLogger(SeatChangeLog.class.getName());
+
+    static final String BOOK = "BOOK";
+    static final String CANCEL = "CANCEL";
+
+    private static final int POLL_BATCH = 1000;
+    private static final int GAP_LOOKUP_CHUNK = 100;
+    private static final int MAX_GAPS = 10000;
+    private static final long PURGE_INTERVAL_MILLIS = TimeUnit.MINUTES.toMillis(10);
+    private static final String COLUMNS = "id, node_id, action, pnr, username, booked_by, train_number, seat_number, travel_date, from_stop, to_stop, created_at, "
+            + "CURRENT_TIMESTAMP(3) AS db_now";
+
+    private static final MetricsRegistry METRICS = MetricsRegistry.getDefault();
+    private static final Timer POLL = METRICS.timer("changes.poll");
+    private static final Counter APPLIED = METRICS.counter("changes.applied");
+    private static final Counter POLL_FAILURES = METRICS.counter("changes.poll_failures");
+    private static final Counter GAPS_EXPIRED = METRICS.counter("changes.gaps_expired");
+    /** Milliseconds from a change being written to it being applied here, by the database clock. */
+    private static final Histogram LAG = METRICS.histogram("changes.lag_ms");
+
+    private final DatabaseProvider db;
+    private final TrainService trainService;
+    private final TicketRegistry tickets;
+    private final int nodeId;
+    private final long gapTimeoutMillis;
+    private final long retentionMillis;
+
+    /** id -> when it was first missed, oldest first; guarded by this */
+    private final Map<Long, Long> gaps = new LinkedHashMap<>();
+    private volatile long lastSeenId;
+    private volatile int pendingGaps;
+    private volatile long lastPollAt;
+    private long lastPurgeAt;
+    private ScheduledExecutorService poller;
+
+    /**
+     * Positions the log before anything is loaded into memory, so changes committed while the
+     * instance starts up are applied by the first poll rather than lost.
+     * @param nodeId this instance's id, which no other instance may share; rows it wrote are not applied again
+     * @param gapTimeoutMillis how long a skipped id is waited for; longer than any booking transaction
+     * @param retentionSeconds rows older than this are deleted; 0 keeps them
+     */
+    public SeatChangeLog(DatabaseProvider db, TrainService trainService, TicketRegistry tickets, int nodeId,
+                         long gapTimeoutMillis, long retentionSeconds) {
+        this.db = db;
+        this.trainService = trainService;
+        this.tickets = tickets;
+        this.nodeId = nodeId;
+        this.gapTimeoutMillis = gapTimeoutMillis;
+        this.retentionMillis = TimeUnit.SECONDS.toMillis(retentionSeconds);
+
+        // start a gap timeout behind the head: transactions still open now may hold lower ids
+        try (Connection c = db.getConnection();
+             PreparedStatement ps = c.prepareStatement("SELECT MAX(id) FROM seat_changes WHERE created_at < ?")) {
+            ps.setTimestamp(1, new Timestamp(System.currentTimeMillis() - gapTimeoutMillis));
+            try (ResultSet rs = ps.executeQuery()) {
+                this.lastSeenId = rs.next() ? rs.getLong(1) : 0;
+            }
+        } catch (SQLException e) {
+            throw new DatabaseException("Failed to read the seat change log position", e);
+        }
+
+        METRICS.gauge("changes.last_id", () -> lastSeenId);
+        METRICS.gauge("changes.pending_gaps", () -> pendingGaps);
+        METRICS.gauge("changes.since_last_poll_ms", () -> lastPollAt == 0 ? -1 : System.currentTimeMillis() - lastPollAt);
+    }
+
+    public int getNodeId() {
+        return nodeId;
+    }
+
+    /** Adds BOOK rows for the tickets; call inside the transaction that inserts them. */
+    void recordBooked(Connection c, List<Ticket> booked) throws SQLException {
+        try (PreparedStatement ps = c.prepareStatement(insertSql())) {
+            for (Ticket t : booked) {
+                bind(ps, BOOK, t);
+                ps.addBatch();
+            }
+            ps.executeBatch();
+        }
+    }
+
+    /** Adds a CANCEL row for the ticket; call inside the transaction that cancels it. */
+    void recordCancelled(Connection c, Ticket ticket) throws SQLException {
+        try (PreparedStatement ps = c.prepareStatement(insertSql())) {
+            bind(ps, CANCEL, ticket);
+            ps.executeUpdate();
+        }
+    }
+
+    private static String insertSql() {
+        return "INSERT INTO seat_changes(node_id, action, pnr, username, booked_by, train_number, seat_number, travel_date, from_stop, to_stop) "
+                + "VALUES(?,?,?,?,?,?,?,?,?,?)";
+    }
+
+    private void bind(PreparedStatement ps, String action, Ticket t) throws SQLException {
+        ps.setInt(1, nodeId);
+        ps.setString(2, action);
+        ps.setString(3, t.getPnrNumber());
+        ps.setString(4, t.getPassenger().getUsername());
+        ps.setString(5, t.getBookedBy());
+        ps.setString(6, t.getTrain().getTrainNumber());
+        ps.setString(7, t.getSeat().getSeatNumber());
+        ps.setString(8, t.getTravelDate());
+        ps.setInt(9, t.getFromStop());
+        ps.setInt(10, t.getToStop());
+    }
+
+    /**
+     * Applies the changes other instances have written since the last poll.
+     * @return the number of changes applied
+     */
+    public synchronized int poll() {
+        return POLL.time(() -> {
+            try (Connection c = db.getConnection()) {
+                int applied = 0;
+                int rows;
+                do {
+                    rows = 0;
+                    try (PreparedStatement ps = c.prepareStatement("SELECT " + COLUMNS + " FROM seat_changes WHERE id > ? ORDER BY id LIMIT " + POLL_BATCH)) {
+                        ps.setLong(1, lastSeenId);
+                        try (ResultSet rs = ps.executeQuery()) {
+                            while (rs.next()) {
+                                rows++;
+                                long id = rs.getLong("id");
+                                if (id > lastSeenId + 1) noteGaps(lastSeenId + 1, id - 1);
+                                lastSeenId = id;
+                                if (apply(rs)) applied++;
+                            }
+                        }
+                    }
+                } while (rows == POLL_BATCH);
+                if (!gaps.isEmpty()) applied += pollGaps(c);
+                expireGaps();
+                pendingGaps = gaps.size();
+                purgeIfDue(c);
+                lastPollAt = System.currentTimeMillis();
+                return applied;
+            } catch (SQLException e) {
+                throw new DatabaseException("Failed to poll seat changes", e);
+            }
+        });
+    }
+
+    private int pollGaps(Connection c) throws SQLException {
+        List<Long> ids = new ArrayList<>(gaps.keySet());
+        int applied = 0;
+        for (int from = 0; from < ids.size(); from += GAP_LOOKUP_CHUNK) {
+            List<Long> chunk = ids.subList(from, Math.min(ids.size(), from + GAP_LOOKUP_CHUNK));
+            StringBuilder sql = new StringBuilder("SELECT " + COLUMNS + " FROM seat_changes WHERE id IN (");
+            for (int i = 0; i < chunk.size(); i++) sql.append(i == 0 ? "?" : ",?");
+            sql.append(") ORDER BY id");
+            try (PreparedStatement ps = c.prepareStatement(sql.toString())) {
+                for (int i = 0; i < chunk.size(); i++) ps.setLong(i + 1, chunk.get(i));
+                try (ResultSet rs = ps.executeQuery()) {
+                    while (rs.next()) {
+                        gaps.remove(rs.getLong("id"));
+                        if (apply(rs)) applied++;
+                    }
+                }
+            }
+        }
+        return applied;
+    }
+
+    private void noteGaps(long from, long to) {
+        if (to - from >= MAX_GAPS) {
+            GAPS_EXPIRED.add(to - from + 1 - MAX_GAPS);
+            from = to - MAX_GAPS + 1;
+        }
+        long now = System.currentTimeMillis();
+        for (long id = from; id <= to; id++) {
+            if (gaps.size() >= MAX_GAPS) {
+                Iterator<Long> oldest = gaps.keySet().iterator();
+                oldest.next();
+                oldest.remove();
+                GAPS_EXPIRED.increment();
+            }
+            gaps.put(id, now);
+        }
+    }
+
+    private void expireGaps() {
+        long cutoff = System.currentTimeMillis() - gapTimeoutMillis;
+        Iterator<Long> missedAt = gaps.values().iterator();
+        while (missedAt.hasNext() && missedAt.next() < cutoff) {
+            missedAt.remove();
+            GAPS_EXPIRED.increment();
+        }
+    }
+
+    /** @return true if the row came from another instance and was applied */
+    private boolean apply(ResultSet rs) throws SQLException {
+        if (rs.getInt("node_id") == nodeId) return false;
+        Train train = trainService.findTrain(rs.getString("train_number"));
+        if (train == null) return false;
+        String pnr = rs.getString("pnr");
+        String seatNumber = rs.getString("seat_number");
+        String date = rs.getString("travel_date");
+        int[] journey = TicketRowMapper.journey(rs, rs.findColumn("from_stop"), rs.findColumn("to_stop"), train);
+        SeatInventory inventory = trainService.getSeatInventory();
+        if (CANCEL.equals(rs.getString("action"))) {
+            inventory.markReleased(train, date, seatNumber, journey[0], journey[1]);
+            tickets.remove(pnr);
+        } else {
+            inventory.markBooked(train, date, seatNumber, journey[0], journey[1]);
+            Seat seat = train.getSeat(seatNumber);
+            if (seat != null) {
+                String username = rs.getString("username");
+                String bookedBy = rs.getString("booked_by");
+                User passenger = new User(username != null ? username : bookedBy, "", Role.PASSENGER);
+                tickets.add(new Ticket(pnr, passenger, train, seat, date, bookedBy, journey[0], journey[1]));
+            }
+        }
+        Timestamp written = rs.getTimestamp("created_at");
+        Timestamp now = rs.getTimestamp("db_now");
+        if (written != null && now != null) LAG.record(Math.max(0, now.getTime() - written.getTime()));
+        APPLIED.increment();
+        return true;
+    }
+
+    private void purgeIfDue(Connection c) throws SQLException {
+        long now = System.currentTimeMillis();
+        if (retentionMillis <= 0 || now - lastPurgeAt < PURGE_INTERVAL_MILLIS) return;
+        lastPurgeAt = now;
+        try (PreparedStatement ps = c.prepareStatement("DELETE FROM seat_changes WHERE created_at < ?")) {
+            ps.setTimestamp(1, new Timestamp(now - retentionMillis));
+            int purged = ps.executeUpdate();
+            if (purged > 0) LOGGER.fine("Purged " + purged + " seat change(s)");
+        }
+    }
+
+    /** Polls every {@code intervalMillis} until {@link #close()}. */
+    public synchronized void start(long intervalMillis) {
+        if (poller != null) throw new IllegalStateException("Seat change poller already running");
+        poller = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "seat-change-poller");
+            t.setDaemon(true);
+            return t;
+        });
+        poller.scheduleWithFixedDelay(this::pollQuietly, intervalMillis, intervalMillis, TimeUnit.MILLISECONDS);
+        LOGGER.info("Polling seat changes every " + intervalMillis + " ms as node " + nodeId);
+    }
+
+    private void pollQuietly() {
+        try {
+            poll();
+        } catch (RuntimeException e) {
+            POLL_FAILURES.increment();
+            LOGGER.log(Level.WARNING, "Seat change poll failed", e);
+        }
+    }
+
+    @Override
+    public void close() {
+        ScheduledExecutorService p;
+        synchronized (this) {
+            p = poller;
+            poller = null;
+        }
+        if (p != null) p.shutdownNow();
+    }
+}
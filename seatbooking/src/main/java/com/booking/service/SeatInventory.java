@@ -0,0 +1,215 @@
+package com.booking.service;
+
+import com.booking.model.Seat;
+import com.booking.model.SeatMap;
+import com.booking.model.Train;
+
+import java.util.List;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Guards the per-date {@link SeatMap}s of every train with a fixed array of striped locks,
+ * so bookings for independent (train, travel date) pairs proceed in parallel while two
+ * bookers of the same pair can never be handed the same seat.
+ */
+public class SeatInventory {
+
+    private static final int DEFAULT_STRIPES = 64;
+
+    private final ReentrantLock[] stripes;
+
+    public SeatInventory() {
+        this(DEFAULT_STRIPES);
+    }
+
+    public SeatInventory(int stripeCount) {
+        int n = 1;
+        while (n < stripeCount) n <<= 1;
+        this.stripes = new ReentrantLock[n];
+        for (int i = 0; i < n; i++) {
+            this.stripes[i] = new ReentrantLock();
+        }
+    }
+
+    private ReentrantLock lockFor(Train train, String travelDate) {
+        int h = train.getTrainNumber().toUpperCase().hashCode() * 31 + (travelDate == null ? 0 : travelDate.hashCode());
+        h ^= (h >>> 16);
+        return stripes[h & (stripes.length - 1)];
+    }
+
+    /**
+     * Holds {@code count} seats for the date, side by side where possible.
+     * @return the held seat numbers, or null if not enough seats are free
+     */
+    public int[] reserve(Train train, String travelDate, int count) {
+        return reserve(train, travelDate, count, 0, train.getLastStop());
+    }
+
+    /**
+     * Holds {@code count} seats free from {@code fromStop} to {@code toStop}, chosen by
+     * {@link SeatMap#findFree(int, long)}.
+     * @return the held seat numbers, or null if not enough seats are free
+     */
+    public int[] reserve(Train train, String travelDate, int count, int fromStop, int toStop) {
+        long mask = train.legMask(fromStop, toStop);
+        ReentrantLock lock = lockFor(train, travelDate);
+        lock.lock();
+        try {
+            return train.getSeatMap(travelDate).allocate(count, mask);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /** @return true if the seat was free and is now held */
+    public boolean reserve(Train train, String travelDate, String seatNumber) {
+        return reserve(train, travelDate, seatNumber, 0, train.getLastStop());
+    }
+
+    /** @return true if the seat was free from {@code fromStop} to {@code toStop} and is now held for that journey */
+    public boolean reserve(Train train, String travelDate, String seatNumber, int fromStop, int toStop) {
+        ReentrantLock lock = lockFor(train, travelDate);
+        lock.lock();
+        try {
+            return train.bookSeat(seatNumber, travelDate, fromStop, toStop);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /** Returns previously held seats, e.g. after the database transaction failed. */
+    public void release(Train train, String travelDate, int... seatNumbers) {
+        release(train, travelDate, 0, train.getLastStop(), seatNumbers);
+    }
+
+    /** Returns seats held for the journey from {@code fromStop} to {@code toStop}. */
+    public void release(Train train, String travelDate, int fromStop, int toStop, int[] seatNumbers) {
+        if (seatNumbers == null || seatNumbers.length == 0) return;
+        long mask = train.legMask(fromStop, toStop);
+        ReentrantLock lock = lockFor(train, travelDate);
+        lock.lock();
+        try {
+            SeatMap map = train.getSeatMap(travelDate);
+            for (int n : seatNumbers) {
+                map.release(n, mask);
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public boolean markBooked(Train train, String travelDate, String seatNumber) {
+        return reserve(train, travelDate, seatNumber);
+    }
+
+    public boolean markBooked(Train train, String travelDate, String seatNumber, int fromStop, int toStop) {
+        return reserve(train, travelDate, seatNumber, fromStop, toStop);
+    }
+
+    public boolean markReleased(Train train, String travelDate, String seatNumber) {
+        return markReleased(train, travelDate, seatNumber, 0, train.getLastStop());
+    }
+
+    public boolean markReleased(Train train, String travelDate, String seatNumber, int fromStop, int toStop) {
+        ReentrantLock lock = lockFor(train, travelDate);
+        lock.lock();
+        try {
+            return train.unbookSeat(seatNumber, travelDate, fromStop, toStop);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /** @return a consistent copy of the date's occupancy as {@link SeatMap#toState()} */
+    public long[] copyState(Train train, String travelDate) {
+        ReentrantLock lock = lockFor(train, travelDate);
+        lock.lock();
+        try {
+            return train.getSeatMap(travelDate).toState();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /** Replaces the date's occupancy, e.g. from a snapshot written before a restart. */
+    public void restoreState(Train train, String travelDate, long[] state) {
+        ReentrantLock lock = lockFor(train, travelDate);
+        lock.lock();
+        try {
+            train.getSeatMap(travelDate).loadState(state);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public int getAvailableSeatCount(Train train, String travelDate) {
+        ReentrantLock lock = lockFor(train, travelDate);
+        lock.lock();
+        try {
+            return train.getAvailableSeatCount(travelDate);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public int getAvailableSeatCount(Train train, String travelDate, int fromStop, int toStop) {
+        ReentrantLock lock = lockFor(train, travelDate);
+        lock.lock();
+        try {
+            return train.getAvailableSeatCount(travelDate, fromStop, toStop);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public boolean isBooked(Train train, String travelDate, String seatNumber) {
+        ReentrantLock lock = lockFor(train, travelDate);
+        lock.lock();
+        try {
+            return train.isSeatBooked(seatNumber, travelDate);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /** @return true if the seat is free on every leg from {@code fromStop} to {@code toStop} */
+    public boolean isFree(Train train, String travelDate, String seatNumber, int fromStop, int toStop) {
+        ReentrantLock lock = lockFor(train, travelDate);
+        lock.lock();
+        try {
+            return train.isSeatFree(seatNumber, travelDate, fromStop, toStop);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public List<String> getBookedSeatNumbers(Train train, String travelDate) {
+        ReentrantLock lock = lockFor(train, travelDate);
+        lock.lock();
+        try {
+            return train.getBookedSeatNumbers(travelDate);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public List<Seat> getAvailableSeats(Train train, String travelDate) {
+        ReentrantLock lock = lockFor(train, travelDate);
+        lock.lock();
+        try {
+            return train.getAvailableSeats(travelDate);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public List<Seat> getAvailableSeats(Train train, String travelDate, int fromStop, int toStop) {
+        ReentrantLock lock = lockFor(train, travelDate);
+        lock.lock();
+        try {
+            return train.getAvailableSeats(travelDate, fromStop, toStop);
+        } finally {
+            lock.unlock();
+        }
+    }
+}
@@ -0,0 +1,88 @@
+package com.booking.service;
+
+import com.booking.model.Train;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Inverted index from normalised station name to the trains stopping there.
+ * Posting lists are kept in catalogue order, so a start/end query is a linear
+ * merge of two lists plus a stop-order check.
+ */
+public class StationIndex {
+
+    private static final Posting[] EMPTY = new Posting[0];
+
+    private final Map<String, Posting[]> postings = new ConcurrentHashMap<>();
+    private int nextOrdinal;
+
+    public synchronized void add(Train train) {
+        int ordinal = nextOrdinal++;
+        List<String> route = train.getRoute();
+        for (int i = 0; i < route.size(); i++) {
+            String station = normalize(route.get(i));
+            if (station.isEmpty()) continue;
+            Posting posting = new Posting(ordinal, train, i);
+            postings.compute(station, (k, list) -> {
+                if (list == null) return new Posting[] { posting };
+                // keep the first stop only, matching Train.hasStops
+                if (list[list.length - 1].ordinal == ordinal) return list;
+                Posting[] grown = Arrays.copyOf(list, list.length + 1);
+                grown[list.length] = posting;
+                return grown;
+            });
+        }
+    }
+
+    public synchronized void clear() {
+        postings.clear();
+        nextOrdinal = 0;
+    }
+
+    public List<Train> search(String startStation, String endStation) {
+        Posting[] from = postings.getOrDefault(normalize(startStation), EMPTY);
+        Posting[] to = postings.getOrDefault(normalize(endStation), EMPTY);
+        List<Train> result = new ArrayList<>();
+        int i = 0;
+        int j = 0;
+        while (i < from.length && j < to.length) {
+            Posting a = from[i];
+            Posting b = to[j];
+            if (a.ordinal < b.ordinal) {
+                i++;
+            } else if (a.ordinal > b.ordinal) {
+                j++;
+            } else {
+                if (a.position < b.position) result.add(a.train);
+                i++;
+                j++;
+            }
+        }
+        return result;
+    }
+
+    public int stationCount() {
+        return postings.size();
+    }
+
+    public static String normalize(String station) {
+        return station == null ? "" : station.trim().toLowerCase(Locale.ROOT);
+    }
+
+    private static final class Posting {
+        private final int ordinal;
+        private final Train train;
+        private final int position;
+
+        private Posting(int ordinal, Train train, int position) {
+            this.ordinal = ordinal;
+            this.train = train;
+            this.position = position;
+        }
+    }
+}
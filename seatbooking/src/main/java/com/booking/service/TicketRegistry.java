@@ -0,0 +1,150 @@
+package com.booking.service;
+
+import com.booking.model.Ticket;
+
+import java.time.LocalDate;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Concurrent in-memory store of active tickets, indexed by PNR, passenger, booker and
+ * (train, travel date). In hot-only mode tickets whose travel date has passed are
+ * rejected on insert and evicted when the day rolls over.
+ */
+public class TicketRegistry {
+
+    private final Map<String, Ticket> byPnr = new ConcurrentHashMap<>();
+    private final Map<String, Set<String>> byPassenger = new ConcurrentHashMap<>();
+    private final Map<String, Set<String>> byBookedBy = new ConcurrentHashMap<>();
+    private final Map<String, Set<String>> byTrainDate = new ConcurrentHashMap<>();
+    private final boolean hotOnly;
+    private volatile LocalDate lastEviction = LocalDate.now();
+
+    public TicketRegistry() {
+        this(false);
+    }
+
+    public TicketRegistry(boolean hotOnly) {
+        this.hotOnly = hotOnly;
+    }
+
+    public boolean isHotOnly() {
+        return hotOnly;
+    }
+
+    /** @return false if the ticket was not kept because it is outside the hot window */
+    public boolean add(Ticket ticket) {
+        if (hotOnly) {
+            LocalDate today = LocalDate.now();
+            if (today.isAfter(lastEviction)) {
+                lastEviction = today;
+                evictBefore(today);
+            }
+            if (isBefore(ticket.getTravelDate(), today)) return false;
+        }
+
+        String pnr = pnrKey(ticket.getPnrNumber());
+        Ticket previous = byPnr.put(pnr, ticket);
+        if (previous != null) unindex(pnr, previous);
+        index(byPassenger, userKey(ticket.getPassenger().getUsername()), pnr);
+        index(byBookedBy, userKey(ticket.getBookedBy()), pnr);
+        index(byTrainDate, trainDateKey(ticket.getTrain().getTrainNumber(), ticket.getTravelDate()), pnr);
+        return true;
+    }
+
+    public Ticket remove(String pnrNumber) {
+        String pnr = pnrKey(pnrNumber);
+        Ticket removed = byPnr.remove(pnr);
+        if (removed != null) unindex(pnr, removed);
+        return removed;
+    }
+
+    public Ticket findByPnr(String pnrNumber) {
+        return pnrNumber == null ? null : byPnr.get(pnrKey(pnrNumber));
+    }
+
+    public List<Ticket> findByPassenger(String username) {
+        return resolve(byPassenger.get(userKey(username)));
+    }
+
+    public List<Ticket> findByBookedBy(String username) {
+        return resolve(byBookedBy.get(userKey(username)));
+    }
+
+    public List<Ticket> findByTrainAndDate(String trainNumber, String travelDate) {
+        return resolve(byTrainDate.get(trainDateKey(trainNumber, travelDate)));
+    }
+
+    public int size() {
+        return byPnr.size();
+    }
+
+    public List<Ticket> snapshot() {
+        return new ArrayList<>(byPnr.values());
+    }
+
+    /** Drops every ticket travelling before {@code day}. @return the number removed */
+    public int evictBefore(LocalDate day) {
+        int removed = 0;
+        for (Ticket t : byPnr.values()) {
+            if (isBefore(t.getTravelDate(), day) && remove(t.getPnrNumber()) != null) removed++;
+        }
+        return removed;
+    }
+
+    private List<Ticket> resolve(Collection<String> pnrs) {
+        List<Ticket> result = new ArrayList<>();
+        if (pnrs == null) return result;
+        for (String pnr : pnrs) {
+            Ticket t = byPnr.get(pnr);
+            if (t != null) result.add(t);
+        }
+        return result;
+    }
+
+    private void unindex(String pnr, Ticket ticket) {
+        unindex(byPassenger, userKey(ticket.getPassenger().getUsername()), pnr);
+        unindex(byBookedBy, userKey(ticket.getBookedBy()), pnr);
+        unindex(byTrainDate, trainDateKey(ticket.getTrain().getTrainNumber(), ticket.getTravelDate()), pnr);
+    }
+
+    private static void index(Map<String, Set<String>> index, String key, String pnr) {
+        index.compute(key, (k, set) -> {
+            Set<String> pnrs = set != null ? set : ConcurrentHashMap.newKeySet();
+            pnrs.add(pnr);
+            return pnrs;
+        });
+    }
+
+    private static void unindex(Map<String, Set<String>> index, String key, String pnr) {
+        index.computeIfPresent(key, (k, set) -> {
+            set.remove(pnr);
+            return set.isEmpty() ? null : set;
+        });
+    }
+
+    private static boolean isBefore(String travelDate, LocalDate day) {
+        try {
+            return LocalDate.parse(travelDate).isBefore(day);
+        } catch (DateTimeParseException | NullPointerException e) {
+            return false;
+        }
+    }
+
+    private static String pnrKey(String pnr) {
+        return pnr.trim().toUpperCase();
+    }
+
+    private static String userKey(String username) {
+        return username == null ? "" : username.trim().toLowerCase();
+    }
+
+    private static String trainDateKey(String trainNumber, String travelDate) {
+        return (trainNumber == null ? "" : trainNumber.trim().toUpperCase()) + "|" + travelDate;
+    }
+}
@@ -0,0 +1,108 @@
+package com.booking.service;
+
+import com.booking.model.Role;
+import com.booking.model.Seat;
+import com.booking.model.Ticket;
+import com.booking.model.Train;
+import com.booking.model.User;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+
+/**
+ * Maps rows of the {@code tickets} table to {@link Ticket}s. Column positions are looked up
+ * once per result set, and trains and seats are resolved through the {@link TrainService} indexes.
+ */
+final class TicketRowMapper {
+
+    private final TrainService trainService;
+    private final int pnrColumn;
+    private final int usernameColumn;
+    private final int bookedByColumn;
+    private final int trainColumn;
+    private final int seatColumn;
+    private final int dateColumn;
+    private final int statusColumn;
+    private final int fromStopColumn;
+    private final int toStopColumn;
+
+    TicketRowMapper(TrainService trainService, ResultSet rs) throws SQLException {
+        this.trainService = trainService;
+        this.pnrColumn = rs.findColumn("pnr");
+        this.usernameColumn = rs.findColumn("username");
+        this.trainColumn = rs.findColumn("train_number");
+        this.seatColumn = rs.findColumn("seat_number");
+        this.dateColumn = rs.findColumn("travel_date");
+        this.bookedByColumn = optionalColumn(rs, "booked_by");
+        this.statusColumn = optionalColumn(rs, "status");
+        this.fromStopColumn = optionalColumn(rs, "from_stop");
+        this.toStopColumn = optionalColumn(rs, "to_stop");
+    }
+
+    private static int optionalColumn(ResultSet rs, String name) {
+        try {
+            return rs.findColumn(name);
+        } catch (SQLException e) {
+            return 0;
+        }
+    }
+
+    /** @return the ticket on the current row, or null if its date, train or seat cannot be resolved */
+    Ticket map(ResultSet rs) throws SQLException {
+        String pnr = rs.getString(pnrColumn);
+        String travelDate = rs.getString(dateColumn);
+        if (!isIsoDate(travelDate)) {
+            System.out.println("[WARN] Ignoring invalid travel_date for ticket " + pnr + ": " + travelDate);
+            return null;
+        }
+
+        String trainNumber = rs.getString(trainColumn);
+        Train train = trainService.findTrain(trainNumber);
+        Seat seat = trainService.lookupSeat(trainNumber, rs.getString(seatColumn));
+        if (train == null || seat == null) {
+            System.out.println("Warning: Could not resolve train/seat for ticket " + pnr);
+            return null;
+        }
+
+        String username = rs.getString(usernameColumn);
+        String bookedBy = bookedByColumn > 0 ? rs.getString(bookedByColumn) : null;
+        User passenger = new User(username != null ? username : bookedBy, "", Role.PASSENGER);
+        int[] journey = fromStopColumn > 0 && toStopColumn > 0
+                ? journey(rs, fromStopColumn, toStopColumn, train)
+                : new int[] { 0, train.getLastStop() };
+        return new Ticket(pnr, passenger, train, seat, travelDate, bookedBy, journey[0], journey[1]);
+    }
+
+    /**
+     * Tickets written before journeys were recorded, or whose stops no longer fit the route,
+     * cover the whole route.
+     * @return {fromStop, toStop} of the current row
+     */
+    static int[] journey(ResultSet rs, int fromStopColumn, int toStopColumn, Train train) throws SQLException {
+        int from = rs.getInt(fromStopColumn);
+        boolean legacy = rs.wasNull();
+        int to = rs.getInt(toStopColumn);
+        if (legacy || rs.wasNull() || !train.isValidJourney(from, to)) return new int[] { 0, train.getLastStop() };
+        return new int[] { from, to };
+    }
+
+    /** @return the upper-cased status of the current row, or null if the column was not selected */
+    String status(ResultSet rs) throws SQLException {
+        if (statusColumn == 0) return null;
+        String status = rs.getString(statusColumn);
+        return status == null ? null : status.trim().toUpperCase();
+    }
+
+    /** Checks for yyyy-MM-dd by character class; such dates also order correctly as strings. */
+    static boolean isIsoDate(String s) {
+        if (s == null || s.length() != 10 || s.charAt(4) != '-' || s.charAt(7) != '-') return false;
+        for (int i = 0; i < 10; i++) {
+            if (i == 4 || i == 7) continue;
+            char ch = s.charAt(i);
+            if (ch < '0' || ch > '9') return false;
+        }
+        int month = (s.charAt(5) - '0') * 10 + (s.charAt(6) - '0');
+        int day = (s.charAt(8) - '0') * 10 + (s.charAt(9) - '0');
+        return month >= 1 && month <= 12 && day >= 1 && day <= 31;
+    }
+}
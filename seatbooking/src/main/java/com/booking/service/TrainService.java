@@ -3,6 +3,8 @@ package com.booking.service;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.stream.Collectors;
 import com.booking.model.Train;
 import com.booking.model.Seat;
@@ -14,14 +16,26 @@ import java.util.logging.Level;
 import java.util.logging.Logger;
 import com.booking.exception.DatabaseException;
 import com.booking.exception.ValidationException;
+import com.booking.metrics.MetricsRegistry;
+import com.booking.metrics.Timer;
+import java.time.LocalDate;
 
 
 public class TrainService {
 
     private static final Logger LOGGER = Logger.getLogger(TrainService.class.getName());
 
+    private static final MetricsRegistry METRICS = MetricsRegistry.getDefault();
+    private static final Timer SEARCH_TRAINS = METRICS.timer("train.searchTrains");
+    private static final Timer DISPLAY_SEATS = METRICS.timer("train.displaySeats");
+    private static final Timer FIND_SEAT = METRICS.timer("train.findSeat");
+    private static final Timer ADD_TRAIN = METRICS.timer("train.addTrain");
+
     private final DatabaseProvider db;
     private final List<Train> trains;
+    private final Map<String, Train> trainsByNumber = new ConcurrentHashMap<>();
+    private final StationIndex stationIndex = new StationIndex();
+    private final SeatInventory seatInventory = new SeatInventory();
 
     public TrainService(DatabaseProvider db) {
         this.db = db;
@@ -34,12 +48,21 @@ public class TrainService {
             throw e;
         }
 
+        long start = System.nanoTime();
         loadTrainsFromDb();
         if (this.trains.isEmpty()) {
             initializeTrains();
             this.trains.clear();
+            this.trainsByNumber.clear();
+            this.stationIndex.clear();
             loadTrainsFromDb();
         }
+        // seat occupancy is filled by BookingService from the same pass that loads the tickets
+        LOGGER.info(String.format("Startup: loaded %d train(s) in %d ms", this.trains.size(), (System.nanoTime() - start) / 1_000_000));
+
+        METRICS.gauge("train.count", this.trainsByNumber::size);
+        METRICS.gauge("train.seats.booked", this::countBookedSeats);
+        METRICS.gauge("train.seats.available_today", this::countSeatsAvailableToday);
     }
 
     private void initializeTrains() {
@@ -47,9 +70,9 @@ public class TrainService {
         Train t2 = new Train("T456", "Deccan Queen", Arrays.asList("Mumbai", "Thane", "Pune"), 80);
         Train t3 = new Train("T789", "Capital Mail", Arrays.asList("Delhi", "Jaipur", "Ahmedabad"), 60);
 
-        this.trains.add(t1);
-        this.trains.add(t2);
-        this.trains.add(t3);
+        register(t1);
+        register(t2);
+        register(t3);
     }
 
     private void loadTrainsFromDb() {
@@ -71,101 +94,116 @@ public class TrainService {
                 }
 
                 Train t = new Train(number, name, route, totalSeats);
-                this.trains.add(t);
-            }
-
-            try (PreparedStatement ps2 = c.prepareStatement("SELECT train_number, seat_number FROM tickets WHERE status = 'ACTIVE'"); ResultSet rs2 = ps2.executeQuery()) {
-                while (rs2.next()) {
-                    String tnum = rs2.getString("train_number");
-                    String seatNum = rs2.getString("seat_number");
-
-                    for (Train train : this.trains) {
-                        if (train.getTrainNumber().equalsIgnoreCase(tnum)) {
-                            for (Seat seat : train.getSeats()) {
-                                if (seat.getSeatNumber().equalsIgnoreCase(seatNum)) {
-                                    seat.book();
-                                    break;
-                                }
-                            }
-                            break;
-                        }
-                    }
-                }
-            } catch (SQLException ex) {
-                LOGGER.log(Level.WARNING, "Error marking booked seats from tickets", ex);
+                register(t);
             }
-
         } catch (DatabaseException | SQLException e) {
             LOGGER.log(Level.SEVERE, "Error loading trains from DB", e);
         }
     }
 
     public List<Train> searchTrains(String startStation, String endStation) {
-        String start = startStation == null ? "" : startStation.trim();
-        String end = endStation == null ? "" : endStation.trim();
-        List<Train> availableTrains = new ArrayList<>();
-        for (Train train : this.trains) {
-            if (train.hasStops(start, end)) {
-                availableTrains.add(train);
-            }
-        }
-        return availableTrains;
+        return SEARCH_TRAINS.time(() -> {
+            return this.stationIndex.search(startStation, endStation);
+        });
     }
 
-    public void displaySeats(Train train) {
-        System.out.println("Available seats for " + train.getTrainName() + ":");
-        for (Seat seat : train.getSeats()) {
-            if (!seat.isBooked()) {
+    public void displaySeats(Train train, String travelDate) {
+        DISPLAY_SEATS.time(() -> {
+            System.out.println("Available seats for " + train.getTrainName() + " on " + travelDate + ":");
+            for (Seat seat : seatInventory.getAvailableSeats(train, travelDate)) {
                 System.out.print(seat.getSeatNumber() + " ");
             }
-        }
-        System.out.println();
+            System.out.println();
+        });
     }
 
-    public Seat findSeat(Train train, String seatNumber) {
-        for (Seat seat : train.getSeats()) {
-            if (seat.getSeatNumber().equalsIgnoreCase(seatNumber) && !seat.isBooked()) {
-                return seat;
+    public Seat findSeat(Train train, String seatNumber, String travelDate) {
+        return findSeat(train, seatNumber, travelDate, 0, train.getLastStop());
+    }
+
+    /** @return the seat if it is free for the journey, even when other legs of it are sold; otherwise null */
+    public Seat findSeat(Train train, String seatNumber, String travelDate, int fromStop, int toStop) {
+        return FIND_SEAT.time(() -> {
+            Seat seat = train.getSeat(seatNumber);
+            if (seat == null || !seatInventory.isFree(train, travelDate, seatNumber, fromStop, toStop)) {
+                return null;
             }
-        }
-        return null;
+            return seat;
+        });
     }
 
     public boolean addTrain(String trainNumber, String trainName, List<String> route, int totalSeats) {
-        List<String> normalizedRoute = (route == null) ? new ArrayList<>() : route.stream()
-                .map(String::trim)
-                .filter(s -> !s.isEmpty())
-                .collect(Collectors.toList());
-        if (normalizedRoute.size() < 2) {
-            throw new ValidationException("A train route must contain at least two stops.");
-        }
-        for (Train train : this.trains) {
-            if (train.getTrainNumber().equalsIgnoreCase(trainNumber)) {
+        return ADD_TRAIN.time(() -> {
+            List<String> normalizedRoute = (route == null) ? new ArrayList<>() : route.stream()
+                    .map(String::trim)
+                    .filter(s -> !s.isEmpty())
+                    .collect(Collectors.toList());
+            if (normalizedRoute.size() < 2) {
+                throw new ValidationException("A train route must contain at least two stops.");
+            }
+            if (findTrain(trainNumber) != null) {
                 System.out.println("Error: Train Number already exists.");
                 return false;
             }
-        }
-        String sql = "INSERT INTO trains (train_number, train_name, route, total_seats) VALUES (?, ?, ?, ?)";
-        String routeCsv = String.join(",", normalizedRoute);
-        try (Connection c = this.db.getConnection(); PreparedStatement ps = c.prepareStatement(sql)) {
-            ps.setString(1, trainNumber);
-            ps.setString(2, trainName);
-            ps.setString(3, routeCsv);
-            ps.setInt(4, totalSeats);
-            ps.executeUpdate();
-
-            Train newTrain = new Train(trainNumber, trainName, route, totalSeats);
-            this.trains.add(newTrain);
-            System.out.println("Train " + trainName + " added successfully.");
-            return true;
-        } catch (DatabaseException | SQLException e) {
-            LOGGER.log(Level.SEVERE, "Error adding train to DB", e);
-            System.out.println("Error adding train to DB: " + e.getMessage());
-            return false;
-        }
+            String sql = "INSERT INTO trains (train_number, train_name, route, total_seats) VALUES (?, ?, ?, ?)";
+            String routeCsv = String.join(",", normalizedRoute);
+            try (Connection c = this.db.getConnection(); PreparedStatement ps = c.prepareStatement(sql)) {
+                ps.setString(1, trainNumber);
+                ps.setString(2, trainName);
+                ps.setString(3, routeCsv);
+                ps.setInt(4, totalSeats);
+                ps.executeUpdate();
+
+                Train newTrain = new Train(trainNumber, trainName, normalizedRoute, totalSeats);
+                register(newTrain);
+                System.out.println("Train " + trainName + " added successfully.");
+                return true;
+            } catch (DatabaseException | SQLException e) {
+                LOGGER.log(Level.SEVERE, "Error adding train to DB", e);
+                System.out.println("Error adding train to DB: " + e.getMessage());
+                return false;
+            }
+        });
     }
 
     public List<Train> getAllTrains() {
         return this.trains;
     }
+
+    public SeatInventory getSeatInventory() {
+        return this.seatInventory;
+    }
+
+    public Train findTrain(String trainNumber) {
+        return trainNumber == null ? null : this.trainsByNumber.get(trainKey(trainNumber));
+    }
+
+    /** Resolves a seat by train and seat number without checking whether it is booked. */
+    public Seat lookupSeat(String trainNumber, String seatNumber) {
+        Train train = findTrain(trainNumber);
+        return train == null ? null : train.getSeat(seatNumber);
+    }
+
+    private long countBookedSeats() {
+        long booked = 0;
+        for (Train t : trainsByNumber.values()) booked += t.getBookedSeatTotal();
+        return booked;
+    }
+
+    private long countSeatsAvailableToday() {
+        String today = LocalDate.now().toString();
+        long available = 0;
+        for (Train t : trainsByNumber.values()) available += t.getAvailableSeatCount(today);
+        return available;
+    }
+
+    private void register(Train train) {
+        this.trains.add(train);
+        this.trainsByNumber.put(trainKey(train.getTrainNumber()), train);
+        this.stationIndex.add(train);
+    }
+
+    private static String trainKey(String trainNumber) {
+        return trainNumber.trim().toUpperCase();
+    }
 }
\ No newline at end of file
@@ -0,0 +1,250 @@
+package com.booking.service;
+
+import com.booking.exception.DatabaseException;
+import com.booking.model.Role;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Bounded, expiring cache of user rows keyed by the trimmed username as given, shared by
+ * {@link AuthService} and the booking audit path. Only a SHA-256 hash of the stored
+ * credential is kept. Writers to the users table must call {@link #invalidate(String)}.
+ * A spelling only ever finds the row the database matches it to, so matching ignores case
+ * exactly where the database collation does; each spelling of a user is cached on its own.
+ */
+public class UserCache {
+
+    public static final int DEFAULT_MAX_SIZE = 10_000;
+    public static final long DEFAULT_TTL_MILLIS = 300_000L;
+
+    private final DatabaseProvider db;
+    private final int maxSize;
+    private final long ttlMillis;
+    private final Map<String, CachedUser> entries;
+    // bumped on every invalidation so a load that raced with it is not cached
+    private final AtomicLong generation = new AtomicLong();
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong evictions = new AtomicLong();
+
+    public UserCache(DatabaseProvider db) {
+        this(db, DEFAULT_MAX_SIZE, DEFAULT_TTL_MILLIS);
+    }
+
+    public UserCache(DatabaseProvider db, int maxSize, long ttlMillis) {
+        if (maxSize < 1) throw new IllegalArgumentException("User cache size must be at least 1");
+        this.db = db;
+        this.maxSize = maxSize;
+        this.ttlMillis = ttlMillis;
+        this.entries = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, CachedUser> eldest) {
+                if (size() <= UserCache.this.maxSize) return false;
+                evictions.incrementAndGet();
+                return true;
+            }
+        };
+    }
+
+    /** @return the user, loading it on a miss, or null if no such user exists */
+    public CachedUser get(String username) {
+        if (username == null || username.isBlank()) return null;
+        String key = key(username);
+        CachedUser cached = lookup(key);
+        if (cached != null) return cached;
+
+        long gen = generation.get();
+        try (Connection c = db.getConnection()) {
+            Map<String, CachedUser> loaded = load(c, List.of(key));
+            store(loaded, gen);
+            return loaded.get(key);
+        } catch (SQLException e) {
+            throw new DatabaseException("Database error while finding user", e);
+        }
+    }
+
+    /**
+     * Resolves user ids for many usernames on the caller's connection; all misses are loaded
+     * with one IN query. Unknown users are left out of the result.
+     * @return user ids keyed by trimmed username, spelled as given
+     */
+    public Map<String, Integer> findIds(Connection conn, Collection<String> usernames) throws SQLException {
+        Map<String, Integer> ids = new HashMap<>();
+        Set<String> missing = new LinkedHashSet<>();
+        for (String u : usernames) {
+            if (u == null || u.isBlank()) continue;
+            String key = key(u);
+            CachedUser cached = lookup(key);
+            if (cached != null) ids.put(key, cached.getId()); else missing.add(key);
+        }
+        if (!missing.isEmpty()) {
+            long gen = generation.get();
+            Map<String, CachedUser> loaded = load(conn, missing);
+            store(loaded, gen);
+            loaded.forEach((key, u) -> ids.put(key, u.getId()));
+        }
+        return ids;
+    }
+
+    /** @return true if the password hashes to the credential stored for the user */
+    public boolean matchesPassword(CachedUser user, String password) {
+        return user != null && password != null && MessageDigest.isEqual(user.credentialHash, sha256(password));
+    }
+
+    /** Drops every cached spelling of the user, as far as case and the stored name tell them apart. */
+    public void invalidate(String username) {
+        if (username == null) return;
+        String name = key(username);
+        generation.incrementAndGet();
+        synchronized (entries) {
+            entries.entrySet().removeIf(e -> e.getKey().equalsIgnoreCase(name) || e.getValue().username.equalsIgnoreCase(name));
+        }
+    }
+
+    public void invalidateAll() {
+        generation.incrementAndGet();
+        synchronized (entries) {
+            entries.clear();
+        }
+    }
+
+    private CachedUser lookup(String key) {
+        CachedUser cached;
+        synchronized (entries) {
+            cached = entries.get(key);
+            if (cached != null && System.currentTimeMillis() - cached.loadedAt > ttlMillis) {
+                entries.remove(key);
+                cached = null;
+            }
+        }
+        if (cached != null) hits.incrementAndGet(); else misses.incrementAndGet();
+        return cached;
+    }
+
+    private void store(Map<String, CachedUser> loaded, long gen) {
+        if (loaded.isEmpty()) return;
+        synchronized (entries) {
+            if (generation.get() != gen) return;
+            entries.putAll(loaded);
+        }
+    }
+
+    /**
+     * One IN query serves every spelling stored exactly as given. Any other spelling is asked for
+     * on its own, as only then is it certain which row the collation matched it to.
+     * @return users keyed by the spelling that found them
+     */
+    private static Map<String, CachedUser> load(Connection conn, Collection<String> usernames) throws SQLException {
+        Map<String, CachedUser> loaded = new HashMap<>();
+        List<CachedUser> rows = query(conn, usernames);
+        for (CachedUser row : rows) {
+            if (usernames.contains(row.username)) loaded.put(row.username, row);
+        }
+        for (String name : usernames) {
+            if (loaded.containsKey(name)) continue;
+            List<CachedUser> own = usernames.size() == 1 ? rows : query(conn, List.of(name));
+            if (!own.isEmpty()) loaded.put(name, own.get(0));
+        }
+        return loaded;
+    }
+
+    private static List<CachedUser> query(Connection conn, Collection<String> usernames) throws SQLException {
+        List<CachedUser> rows = new ArrayList<>();
+        List<String> pending = new ArrayList<>(usernames);
+        StringBuilder sql = new StringBuilder("SELECT id, username, password, role FROM users WHERE username IN (");
+        for (int i = 0; i < pending.size(); i++) sql.append(i == 0 ? "?" : ",?");
+        sql.append(")");
+        try (PreparedStatement ps = conn.prepareStatement(sql.toString())) {
+            for (int i = 0; i < pending.size(); i++) ps.setString(i + 1, pending.get(i));
+            try (ResultSet rs = ps.executeQuery()) {
+                long now = System.currentTimeMillis();
+                while (rs.next()) {
+                    rows.add(new CachedUser(rs.getInt("id"), rs.getString("username"),
+                            Role.valueOf(rs.getString("role")), sha256(rs.getString("password")), now));
+                }
+            }
+        }
+        return rows;
+    }
+
+    private static String key(String username) {
+        return username.trim();
+    }
+
+    private static byte[] sha256(String value) {
+        try {
+            return MessageDigest.getInstance("SHA-256").digest(value.getBytes(StandardCharsets.UTF_8));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+
+    public int size() {
+        synchronized (entries) {
+            return entries.size();
+        }
+    }
+
+    public long getHitCount() {
+        return hits.get();
+    }
+
+    public long getMissCount() {
+        return misses.get();
+    }
+
+    public long getEvictionCount() {
+        return evictions.get();
+    }
+
+    public String statsSummary() {
+        long h = getHitCount();
+        long m = getMissCount();
+        return String.format("size=%d max=%d hits=%d misses=%d hitRate=%.1f%% evictions=%d",
+                size(), maxSize, h, m, h + m == 0 ? 0.0 : 100.0 * h / (h + m), getEvictionCount());
+    }
+
+    public static final class CachedUser {
+        private final int id;
+        private final String username;
+        private final Role role;
+        private final byte[] credentialHash;
+        private final long loadedAt;
+
+        private CachedUser(int id, String username, Role role, byte[] credentialHash, long loadedAt) {
+            this.id = id;
+            this.username = username;
+            this.role = role;
+            this.credentialHash = credentialHash;
+            this.loadedAt = loadedAt;
+        }
+
+        public int getId() {
+            return id;
+        }
+
+        public String getUsername() {
+            return username;
+        }
+
+        public Role getRole() {
+            return role;
+        }
+    }
+}
@@ -28,8 +28,28 @@ public final class AppConfig {
         return (v != null && !v.isBlank()) ? v : fallback;
     }
 
+    private static int getInt(String name, int fallback) {
+        try {
+            return Integer.parseInt(getenv(name, String.valueOf(fallback)).trim());
+        } catch (NumberFormatException e) {
+            return fallback;
+        }
+    }
+
+    private static long getLong(String name, long fallback) {
+        try {
+            return Long.parseLong(getenv(name, String.valueOf(fallback)).trim());
+        } catch (NumberFormatException e) {
+            return fallback;
+        }
+    }
+
+    private static boolean getBoolean(String name, boolean fallback) {
+        return Boolean.parseBoolean(getenv(name, String.valueOf(fallback)).trim());
+    }
+
     public static String getDbUrl() {
-        return getenv("DB_URL", "jdbc:mysql://localhost:3306/seat_management?useSSL=false&allowPublicKeyRetrieval=true");
+        return getenv("DB_URL", "jdbc:mysql://localhost:3306/seat_management?useSSL=false&allowPublicKeyRetrieval=true&rewriteBatchedStatements=true");
     }
 
     public static String getDbUser() {
@@ -43,4 +63,160 @@ public final class AppConfig {
     public static String getAppName() {
         return getenv("APP_NAME", "SeatManagement");
     }
-}
\ No newline at end of file
+
+    /** mysql (default) or embedded for the in-process H2 database. */
+    public static String getDbKind() {
+        return getenv("DB_KIND", "mysql").trim().toLowerCase();
+    }
+
+    public static boolean isDbPoolEnabled() {
+        return getBoolean("DB_POOL_ENABLED", true);
+    }
+
+    public static int getDbPoolMaxSize() {
+        return getInt("DB_POOL_MAX_SIZE", 10);
+    }
+
+    public static long getDbPoolMaxWaitMillis() {
+        return getLong("DB_POOL_MAX_WAIT_MS", 5000L);
+    }
+
+    public static long getDbPoolIdleTimeoutMillis() {
+        return getLong("DB_POOL_IDLE_TIMEOUT_MS", 300000L);
+    }
+
+    public static long getDbPoolLeakThresholdMillis() {
+        return getLong("DB_POOL_LEAK_THRESHOLD_MS", 30000L);
+    }
+
+    public static int getDbPoolValidationTimeoutSeconds() {
+        return getInt("DB_POOL_VALIDATION_TIMEOUT_S", 2);
+    }
+
+    public static boolean isTicketRegistryHotOnly() {
+        return getBoolean("TICKET_REGISTRY_HOT_ONLY", false);
+    }
+
+    public static boolean isHttpEnabled() {
+        return getBoolean("HTTP_ENABLED", false);
+    }
+
+    public static int getHttpPort() {
+        return getInt("HTTP_PORT", 8080);
+    }
+
+    public static int getHttpMaxConcurrent() {
+        return getInt("HTTP_MAX_CONCURRENT", 200);
+    }
+
+    public static long getHttpAcquireTimeoutMillis() {
+        return getLong("HTTP_ACQUIRE_TIMEOUT_MS", 100L);
+    }
+
+    public static int getHttpShutdownGraceSeconds() {
+        return getInt("HTTP_SHUTDOWN_GRACE_S", 10);
+    }
+
+    public static int getUserCacheMaxSize() {
+        return getInt("USER_CACHE_MAX_SIZE", 10000);
+    }
+
+    public static long getUserCacheTtlMillis() {
+        return getLong("USER_CACHE_TTL_MS", 300000L);
+    }
+
+    public static int getBookingsViewLimit() {
+        return getInt("BOOKINGS_VIEW_LIMIT", 50);
+    }
+
+    public static int getAuditQueueCapacity() {
+        return getInt("AUDIT_QUEUE_CAPACITY", 10000);
+    }
+
+    public static int getAuditBatchSize() {
+        return getInt("AUDIT_BATCH_SIZE", 200);
+    }
+
+    public static long getAuditFlushIntervalMillis() {
+        return getLong("AUDIT_FLUSH_INTERVAL_MS", 500L);
+    }
+
+    public static long getAuditOfferTimeoutMillis() {
+        return getLong("AUDIT_OFFER_TIMEOUT_MS", 50L);
+    }
+
+    public static String getAuditSpillFile() {
+        return getenv("AUDIT_SPILL_FILE", "audit-spill.log");
+    }
+
+    public static boolean isMetricsJmxEnabled() {
+        return getBoolean("METRICS_JMX_ENABLED", true);
+    }
+
+    /** File the metrics are written to periodically; empty (the default) disables the dump. */
+    public static String getMetricsDumpFile() {
+        return getenv("METRICS_DUMP_FILE", "");
+    }
+
+    public static long getMetricsDumpIntervalSeconds() {
+        return getLong("METRICS_DUMP_INTERVAL_S", 60L);
+    }
+
+    public static boolean isDbProfilingEnabled() {
+        return getBoolean("DB_PROFILING_ENABLED", false);
+    }
+
+    /** Statements slower than this are logged when profiling is on; 0 disables the log. */
+    public static long getDbSlowStatementMillis() {
+        return getLong("DB_SLOW_STATEMENT_MS", 200L);
+    }
+
+    /** 0-1023, unique per running instance; -1 (the default) derives one from host and pid. */
+    public static int getPnrNodeId() {
+        return getInt("PNR_NODE_ID", -1);
+    }
+
+    /**
+     * Rows fetched per round trip while upcoming tickets are loaded at startup. Connector/J
+     * only honours it with useCursorFetch=true in DB_URL; otherwise it buffers the result.
+     */
+    public static int getStartupFetchSize() {
+        return getInt("STARTUP_FETCH_SIZE", 500);
+    }
+
+    /** Memory-mapped occupancy snapshot used for warm restarts; empty (the default) disables it. */
+    public static String getSnapshotFile() {
+        return getenv("SNAPSHOT_FILE", "");
+    }
+
+    public static long getSnapshotIntervalSeconds() {
+        return getLong("SNAPSHOT_INTERVAL_S", 60L);
+    }
+
+    public static long getSnapshotMaxAgeSeconds() {
+        return getLong("SNAPSHOT_MAX_AGE_S", 86400L);
+    }
+
+    /** How far before a snapshot's high-water mark ticket changes are replayed at startup. */
+    public static long getSnapshotReplayMarginSeconds() {
+        return getLong("SNAPSHOT_REPLAY_MARGIN_S", 300L);
+    }
+
+    /**
+     * How often other instances' bookings are applied to this one's seats. 0 (the default)
+     * also stops writing the change log, for a single instance; all instances must agree.
+     * Anything else requires an explicit PNR_NODE_ID, unique per instance.
+     */
+    public static long getChangePollIntervalMillis() {
+        return getLong("CHANGE_POLL_INTERVAL_MS", 0L);
+    }
+
+    /** How long a change-log id seen missing is waited for before it is treated as rolled back. */
+    public static long getChangeLogGapTimeoutMillis() {
+        return getLong("CHANGE_LOG_GAP_TIMEOUT_MS", 30000L);
+    }
+
+    public static long getChangeLogRetentionSeconds() {
+        return getLong("CHANGE_LOG_RETENTION_S", 86400L);
+    }
+}
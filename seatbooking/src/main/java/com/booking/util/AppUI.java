@@ -2,8 +2,8 @@ package com.booking.util;
 
 import com.booking.model.User;
 import com.booking.model.Train;
-import com.booking.model.Seat;
 import com.booking.model.Ticket;
+import com.booking.model.PassengerBookings;
 import com.booking.model.Role;
 import com.booking.service.AuthProvider;
 import com.booking.service.TrainService;
@@ -130,23 +130,25 @@ public class AppUI {
             System.out.println("Train Name: " + train.getTrainName());
             System.out.println("Train Number: " + train.getTrainNumber());
             System.out.println("Route: " + String.join(" -> ", train.getRoute()));
-            System.out.println("Total Seats: " + train.getSeats().size());
-            System.out.println("Booked Seats: " + train.getBookedSeatCount());
-            System.out.println("Available Seats: " + train.getAvailableSeatCount());
-            List<String> booked = train.getSeats().stream().filter(Seat::isBooked).map(Seat::getSeatNumber).toList();
-            if (!booked.isEmpty()) {
-                System.out.println("Booked Seat Numbers: " + String.join(", ", booked));
+            System.out.println("Total Seats: " + train.getTotalSeats());
+            if (train.getBookedDates().isEmpty()) {
+                System.out.println("No seats booked on any date.");
+            }
+            for (String date : train.getBookedDates()) {
+                System.out.println("  " + date + " - Booked: " + train.getBookedSeatCount(date)
+                        + ", Available: " + train.getAvailableSeatCount(date));
+                System.out.println("    Booked Seat Numbers: " + String.join(", ", train.getBookedSeatNumbers(date)));
             }
         }
     }
 
     private void handleViewAllBookings() {
-        System.out.println("\n--- All Passenger Bookings ---");
+        System.out.println("\n--- All Upcoming Bookings ---");
         List<Ticket> allTickets = bookingService.getAllTickets();
         if (allTickets.isEmpty()) {
-            System.out.println("No tickets have been booked in the system yet.");
+            System.out.println("No upcoming tickets are booked.");
         } else {
-            System.out.println("Total bookings: " + allTickets.size());
+            System.out.println("Total upcoming bookings: " + allTickets.size());
             for (Ticket ticket : allTickets) {
                 ticket.displayTicketDetails();
             }
@@ -208,9 +210,12 @@ public class AppUI {
         int trainChoice = ConsoleHelper.promptInt(scanner, "Select a train (enter number): ", 1,
                 availableTrains.size());
         Train selectedTrain = availableTrains.get(trainChoice - 1);
+        int fromStop = selectedTrain.indexOfStop(startStation);
+        int toStop = selectedTrain.indexOfStop(endStation);
 
-        int available = selectedTrain.getAvailableSeatCount();
-        System.out.println("Available seats: " + available);
+        int available = trainService.getSeatInventory().getAvailableSeatCount(selectedTrain, date, fromStop, toStop);
+        System.out.println("Available seats from " + selectedTrain.getStop(fromStop) + " to " + selectedTrain.getStop(toStop)
+                + " on " + date + ": " + available);
         if (available <= 0) {
             System.out.println("No seats available on this train. Returning to menu.");
             return;
@@ -237,7 +242,7 @@ public class AppUI {
             }
 
             List<Ticket> newTickets = bookingService.createTicketsForUsernames(usernames, selectedTrain, date,
-                    passenger.getUsername());
+                    passenger.getUsername(), fromStop, toStop);
             if (newTickets == null || newTickets.isEmpty()) {
                 System.out.println("Booking failed. No tickets were created.");
             } else {
@@ -253,9 +258,10 @@ public class AppUI {
     private void handleViewBookings(User passenger) {
         ConsoleHelper.printHeader("My Bookings");
 
-    List<Ticket> upcoming = bookingService.findTicketsByPassenger(passenger);
-    List<Ticket> cancelled = bookingService.findCancelledTicketsByPassenger(passenger);
-    List<Ticket> past = bookingService.findPastTicketsByPassenger(passenger);
+        PassengerBookings bookings = bookingService.findBookingsByPassenger(passenger, AppConfig.getBookingsViewLimit());
+        List<Ticket> upcoming = bookings.getUpcoming();
+        List<Ticket> cancelled = bookings.getCancelled();
+        List<Ticket> past = bookings.getPast();
 
         System.out.println("\nUpcoming / Active Journeys:");
         if (upcoming == null || upcoming.isEmpty()) {
@@ -283,6 +289,10 @@ public class AppUI {
                 ticket.displayTicketDetails();
             }
         }
+
+        if (bookings.isTruncated()) {
+            System.out.println("\nShowing your " + AppConfig.getBookingsViewLimit() + " most recent bookings.");
+        }
     }
 
     private void handleCancelTicket(User passenger) {
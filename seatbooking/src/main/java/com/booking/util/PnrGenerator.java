@@ -1,22 +1,137 @@
 package com.booking.util;
 
-import java.security.SecureRandom;
-import java.time.Instant;
-import java.util.Base64;
-
+import java.lang.management.ManagementFactory;
+import java.net.InetAddress;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Logger;
 
+/**
+ * Issues PNRs from 64-bit ids laid out as 41 bits of milliseconds since 2024-01-01, a 10-bit
+ * node id and a 12-bit sequence, so instances with distinct {@code PNR_NODE_ID}s never hand
+ * out the same PNR. The clock and sequence share one counter advanced by CAS: when a
+ * millisecond's 4096 ids run out, or the wall clock steps back, ids borrow from the next
+ * millisecond instead of waiting. A PNR is the id in Crockford base32 plus a check symbol
+ * from the same alphabet, so it stays alphanumeric and safe in URLs.
+ */
 public final class PnrGenerator {
-    private static final SecureRandom RANDOM = new SecureRandom();
+
+    private static final Logger LOGGER = Logger.getLogger(PnrGenerator.class.getName());
+
+    static final long EPOCH_MILLIS = 1704067200000L; // 2024-01-01T00:00:00Z
+    static final int NODE_BITS = 10;
+    static final int SEQUENCE_BITS = 12;
+    static final int MAX_NODE_ID = (1 << NODE_BITS) - 1;
+    static final int LENGTH = 14;
+    /** prime, so every weighted digit change moves the check value */
+    static final int CHECK_MODULUS = 31;
+
+    private static final char[] SYMBOLS = "0123456789ABCDEFGHJKMNPQRSTVWXYZ".toCharArray();
+    private static final long SEQUENCE_MASK = (1L << SEQUENCE_BITS) - 1;
+
+    private static final boolean NODE_ID_CONFIGURED = AppConfig.getPnrNodeId() >= 0;
+    private static final long NODE_ID = resolveNodeId(AppConfig.getPnrNodeId());
+    /** (milliseconds since epoch << SEQUENCE_BITS) | sequence of the last id handed out */
+    private static final AtomicLong LAST = new AtomicLong();
 
     private PnrGenerator() { }
 
+    /** This instance's node id, also used to tell its own seat changes from other instances'. */
+    public static int getNodeId() {
+        return (int) NODE_ID;
+    }
+
+    /** @return true if the node id came from {@code PNR_NODE_ID} rather than the host and process */
+    public static boolean isNodeIdConfigured() {
+        return NODE_ID_CONFIGURED;
+    }
+
     public static String generate() {
-        long ts = Instant.now().toEpochMilli();
-        byte[] rand = new byte[6];
-        RANDOM.nextBytes(rand);
-        String r = Base64.getUrlEncoder().withoutPadding().encodeToString(rand);
-        String tsHex = Long.toHexString(ts);
-        if (tsHex.length() > 6) tsHex = tsHex.substring(tsHex.length() - 6);
-        return (tsHex + "-" + r).toUpperCase();
-    }
-}
\ No newline at end of file
+        return format(nextIds(1));
+    }
+
+    /** PNRs for a whole group booking, reserved with a single CAS. */
+    public static String[] generate(int count) {
+        if (count < 1) throw new IllegalArgumentException("count must be at least 1");
+        long first = nextIds(count);
+        String[] pnrs = new String[count];
+        for (int i = 0; i < count; i++) pnrs[i] = format(first + i);
+        return pnrs;
+    }
+
+    /** @return the clock/sequence value of the first of {@code count} consecutive ids */
+    private static long nextIds(int count) {
+        long now = (System.currentTimeMillis() - EPOCH_MILLIS) << SEQUENCE_BITS;
+        while (true) {
+            long last = LAST.get();
+            long first = Math.max(last + 1, now);
+            if (LAST.compareAndSet(last, first + count - 1)) return first;
+        }
+    }
+
+    private static String format(long clock) {
+        long id = ((clock >>> SEQUENCE_BITS) << (NODE_BITS + SEQUENCE_BITS)) | (NODE_ID << SEQUENCE_BITS) | (clock & SEQUENCE_MASK);
+        return encode(id);
+    }
+
+    /** 13 base32 digits of a non-negative id followed by their check symbol. */
+    static String encode(long id) {
+        char[] out = new char[LENGTH];
+        int[] digits = new int[LENGTH - 1];
+        long v = id;
+        for (int i = LENGTH - 2; i >= 0; i--) {
+            digits[i] = (int) (v & 31);
+            out[i] = SYMBOLS[digits[i]];
+            v >>>= 5;
+        }
+        out[LENGTH - 1] = SYMBOLS[check(digits)];
+        return new String(out);
+    }
+
+    /**
+     * Sum of each digit times its 1-based position, mod 31. Catches any one mistyped symbol and
+     * any two swapped ones, except where the two symbols involved are 0 and Z.
+     */
+    static int check(int[] digits) {
+        int sum = 0;
+        for (int i = 0; i < digits.length; i++) sum += (i + 1) * digits[i];
+        return sum % CHECK_MODULUS;
+    }
+
+    /** @return true if the string has the shape and check symbol of a PNR issued by this class */
+    public static boolean isWellFormed(String pnr) {
+        if (pnr == null || pnr.length() != LENGTH) return false;
+        int[] digits = new int[LENGTH - 1];
+        for (int i = 0; i < digits.length; i++) {
+            digits[i] = indexOf(pnr.charAt(i));
+            if (digits[i] < 0) return false;
+        }
+        // 13 digits hold 65 bits; ids are non-negative longs, so the first digit is at most 7
+        return digits[0] < 8 && indexOf(pnr.charAt(LENGTH - 1)) == check(digits);
+    }
+
+    private static int indexOf(char ch) {
+        for (int i = 0; i < SYMBOLS.length; i++) {
+            if (SYMBOLS[i] == ch) return i;
+        }
+        return -1;
+    }
+
+    /** Without a configured node id, one is derived from the host name and process id. */
+    private static long resolveNodeId(int configured) {
+        if (configured >= 0 && configured <= MAX_NODE_ID) return configured;
+        if (configured > MAX_NODE_ID) {
+            throw new IllegalStateException("PNR_NODE_ID must be between 0 and " + MAX_NODE_ID + ", got " + configured);
+        }
+        String host;
+        try {
+            host = InetAddress.getLocalHost().getHostName();
+        } catch (Exception e) {
+            host = "unknown";
+        }
+        String process = ManagementFactory.getRuntimeMXBean().getName();
+        int derived = ((host + "/" + process).hashCode() & 0x7fffffff) % (MAX_NODE_ID + 1);
+        LOGGER.warning("PNR_NODE_ID is not set; using derived node id " + derived
+                + ". Give each instance its own PNR_NODE_ID to rule out duplicate PNRs.");
+        return derived;
+    }
+}
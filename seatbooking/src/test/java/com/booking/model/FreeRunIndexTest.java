@@ -0,0 +1,77 @@
+package com.booking.model;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.BitSet;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class FreeRunIndexTest {
+
+    @Test
+    void findsTheLeftmostRunAcrossTreeNodes() {
+        BitSet booked = new BitSet();
+        booked.set(0);
+        booked.set(4);
+        booked.set(10);
+        FreeRunIndex index = FreeRunIndex.ofClearBits(booked, 12);
+        assertEquals(9, index.free());
+        assertEquals(5, index.longest());
+        assertEquals(1, index.findRun(3));
+        assertEquals(5, index.findRun(4));
+        assertEquals(-1, index.findRun(6));
+        assertEquals(-1, index.findRun(0));
+
+        index.set(4, true);
+        assertEquals(1, index.findRun(9));
+        assertEquals(10, index.free());
+        index.set(4, true);
+        assertEquals(10, index.free(), "setting a seat to its current state changes nothing");
+    }
+
+    @Test
+    void paddingPastTheLastSeatIsNeverFree() {
+        FreeRunIndex index = FreeRunIndex.of(5, i -> true);
+        assertEquals(5, index.longest());
+        assertEquals(-1, index.findRun(6));
+    }
+
+    @Test
+    void matchesABruteForceScan() {
+        Random random = new Random(11);
+        int seats = 77;
+        boolean[] free = new boolean[seats];
+        FreeRunIndex index = FreeRunIndex.of(seats, i -> false);
+        for (int op = 0; op < 10_000; op++) {
+            int seat = random.nextInt(seats);
+            free[seat] = random.nextBoolean();
+            index.set(seat, free[seat]);
+            int length = 1 + random.nextInt(8);
+            assertEquals(leftmostRun(free, length), index.findRun(length), "run of " + length);
+            assertEquals(longestRun(free), index.longest());
+        }
+        int count = 0;
+        for (boolean f : free) if (f) count++;
+        assertEquals(count, index.free());
+    }
+
+    private static int leftmostRun(boolean[] free, int length) {
+        int run = 0;
+        for (int i = 0; i < free.length; i++) {
+            run = free[i] ? run + 1 : 0;
+            if (run == length) return i - length + 1;
+        }
+        return -1;
+    }
+
+    private static int longestRun(boolean[] free) {
+        int run = 0;
+        int best = 0;
+        for (boolean f : free) {
+            run = f ? run + 1 : 0;
+            best = Math.max(best, run);
+        }
+        return best;
+    }
+}
@@ -0,0 +1,177 @@
+package com.booking.model;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class SeatMapTest {
+
+    /** Mumbai - Pune - Nashik - Delhi */
+    private static final int LEGS = 3;
+
+    @Test
+    void overlappingJourneysShareASeatLegByLeg() {
+        SeatMap map = new SeatMap(4, LEGS);
+        assertTrue(map.book(1, SeatMap.legMask(0, 1)));
+        assertTrue(map.book(1, SeatMap.legMask(1, 3)));
+        assertFalse(map.book(1, SeatMap.legMask(0, 2)), "legs 0 and 1 are both taken");
+        assertEquals(map.getFullMask(), map.takenLegs(1));
+        assertEquals(1, map.getBookedCount());
+
+        assertTrue(map.book(2, SeatMap.legMask(0, 2)));
+        assertFalse(map.book(2, SeatMap.legMask(1, 3)), "leg 1 overlaps");
+        assertTrue(map.isFree(2, SeatMap.legMask(2, 3)));
+        assertEquals(2, map.getFreeCount());
+        assertEquals(3, map.getFreeCount(SeatMap.legMask(2, 3)));
+
+        assertTrue(map.release(1, SeatMap.legMask(1, 3)));
+        assertTrue(map.isFree(1, SeatMap.legMask(1, 3)));
+        assertFalse(map.release(1, SeatMap.legMask(1, 3)), "already released");
+        assertTrue(map.release(1, SeatMap.legMask(0, 1)));
+        assertFalse(map.isBooked(1));
+        assertEquals(1, map.getBookedCount());
+    }
+
+    @Test
+    void singlePartialJourneyFillsAPartlySoldSeatFirst() {
+        SeatMap map = new SeatMap(4, LEGS);
+        map.book(3, SeatMap.legMask(0, 1));
+        assertArrayEquals(new int[] {3}, map.findFree(1, SeatMap.legMask(1, 3)));
+        assertArrayEquals(new int[] {1}, map.findFree(1, SeatMap.legMask(0, 3)));
+        assertArrayEquals(new int[] {1}, map.findFree(1, SeatMap.legMask(0, 1)));
+    }
+
+    @Test
+    void groupsTakeTheLeftmostAdjacentRun() {
+        SeatMap map = new SeatMap(10, LEGS);
+        map.book(2);
+        map.book(6, SeatMap.legMask(0, 1));
+        assertArrayEquals(new int[] {3, 4, 5}, map.findFree(3, map.getFullMask()));
+        assertArrayEquals(new int[] {7, 8, 9, 10}, map.findFree(4, map.getFullMask()));
+        // seat 6 is only taken on the first leg, so it joins the run for the later legs
+        assertArrayEquals(new int[] {3, 4, 5, 6, 7}, map.findFree(5, SeatMap.legMask(1, 3)));
+        assertArrayEquals(new int[] {3, 4, 5, 6, 7}, map.allocate(5, SeatMap.legMask(1, 3)));
+        assertArrayEquals(new int[] {8, 9, 10}, map.findFree(3, SeatMap.legMask(2, 3)));
+        assertArrayEquals(new int[] {1, 8, 9, 10}, map.findFree(4, SeatMap.legMask(2, 3)), "split over the fewest runs");
+        assertNull(map.findFree(5, SeatMap.legMask(1, 2)), "only 1, 8, 9 and 10 are free");
+        assertEquals(4, map.getFreeCount(SeatMap.legMask(1, 2)));
+    }
+
+    @Test
+    void findFreeMatchesABruteForceScan() {
+        Random random = new Random(7);
+        int capacity = 200;
+        SeatMap map = new SeatMap(capacity, 6);
+        long[] taken = new long[capacity + 1];
+        for (int op = 0; op < 20_000; op++) {
+            int from = random.nextInt(6);
+            long mask = SeatMap.legMask(from, from + 1 + random.nextInt(6 - from));
+            int seat = 1 + random.nextInt(capacity);
+            switch (random.nextInt(4)) {
+                case 0 -> {
+                    boolean expected = (taken[seat] & mask) == 0;
+                    assertEquals(expected, map.book(seat, mask));
+                    if (expected) taken[seat] |= mask;
+                }
+                case 1 -> {
+                    map.release(seat, mask);
+                    taken[seat] &= ~mask;
+                }
+                case 2 -> {
+                    int count = 1 + random.nextInt(6);
+                    int free = freeCount(taken, mask);
+                    int[] seats = map.findFree(count, mask);
+                    if (free < count) {
+                        assertNull(seats);
+                    } else {
+                        assertEquals(count, Arrays.stream(seats).distinct().count());
+                        for (int s : seats) assertEquals(0L, taken[s] & mask, "seat " + s + " is taken");
+                    }
+                }
+                default -> assertEquals(freeCount(taken, mask), map.getFreeCount(mask));
+            }
+        }
+    }
+
+    @Test
+    void stateRoundTrips() {
+        SeatMap map = new SeatMap(130, LEGS);
+        map.book(1);
+        map.book(64, SeatMap.legMask(0, 1));
+        map.book(65, SeatMap.legMask(1, 3));
+        map.book(130);
+        map.allocate(3, SeatMap.legMask(2, 3));
+
+        SeatMap copy = new SeatMap(130, LEGS);
+        copy.loadState(map.toState());
+        for (int seat = 1; seat <= 130; seat++) assertEquals(map.takenLegs(seat), copy.takenLegs(seat), "seat " + seat);
+        assertEquals(map.getBookedCount(), copy.getBookedCount());
+        assertEquals(map.getLegDigest(), copy.getLegDigest());
+        assertArrayEquals(map.toState(), copy.toState());
+        assertArrayEquals(map.findFree(2, SeatMap.legMask(0, 2)), copy.findFree(2, SeatMap.legMask(0, 2)));
+    }
+
+    @Test
+    void wholeRouteStateRoundTripsWithoutMasks() {
+        SeatMap map = new SeatMap(10);
+        map.allocate(4);
+        long[] state = map.toState();
+        assertEquals(2, state.length, "one word and no leg masks");
+
+        SeatMap copy = new SeatMap(10);
+        copy.loadState(state);
+        assertEquals(4, copy.getBookedCount());
+        assertArrayEquals(new int[] {5}, copy.findFree(1));
+        copy.loadState(new long[0]);
+        assertEquals(0, copy.getBookedCount());
+    }
+
+    @Test
+    void loadStateDropsSeatsPastTheCapacity() {
+        SeatMap map = new SeatMap(100);
+        map.book(5);
+        map.book(90);
+        SeatMap smaller = new SeatMap(50);
+        smaller.loadState(map.toState());
+        assertEquals(1, smaller.getBookedCount());
+        assertTrue(smaller.isBooked(5));
+    }
+
+    @Test
+    void legDigestIgnoresBookingOrderButNotLegs() {
+        SeatMap a = new SeatMap(20, LEGS);
+        a.book(3, SeatMap.legMask(0, 1));
+        a.book(7);
+        a.book(3, SeatMap.legMask(2, 3));
+        SeatMap b = new SeatMap(20, LEGS);
+        b.book(7);
+        b.book(3, SeatMap.legMask(2, 3));
+        b.book(3, SeatMap.legMask(0, 1));
+        assertEquals(a.getLegDigest(), b.getLegDigest());
+        assertEquals(SeatMap.legDigest(3, SeatMap.legMask(0, 1) | SeatMap.legMask(2, 3)) + SeatMap.legDigest(7, a.getFullMask()),
+                a.getLegDigest());
+
+        b.release(3, SeatMap.legMask(2, 3));
+        b.book(3, SeatMap.legMask(1, 2));
+        assertNotEquals(a.getLegDigest(), b.getLegDigest(), "same seats, different legs");
+        assertEquals(0L, new SeatMap(20, LEGS).getLegDigest());
+        assertNotEquals(SeatMap.legDigest(1, 1L), SeatMap.legDigest(2, 1L));
+        assertNotEquals(SeatMap.legDigest(1, 1L), SeatMap.legDigest(1, 2L));
+    }
+
+    private static int freeCount(long[] taken, long mask) {
+        int free = 0;
+        for (int s = 1; s < taken.length; s++) {
+            if ((taken[s] & mask) == 0) free++;
+        }
+        return free;
+    }
+}
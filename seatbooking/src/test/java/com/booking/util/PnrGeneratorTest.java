@@ -0,0 +1,108 @@
+package com.booking.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class PnrGeneratorTest {
+
+    private static final String SYMBOLS = "0123456789ABCDEFGHJKMNPQRSTVWXYZ";
+
+    @Test
+    void pnrsAreUniqueAndValidAcrossThreads() throws Exception {
+        int threads = 8;
+        int perThread = 20_000;
+        Set<String> seen = ConcurrentHashMap.newKeySet();
+        CountDownLatch start = new CountDownLatch(1);
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        try {
+            List<Future<?>> done = new ArrayList<>();
+            for (int t = 0; t < threads; t++) {
+                boolean groups = t % 2 == 0;
+                done.add(pool.submit(() -> {
+                    start.await();
+                    for (int i = 0; i < perThread; ) {
+                        String[] pnrs = groups ? PnrGenerator.generate(5) : new String[] {PnrGenerator.generate()};
+                        for (String pnr : pnrs) {
+                            assertTrue(seen.add(pnr), "duplicate " + pnr);
+                            assertTrue(PnrGenerator.isWellFormed(pnr), "rejected " + pnr);
+                        }
+                        i += pnrs.length;
+                    }
+                    return null;
+                }));
+            }
+            start.countDown();
+            for (Future<?> f : done) f.get();
+        } finally {
+            pool.shutdownNow();
+        }
+        assertEquals(threads * perThread, seen.size());
+    }
+
+    @Test
+    void encodedIdsAreAlphanumericAndValid() {
+        Random random = new Random(42);
+        for (int i = 0; i < 10_000; i++) {
+            long id = random.nextLong() & Long.MAX_VALUE;
+            String pnr = PnrGenerator.encode(id);
+            assertEquals(PnrGenerator.LENGTH, pnr.length());
+            for (char ch : pnr.toCharArray()) assertTrue(SYMBOLS.indexOf(ch) >= 0, pnr);
+            assertTrue(PnrGenerator.isWellFormed(pnr), pnr);
+        }
+        assertTrue(PnrGenerator.isWellFormed(PnrGenerator.encode(0)));
+        assertTrue(PnrGenerator.isWellFormed(PnrGenerator.encode(Long.MAX_VALUE)));
+    }
+
+    @Test
+    void mistypedSymbolIsRejected() {
+        String pnr = PnrGenerator.generate();
+        for (int i = 0; i < pnr.length(); i++) {
+            for (char ch : SYMBOLS.toCharArray()) {
+                char was = pnr.charAt(i);
+                if (ch == was || (was == '0' && ch == 'Z') || (was == 'Z' && ch == '0')) continue;
+                String typo = pnr.substring(0, i) + ch + pnr.substring(i + 1);
+                assertFalse(PnrGenerator.isWellFormed(typo), typo);
+            }
+        }
+    }
+
+    @Test
+    void swappedSymbolsAreRejected() {
+        Random random = new Random(7);
+        for (int n = 0; n < 1000; n++) {
+            String pnr = PnrGenerator.encode(random.nextLong() & Long.MAX_VALUE);
+            for (int i = 0; i < pnr.length() - 1; i++) {
+                char a = pnr.charAt(i);
+                char b = pnr.charAt(i + 1);
+                if (a == b || (a == '0' && b == 'Z') || (a == 'Z' && b == '0')) continue;
+                String swapped = pnr.substring(0, i) + b + a + pnr.substring(i + 2);
+                assertFalse(PnrGenerator.isWellFormed(swapped), pnr + " -> " + swapped);
+            }
+        }
+    }
+
+    @Test
+    void malformedStringsAreRejected() {
+        String pnr = PnrGenerator.encode(0x123456789ABCDEFL);
+        assertFalse(PnrGenerator.isWellFormed(null));
+        assertFalse(PnrGenerator.isWellFormed(""));
+        assertFalse(PnrGenerator.isWellFormed(pnr.substring(1)));
+        assertFalse(PnrGenerator.isWellFormed(pnr + "0"));
+        assertFalse(PnrGenerator.isWellFormed(pnr.toLowerCase()));
+        assertFalse(PnrGenerator.isWellFormed("8" + pnr.substring(1)));
+        assertFalse(PnrGenerator.isWellFormed(pnr.substring(0, 5) + "I" + pnr.substring(6)));
+    }
+}